@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import net.thecir.filemanagers.NewFileFormatter;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to format the default workbook into a new output file. The default
+ * workbook is loaded again before every operation. The allocation figures of
+ * formatWorkbook include that load, which is measured on its own by
+ * loadDefaultWorkbook.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NewFileFormatterBenchmark {
+
+    /**
+     * The default workbook, loaded before the operation.
+     */
+    @State(Scope.Thread)
+    public static class DefaultWorkbook {
+
+        XSSFWorkbook workbook;
+
+        @Setup(Level.Invocation)
+        public void setUp(NewFileFormatterBenchmark benchmark) throws IOException {
+            workbook = benchmark.loadDefaultWorkbook();
+        }
+    }
+
+    @Benchmark
+    public XSSFWorkbook loadDefaultWorkbook() throws IOException {
+        try (InputStream in = ClassLoader.getSystemResourceAsStream("excel/default.xlsx")) {
+            return new XSSFWorkbook(in);
+        }
+    }
+
+    @Benchmark
+    public XSSFWorkbook formatWorkbook(DefaultWorkbook defaultWorkbook) {
+        new NewFileFormatter(defaultWorkbook.workbook).formatWorkbook();
+        return defaultWorkbook.workbook;
+    }
+}
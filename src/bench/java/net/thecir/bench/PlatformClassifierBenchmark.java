@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.thecir.enums.Platforms;
+import net.thecir.enums.Stores;
+import net.thecir.reportmanagers.PlatformClassifier;
+import net.thecir.reportmanagers.RetailerLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rows per second of telling the platform and title of a game description,
+ * with a pattern compiled per platform and row, the way the input files were
+ * read before, and with the precompiled PlatformClassifier.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(PlatformClassifierBenchmark.ROWS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlatformClassifierBenchmark {
+
+    static final int ROWS = 1000;
+
+    @Param({"Technopolis", "Technomarket"})
+    private String store;
+
+    private RetailerLayout layout;
+    private String[] descriptions;
+    private PlatformClassifier classifier;
+
+    @Setup
+    public void setUp() {
+        boolean technopolis = "Technopolis".equals(store);
+        layout = RetailerLayout.forStore(Stores.valueOf(store));
+        classifier = new PlatformClassifier(layout::getPlatformAbbreviation);
+        Random random = new Random(ROWS);
+        Platforms[] platforms = Platforms.values();
+        descriptions = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            Platforms platform = platforms[random.nextInt(platforms.length)];
+            String abbreviation = layout.getPlatformAbbreviation(platform);
+            if (platform == Platforms.Other) {
+                abbreviation = "ACC";
+            }
+            //Technopolis descriptions end with a marker, Technomarket ones
+            //have the space left out before the title
+            descriptions[i] = technopolis
+                    ? abbreviation + " GAME TITLE " + i + " /"
+                    : abbreviation + "GAME TITLE " + i;
+        }
+    }
+
+    @Benchmark
+    public void patternPerRow(Blackhole blackhole) {
+        boolean technopolis = "Technopolis".equals(store);
+        for (String description : descriptions) {
+            String text = technopolis ? description.substring(0, description.length() - 1) : description;
+            Platforms found = Platforms.Other;
+            String title = text;
+            for (Platforms platform : Platforms.values()) {
+                if (platform == Platforms.Other) {
+                    break;
+                }
+                String abbreviation = layout.getPlatformAbbreviation(platform);
+                Pattern pattern = Pattern.compile("^" + abbreviation, Pattern.CASE_INSENSITIVE);
+                Matcher matcher = pattern.matcher(text);
+                if (matcher.find()) {
+                    found = platform;
+                    title = text.replaceAll("^" + abbreviation, "").trim();
+                    break;
+                }
+            }
+            blackhole.consume(found);
+            blackhole.consume(title);
+        }
+    }
+
+    @Benchmark
+    public void classifier(Blackhole blackhole) {
+        boolean technopolis = "Technopolis".equals(store);
+        for (String description : descriptions) {
+            String text = technopolis ? description.substring(0, description.length() - 1) : description;
+            PlatformClassifier.Match match = classifier.classify(text);
+            blackhole.consume(match.getPlatform());
+            blackhole.consume(match.getTitle());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import net.thecir.enums.Platforms;
+import net.thecir.reportmanagers.SalesRanking;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to rank the best selling games, with a map keyed by platform and title
+ * sorted in full, the way the top five sheet was written before, and with the
+ * bounded heaps of SalesRanking.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SalesRankingBenchmark {
+
+    @Param({"2000", "50000"})
+    private int titles;
+
+    @Param({"5"})
+    private int k;
+
+    private String[] platforms;
+    private String[] gameTitles;
+    private int[] sales;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(titles);
+        Platforms[] values = Platforms.values();
+        platforms = new String[titles];
+        gameTitles = new String[titles];
+        sales = new int[titles];
+        for (int i = 0; i < titles; i++) {
+            platforms[i] = values[random.nextInt(values.length)].getOutputAbbreviation();
+            gameTitles[i] = "Game title " + i;
+            sales[i] = random.nextInt(1000);
+        }
+    }
+
+    @Benchmark
+    public List<Entry<String, Integer>> fullSort() {
+        HashMap<String, Integer> combined = new HashMap<>();
+        for (int i = 0; i < titles; i++) {
+            combined.put(platforms[i] + " " + gameTitles[i], sales[i]);
+        }
+        return combined.entrySet().stream().sorted(Entry.comparingByValue(Collections.reverseOrder()))
+                .limit(k).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Benchmark
+    public List<SalesRanking.Ranked> boundedHeap() {
+        SalesRanking ranking = new SalesRanking(k, false);
+        for (int i = 0; i < titles; i++) {
+            ranking.addGame(platforms[i], gameTitles[i], sales[i]);
+        }
+        return ranking.getTopGames();
+    }
+
+    @Benchmark
+    public List<SalesRanking.Ranked> boundedHeapWithBreakdowns() {
+        SalesRanking ranking = new SalesRanking(k, true);
+        for (int i = 0; i < titles; i++) {
+            ranking.addGame(platforms[i], gameTitles[i], sales[i]);
+        }
+        return ranking.getTopGames();
+    }
+}
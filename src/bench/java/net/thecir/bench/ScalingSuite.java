@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.bench;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+import net.thecir.enums.Stores;
+import net.thecir.filemanagers.OutputFileLock;
+import net.thecir.reportmanagers.LayoutReportManager;
+import net.thecir.reportmanagers.ReportManager;
+import net.thecir.reportmanagers.RetailerLayout;
+
+/**
+ * Runs generateReport end to end on synthetic files of growing size, doubling
+ * the shops, the titles and the weeks of history in turn. Prints a CSV line
+ * per run with the wall time, the peak heap and the size of the output file,
+ * and the exponent of the time growth against the previous size: about 1 is
+ * linear, clearly above 1 grows faster than the input.
+ * <pre>
+ * ScalingSuite [Technopolis|Technomarket] [steps] [--streaming]
+ * </pre>
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public final class ScalingSuite {
+
+    private static final int BASE_SHOPS = 10;
+    private static final int BASE_TITLES = 200;
+    private static final int BASE_WEEKS = 2;
+    //The weekly report has room for a year
+    private static final int MAX_WEEKS = 51;
+
+    private final Stores store;
+    private final boolean streaming;
+
+    private ScalingSuite(Stores store, boolean streaming) {
+        this.store = store;
+        this.streaming = streaming;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Stores store = Stores.Technopolis;
+        int steps = 5;
+        boolean streaming = false;
+        for (String arg : args) {
+            if ("--streaming".equals(arg)) {
+                streaming = true;
+            } else if (arg.matches("\\d+")) {
+                steps = Integer.parseInt(arg);
+            } else {
+                store = Stores.valueOf(arg);
+            }
+        }
+        ScalingSuite suite = new ScalingSuite(store, streaming);
+        //Warms up the JIT, so the first size isn't the slowest
+        suite.measure(BASE_SHOPS, BASE_TITLES, BASE_WEEKS);
+        System.out.println("store,streaming,curve,shops,titles,weeks,wallMs,peakHeapMb,outputBytes,exponent");
+        suite.run("shops", steps);
+        suite.run("titles", steps);
+        suite.run("weeks", steps);
+    }
+
+    /**
+     * Doubles one dimension per step, keeping the others at their base.
+     */
+    private void run(String curve, int steps) throws Exception {
+        double previousSize = 0;
+        double previousTime = 0;
+        for (int step = 0; step < steps; step++) {
+            int factor = 1 << step;
+            int shops = "shops".equals(curve) ? BASE_SHOPS * factor : BASE_SHOPS;
+            int titles = "titles".equals(curve) ? BASE_TITLES * factor : BASE_TITLES;
+            int weeks = "weeks".equals(curve) ? BASE_WEEKS * factor : BASE_WEEKS;
+            if (weeks > MAX_WEEKS) {
+                break;
+            }
+            Measurement measurement = measure(shops, titles, weeks);
+            double size = (double) shops * titles * ("weeks".equals(curve) ? weeks : 1);
+            String exponent = previousTime > 0
+                    ? String.format(Locale.ROOT, "%.2f",
+                            Math.log(measurement.wallMs / previousTime) / Math.log(size / previousSize))
+                    : "";
+            System.out.println(String.format(Locale.ROOT, "%s,%b,%s,%d,%d,%d,%.0f,%.1f,%d,%s",
+                    store, streaming, curve, shops, titles, weeks, measurement.wallMs,
+                    measurement.peakHeapBytes / (1024.0 * 1024.0), measurement.outputBytes, exponent));
+            previousSize = size;
+            previousTime = measurement.wallMs;
+        }
+    }
+
+    /**
+     * Applies a week to an output file with weeks of history. Only
+     * generateReport is timed; the peak heap is the sum of the peaks of the
+     * heap pools since the collection before it.
+     */
+    private Measurement measure(int shops, int titles, int weeks) throws Exception {
+        File outputFile = File.createTempFile("output", ".xlsx");
+        File inputFile = File.createTempFile("input", ".xlsx");
+        try {
+            SyntheticWorkbooks.writeOutput(store, outputFile, shops, titles, weeks);
+            SyntheticWorkbooks.writeInput(store, inputFile, shops, titles, weeks + 1);
+            ReportManager reportManager = new LayoutReportManager(RetailerLayout.forStore(store), inputFile, outputFile, false);
+            reportManager.setStreamingOutput(streaming);
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long start = System.nanoTime();
+            reportManager.generateReport();
+            double wallMs = (System.nanoTime() - start) / 1e6;
+            long peakHeapBytes = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeapBytes += pool.getPeakUsage().getUsed();
+                }
+            }
+            return new Measurement(wallMs, peakHeapBytes, outputFile.length());
+        } finally {
+            outputFile.delete();
+            for (File sidecarFile : ReportManager.getSidecarFiles(outputFile)) {
+                sidecarFile.delete();
+            }
+            OutputFileLock.getLockFile(outputFile).delete();
+            inputFile.delete();
+        }
+    }
+
+    private static class Measurement {
+
+        private final double wallMs;
+        private final long peakHeapBytes;
+        private final long outputBytes;
+
+        Measurement(double wallMs, long peakHeapBytes, long outputBytes) {
+            this.wallMs = wallMs;
+            this.peakHeapBytes = peakHeapBytes;
+            this.outputBytes = outputBytes;
+        }
+    }
+}
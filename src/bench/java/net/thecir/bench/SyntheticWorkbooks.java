@@ -0,0 +1,247 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import net.thecir.enums.Platforms;
+import net.thecir.enums.Stores;
+import net.thecir.filemanagers.NewFileManager;
+import net.thecir.reportmanagers.LayoutReportManager;
+import net.thecir.reportmanagers.ReportManager;
+import net.thecir.reportmanagers.RetailerLayout;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Writes input files of any size in the layout of each store, and output
+ * files with weeks of history, for the benchmarks. The same arguments always
+ * give the same files. Can also be run on its own:
+ * <pre>
+ * SyntheticWorkbooks input &lt;Technopolis|Technomarket&gt; &lt;file&gt; &lt;shops&gt; &lt;titles&gt; &lt;week&gt;
+ * SyntheticWorkbooks output &lt;Technopolis|Technomarket&gt; &lt;file&gt; &lt;shops&gt; &lt;titles&gt; &lt;weeks&gt;
+ * </pre>
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public final class SyntheticWorkbooks {
+
+    private static final int YEAR = 2017;
+
+    private SyntheticWorkbooks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 6 || !("input".equals(args[0]) || "output".equals(args[0]))) {
+            System.err.println("SyntheticWorkbooks <input|output> <Technopolis|Technomarket> <file> <shops> <titles> <week(s)>");
+            System.exit(2);
+        }
+        Stores store = Stores.valueOf(args[1]);
+        File file = new File(args[2]);
+        int shops = Integer.parseInt(args[3]);
+        int titles = Integer.parseInt(args[4]);
+        int weeks = Integer.parseInt(args[5]);
+        if ("input".equals(args[0])) {
+            writeInput(store, file, shops, titles, weeks);
+        } else {
+            writeOutput(store, file, shops, titles, weeks);
+        }
+    }
+
+    /**
+     * Writes an input file.
+     *
+     * @param store the store whose layout is used.
+     * @param file the file to write.
+     * @param shops number of shops.
+     * @param titles number of game titles.
+     * @param week week of the year the file reports.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writeInput(Stores store, File file, int shops, int titles, int week) throws IOException {
+        if (store == Stores.Technopolis) {
+            writeTechnopolisInput(file, shops, titles, week);
+        } else {
+            writeTechnomarketInput(file, shops, titles, week);
+        }
+    }
+
+    /**
+     * Every title takes a row with the item number, the description and the
+     * first shop, a row for each of the other shops and a total row. The date
+     * of the last day of the week is in A1.
+     */
+    public static void writeTechnopolisInput(File file, int shops, int titles, int week) throws IOException {
+        RetailerLayout layout = RetailerLayout.forStore(Stores.Technopolis);
+        Random random = new Random(week);
+        SXSSFWorkbook wb = new SXSSFWorkbook();
+        try {
+            Sheet sheet = wb.createSheet();
+            Row dateRow = sheet.createRow(0);
+            Date[] dates = getWeekDates(week);
+            dateRow.createCell(0).setCellValue("Период: " + new SimpleDateFormat("dd.MM").format(dates[0])
+                    + " - " + new SimpleDateFormat("dd.MM.yyyy").format(dates[1]));
+            for (int column = 1; column < 5; column++) {
+                dateRow.createCell(column).setCellValue("");
+            }
+            int rowNum = 1;
+            for (int title = 0; title < titles; title++) {
+                for (int shop = 0; shop < shops; shop++) {
+                    Row row = sheet.createRow(rowNum++);
+                    if (shop == 0) {
+                        row.createCell(layout.getItemColumn()).setCellValue(100000 + title);
+                        row.createCell(layout.getDescriptionColumn()).setCellValue(
+                                layout.getPlatformAbbreviation(getPlatform(title)) + " " + getTitle(title) + " /");
+                    } else {
+                        row.createCell(layout.getItemColumn()).setCellValue("");
+                        row.createCell(layout.getDescriptionColumn()).setCellValue("");
+                    }
+                    row.createCell(layout.getShopColumn()).setCellValue(
+                            (shop % 2 == 0 ? "Технополис " : "Видеолукс ") + getShop(shop));
+                    row.createCell(layout.getSalesColumn()).setCellValue(random.nextInt(10));
+                    row.createCell(layout.getStockColumn()).setCellValue(random.nextInt(30));
+                }
+                Row total = sheet.createRow(rowNum++);
+                total.createCell(layout.getItemColumn()).setCellValue("");
+                total.createCell(layout.getDescriptionColumn()).setCellValue("");
+                total.createCell(layout.getShopColumn()).setCellValue("Резултат");
+            }
+            write(wb, file);
+        } finally {
+            wb.dispose();
+        }
+    }
+
+    /**
+     * Every title takes a row with the description and the EAN, followed by
+     * a stock and a sales column for each shop. The first and the last day of
+     * the week are in the info cell and the shops are on the shops row.
+     */
+    public static void writeTechnomarketInput(File file, int shops, int titles, int week) throws IOException {
+        RetailerLayout layout = RetailerLayout.forStore(Stores.Technomarket);
+        Random random = new Random(week);
+        SXSSFWorkbook wb = new SXSSFWorkbook();
+        try {
+            Sheet sheet = wb.createSheet();
+            Date[] dates = getWeekDates(week);
+            SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy");
+            sheet.createRow(layout.getCheckRow()).createCell(layout.getCheckColumn())
+                    .setCellValue("TECHNOMARKET " + format.format(dates[0]) + " - " + format.format(dates[1]));
+            Row shopsRow = sheet.createRow(layout.getShopsRow());
+            for (int shop = 0; shop < shops; shop++) {
+                int column = layout.getShopsFirstColumn() + shop * 2;
+                String name = String.format("%02d ", shop) + getShop(shop);
+                shopsRow.createCell(column).setCellValue(name);
+                shopsRow.createCell(column + 1).setCellValue(name);
+            }
+            for (int title = 0; title < titles; title++) {
+                Row row = sheet.createRow(layout.getShopsRow() + 2 + title);
+                row.createCell(layout.getDescriptionColumn()).setCellValue(
+                        layout.getPlatformAbbreviation(getPlatform(title)) + " " + getTitle(title));
+                row.createCell(layout.getItemColumn()).setCellValue(3800000000000L + title);
+                for (int column = 0; column < shops * 2; column++) {
+                    row.createCell(layout.getShopsFirstColumn() + column).setCellValue(random.nextInt(20));
+                }
+            }
+            write(wb, file);
+        } finally {
+            wb.dispose();
+        }
+    }
+
+    /**
+     * Creates a new output file and applies weeks 1 to weeks of input files
+     * to it.
+     *
+     * @param store the store of the input files.
+     * @param file the output file to write.
+     * @param shops number of shops.
+     * @param titles number of game titles.
+     * @param weeks weeks of history, 0 for an empty output file.
+     * @throws Exception if the file cannot be created or a week applied.
+     */
+    public static void writeOutput(Stores store, File file, int shops, int titles, int weeks) throws Exception {
+        NewFileManager.getInstance().createNewWorkbook(file);
+        if (weeks == 0) {
+            return;
+        }
+        List<File> inputFiles = new ArrayList<>();
+        try {
+            for (int week = 1; week <= weeks; week++) {
+                File inputFile = File.createTempFile("input", ".xlsx");
+                inputFiles.add(inputFile);
+                writeInput(store, inputFile, shops, titles, week);
+            }
+            ReportManager reportManager = new LayoutReportManager(RetailerLayout.forStore(store), inputFiles, file, false);
+            reportManager.generateReport();
+        } finally {
+            for (File inputFile : inputFiles) {
+                inputFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the first and the last day of a week of the year, the way the
+     * report managers count the weeks.
+     */
+    private static Date[] getWeekDates(int week) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(Calendar.YEAR, YEAR);
+        cal.set(Calendar.WEEK_OF_YEAR, week);
+        cal.set(Calendar.DAY_OF_WEEK, Calendar.WEDNESDAY);
+        Date last = cal.getTime();
+        cal.add(Calendar.DAY_OF_MONTH, -6);
+        return new Date[]{cal.getTime(), last};
+    }
+
+    private static Platforms getPlatform(int title) {
+        Platforms[] platforms = Platforms.values();
+        return platforms[title % (platforms.length - 1)];
+    }
+
+    private static String getTitle(int title) {
+        return "GAME TITLE " + title;
+    }
+
+    private static String getShop(int shop) {
+        return "SHOP " + shop;
+    }
+
+    private static void write(SXSSFWorkbook wb, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            wb.write(out);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import net.thecir.bench.SyntheticWorkbooks;
+import net.thecir.enums.Stores;
+import net.thecir.filemanagers.OutputFileLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to apply a week to an output file with weeks of history and to save
+ * it. Both change the workbook, so it's loaded again before every operation.
+ * The allocation figures of writeToSheet and save include that load, which is
+ * measured on its own by loadOutputWorkbook. With totalsSidecar off, the
+ * running totals are read from the sheets on every load, as if the output file
+ * was edited by hand since the last report.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OutputWorkbookBenchmark {
+
+    @Param({"Technopolis"})
+    private Stores store;
+
+    @Param({"10", "50"})
+    private int shops;
+
+    @Param({"200", "2000"})
+    private int titles;
+
+    @Param({"1", "26"})
+    private int weeks;
+
+    @Param({"false", "true"})
+    private boolean streamingOutput;
+
+    @Param({"false", "true"})
+    private boolean totalsSidecar;
+
+    //Output file with the history, copied over the working one before every load
+    private File historyFile;
+    private File outputFile;
+    private ParsedInput input;
+
+    @Setup
+    public void setUp() throws Exception {
+        historyFile = File.createTempFile("history", ".xlsx");
+        outputFile = File.createTempFile("output", ".xlsx");
+        SyntheticWorkbooks.writeOutput(store, historyFile, shops, titles, weeks);
+        File inputFile = File.createTempFile("input", ".xlsx");
+        try {
+            SyntheticWorkbooks.writeInput(store, inputFile, shops, titles, weeks + 1);
+            input = createReportManager().parseInputFile(inputFile);
+        } finally {
+            inputFile.delete();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : new File[]{historyFile, outputFile}) {
+            file.delete();
+            for (File sidecarFile : ReportManager.getSidecarFiles(file)) {
+                sidecarFile.delete();
+            }
+            OutputFileLock.getLockFile(file).delete();
+        }
+    }
+
+    /**
+     * An output file, loaded before the operation.
+     */
+    @State(Scope.Thread)
+    public static class Loaded {
+
+        ReportManager reportManager;
+
+        @Setup(Level.Invocation)
+        public void setUp(OutputWorkbookBenchmark benchmark) throws Exception {
+            reportManager = benchmark.load();
+        }
+    }
+
+    /**
+     * An output file, loaded and with the week applied before the operation.
+     */
+    @State(Scope.Thread)
+    public static class Applied {
+
+        ReportManager reportManager;
+
+        @Setup(Level.Invocation)
+        public void setUp(OutputWorkbookBenchmark benchmark) throws Exception {
+            reportManager = benchmark.load();
+            reportManager.applyInput(benchmark.input);
+        }
+    }
+
+    @Benchmark
+    public ReportManager loadOutputWorkbook() throws Exception {
+        return load();
+    }
+
+    @Benchmark
+    public ReportManager writeToSheet(Loaded loaded) throws Exception {
+        loaded.reportManager.applyInput(input);
+        return loaded.reportManager;
+    }
+
+    @Benchmark
+    public File save(Applied applied) throws Exception {
+        applied.reportManager.saveOutputWorkbook();
+        return outputFile;
+    }
+
+    private ReportManager load() throws Exception {
+        Files.copy(historyFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (totalsSidecar) {
+            Files.copy(AggregateStore.getSidecarFile(historyFile).toPath(),
+                    AggregateStore.getSidecarFile(outputFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(AggregateStore.getSidecarFile(outputFile).toPath());
+        }
+        ReportManager reportManager = createReportManager();
+        reportManager.setStreamingOutput(streamingOutput);
+        reportManager.loadOutputWorkbook();
+        return reportManager;
+    }
+
+    private ReportManager createReportManager() {
+        return new LayoutReportManager(RetailerLayout.forStore(store), outputFile, outputFile, false);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import net.thecir.bench.SyntheticWorkbooks;
+import net.thecir.enums.Stores;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to read the stock and sales of a synthetic input file, in the layout
+ * of each store. The file is opened anew for every read, which only sniffs
+ * its header.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadInputDataBenchmark {
+
+    @Param({"Technopolis", "Technomarket"})
+    private Stores store;
+
+    @Param({"10", "50"})
+    private int shops;
+
+    @Param({"200", "2000"})
+    private int titles;
+
+    private File inputFile;
+    private ReportManager reportManager;
+
+    @Setup
+    public void setUp() throws Exception {
+        inputFile = File.createTempFile("input", ".xlsx");
+        SyntheticWorkbooks.writeInput(store, inputFile, shops, titles, 1);
+        reportManager = new LayoutReportManager(RetailerLayout.forStore(store), inputFile, null, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        inputFile.delete();
+    }
+
+    @Benchmark
+    public StockSalesTable readInputData() throws Exception {
+        reportManager.openInputFile(inputFile);
+        reportManager.readInputData();
+        return reportManager.newData;
+    }
+}
@@ -23,7 +23,11 @@
  */
 package com.thecir.tools;
 
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 
 /**
  *
@@ -41,4 +45,156 @@ public final class ExcelTools {
                 return null;
         }
     }
+
+    /**
+     * Numbers are sometimes stored as text in the input files.
+     *
+     * @param value text of a cell, may be null.
+     * @param defaultValue returned if the text isn't a number.
+     * @return the number in the text.
+     */
+    public static double parseNumber(String value, double defaultValue) {
+        return NumberUtils.isParsable(value) ? Double.parseDouble(value) : defaultValue;
+    }
+
+    /**
+     * Reads and writes the cells of a sheet by 0-based row and column
+     * indexes, without building cell references. The current row is kept
+     * between calls, so the cells of a row are reached with a single row
+     * lookup. The typed getters read numbers from numeric cells and from
+     * numbers stored as text, and formula cells by their cached result.
+     * The cursor must be moved again after rows are removed from the sheet.
+     */
+    public static final class RowCursor {
+
+        private final Sheet sheet;
+        private int rowIndex = -1;
+        private Row row;
+
+        public RowCursor(Sheet sheet) {
+            this.sheet = sheet;
+        }
+
+        /**
+         * @param rowIndex 0-based index of the row.
+         * @return this cursor, on the row.
+         */
+        public RowCursor moveTo(int rowIndex) {
+            if (rowIndex != this.rowIndex || row == null) {
+                this.rowIndex = rowIndex;
+                row = sheet.getRow(rowIndex);
+            }
+            return this;
+        }
+
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        /**
+         * @return the current row, null if it doesn't exist.
+         */
+        public Row getRow() {
+            return row;
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @return the cell, null if it or its row doesn't exist.
+         */
+        public Cell getCell(int column) {
+            return row == null ? null : row.getCell(column);
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @return the cell, created blank along with its row if missing.
+         */
+        public Cell getOrCreateCell(int column) {
+            if (row == null) {
+                row = sheet.createRow(rowIndex);
+            }
+            return row.getCell(column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @return type of the cell, BLANK if it doesn't exist.
+         */
+        public CellType getCellType(int column) {
+            Cell cell = getCell(column);
+            return cell == null ? CellType.BLANK : cell.getCellTypeEnum();
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @return whether the cell holds a number, as a number or as text.
+         */
+        public boolean isNumber(int column) {
+            Cell cell = getCell(column);
+            if (cell == null) {
+                return false;
+            }
+            switch (getValueType(cell)) {
+                case NUMERIC:
+                    return true;
+                case STRING:
+                    return NumberUtils.isParsable(cell.getStringCellValue());
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @param defaultValue returned if the cell holds no number.
+         * @return the number in the cell.
+         */
+        public double getDouble(int column, double defaultValue) {
+            Cell cell = getCell(column);
+            if (cell == null) {
+                return defaultValue;
+            }
+            switch (getValueType(cell)) {
+                case NUMERIC:
+                    return cell.getNumericCellValue();
+                case STRING:
+                    return parseNumber(cell.getStringCellValue(), defaultValue);
+                default:
+                    return defaultValue;
+            }
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @param defaultValue returned if the cell holds no number.
+         * @return the number in the cell, without its fraction.
+         */
+        public int getInt(int column, int defaultValue) {
+            return (int) getDouble(column, defaultValue);
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @param defaultValue returned if the cell holds no number.
+         * @return the number in the cell, without its fraction.
+         */
+        public long getLong(int column, long defaultValue) {
+            return isNumber(column) ? (long) getDouble(column, 0) : defaultValue;
+        }
+
+        /**
+         * @param column 0-based index of the column.
+         * @return the text in the cell, an empty string if it holds no text.
+         */
+        public String getStringOrEmpty(int column) {
+            Cell cell = getCell(column);
+            return cell != null && getValueType(cell) == CellType.STRING ? cell.getStringCellValue() : "";
+        }
+
+        private static CellType getValueType(Cell cell) {
+            CellType type = cell.getCellTypeEnum();
+            return type == CellType.FORMULA ? cell.getCachedFormulaResultTypeEnum() : type;
+        }
+    }
 }
@@ -24,17 +24,27 @@
 package net.thecir.core;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import javax.swing.JFrame;
-import javax.swing.JOptionPane;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import lombok.Setter;
 import lombok.extern.java.Log;
+import net.thecir.callbacks.FileCallback;
+import net.thecir.callbacks.StatusCallback;
 import net.thecir.enums.Stores;
+import net.thecir.exceptions.InputFileAlreadyAppliedException;
 import net.thecir.exceptions.InputFileContainsNoValidDateException;
+import net.thecir.exceptions.InputFileIOException;
 import net.thecir.exceptions.InputFileNotMatchingSelectedFileException;
 import net.thecir.exceptions.NewFileCreationException;
 import net.thecir.exceptions.OutputFileIOException;
@@ -42,9 +52,11 @@ import net.thecir.exceptions.OutputFileIsFullException;
 import net.thecir.exceptions.OutputFileNoRecordsFoundException;
 import net.thecir.exceptions.OutputFileNotCorrectException;
 import net.thecir.filemanagers.NewFileManager;
+import net.thecir.filemanagers.OutputFileLock;
+import net.thecir.reportmanagers.LayoutReportManager;
+import net.thecir.reportmanagers.ParsedInputCache;
 import net.thecir.reportmanagers.ReportManager;
-import net.thecir.reportmanagers.TechnomarketReportManager;
-import net.thecir.reportmanagers.TechnopolisReportManager;
+import net.thecir.reportmanagers.RetailerLayout;
 
 /**
  *
@@ -54,16 +66,37 @@ import net.thecir.reportmanagers.TechnopolisReportManager;
 public class LiteReportManager {
 
     private final ExecutorService newFileExec = Executors.newFixedThreadPool(1);
-    private final ExecutorService reportGeneratorExec = Executors.newFixedThreadPool(1);
+    //Reports into different output files run in parallel
+    private final ReportScheduler reportScheduler = new ReportScheduler(ReportScheduler.DEFAULT_MAX_PARALLEL);
+    //Daemon threads, the report jobs wait for the parsing, so the pool needs no shutdown
+    private final ExecutorService parseExec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final ParsedInputCache inputCache = ParsedInputCache.getDefault();
 
     private static LiteReportManager SINGLETON;
 
-    private JFrame parentFrame;
-    private JTextField statusBar;
-    private ReportManager reportManager;
+    //Receives the status and the errors of the operations
+    @Setter
+    private StatusCallback statusCallback;
     private static ResourceBundle rb;
+    //Stream the largest output sheets when saving, for workbooks with a long history
+    @Setter
+    private boolean streamingOutput;
+    //Number of shops and games ranked, the top five sheet shows the first five
+    @Setter
+    private int topCount = ReportManager.DEFAULT_TOP_COUNT;
+    //Write all the ranked shops and games next to the output file, see ReportManager.getRankingFile
+    @Setter
+    private boolean writeRanking;
+    //How long a job waits for the jobs of other processes on its output file, OutputFileLock.WAIT_INDEFINITELY to wait until they finish
+    @Setter
+    private long lockTimeoutMillis = OutputFileLock.DEFAULT_TIMEOUT_MILLIS;
 
-    public static LiteReportManager getInstance() {
+    public static synchronized LiteReportManager getInstance() {
         if (SINGLETON == null) {
             SINGLETON = new LiteReportManager();
         }
@@ -71,59 +104,139 @@ public class LiteReportManager {
         return SINGLETON;
     }
 
+    /**
+     * @param maxParallelReports the most reports into different output files
+     * generated at the same time.
+     */
+    public void setMaxParallelReports(int maxParallelReports) {
+        reportScheduler.setMaxParallel(maxParallelReports);
+    }
+
+    /**
+     * Stops taking new files and reports, when the application is closed. The
+     * jobs submitted already still run, then the threads of the manager end,
+     * so they don't keep the application running. The next getInstance
+     * returns a new manager.
+     */
+    public void shutdown() {
+        synchronized (LiteReportManager.class) {
+            if (SINGLETON == this) {
+                SINGLETON = null;
+            }
+        }
+        newFileExec.shutdown();
+        reportScheduler.shutdown();
+    }
+
     public void initOutputComponents(JFrame parentFrame, JTextField statusBar) {
-        this.statusBar = statusBar;
-        this.parentFrame = parentFrame;
+        statusCallback = new SwingStatusCallback(parentFrame, statusBar);
     }
 
+    /**
+     * Asks the user for a new file, then creates it after the reports
+     * requested before into the same file.
+     */
     public void createNewFile() {
         newFileExec.execute(() -> {
+            NewFileManager newFileManager = NewFileManager.getInstance();
+            File file;
             try {
-                boolean created = NewFileManager.getInstance().createNewWorkbook();
-                if (created == true) {
-                    statusBarSetText(rb.getString("SuccessfullyCreatedNewFile"));
-                } else {
-                    statusBarSetText(rb.getString("FailedToCreateNewFile"));
-                }
-            } catch (OutputFileIOException ex) {
-                log.log(Level.SEVERE, "An error occured while saving file.", ex);
-                printMessageViaPane(ex.getMessage(), JOptionPane.ERROR_MESSAGE);
-                statusBarSetText(rb.getString("FailedToCreateNewFile"));
+                file = selectNewFile(newFileManager.getFileCallback());
             } catch (NewFileCreationException ex) {
                 log.log(Level.SEVERE, "An error occured while creating file.", ex);
-                printMessageViaPane(ex.getMessage(), JOptionPane.ERROR_MESSAGE);
-                statusBarSetText(rb.getString("FailedToCreateNewFile"));
+                statusCallback.showError(ex.getMessage());
+                statusCallback.setStatus(rb.getString("FailedToCreateNewFile"));
+                return;
             }
-        });
-    }
-
-    public void generateReport(File inputFile, File outputFile, boolean undo, Stores store) {
-        reportGeneratorExec.execute(() -> {
-            if (store == Stores.Technopolis) {
-                reportManager = new TechnopolisReportManager(inputFile, outputFile, undo);
-            } else if (store == Stores.Technomarket) {
-                reportManager = new TechnomarketReportManager(inputFile, outputFile, undo);
+            if (file == null) {
+                statusCallback.setStatus(rb.getString("FailedToCreateNewFile"));
+                return;
             }
             try {
-                reportManager.generateReport();
-                statusBarSetText(rb.getString("SuccessfullyGeneratedReport"));
-            } catch (OutputFileIsFullException | OutputFileNoRecordsFoundException | InputFileNotMatchingSelectedFileException | OutputFileNotCorrectException | OutputFileIOException | InputFileContainsNoValidDateException ex) {
-                log.log(Level.SEVERE, "Failiure during raport generation!", ex);
-                printMessageViaPane(ex.getMessage(), JOptionPane.ERROR_MESSAGE);
-                statusBarSetText(rb.getString("FailedToGenerateReport"));
+                reportScheduler.submit(file, () -> createNewFile(newFileManager, file));
+            } catch (RejectedExecutionException ex) {
+                log.log(Level.WARNING, "The new file was selected after the application was closed.", ex);
             }
         });
     }
 
-    private void printMessageViaPane(String message, int errorMessage) {
-        SwingUtilities.invokeLater(() -> {
-            JOptionPane.showMessageDialog(parentFrame, message, rb.getString("MessageTitle"), errorMessage);
-        });
+    private void createNewFile(NewFileManager newFileManager, File file) {
+        try {
+            newFileManager.createNewWorkbook(file, lockTimeoutMillis);
+            newFileManager.getFileCallback().setAsOutputAndDisplay();
+            statusCallback.setStatus(rb.getString("SuccessfullyCreatedNewFile"));
+        } catch (OutputFileIOException ex) {
+            log.log(Level.SEVERE, "An error occured while saving file.", ex);
+            statusCallback.showError(ex.getMessage());
+            statusCallback.setStatus(rb.getString("FailedToCreateNewFile"));
+        } catch (NewFileCreationException ex) {
+            log.log(Level.SEVERE, "An error occured while creating file.", ex);
+            statusCallback.showError(ex.getMessage());
+            statusCallback.setStatus(rb.getString("FailedToCreateNewFile"));
+        }
     }
 
-    private void statusBarSetText(String text) {
-        SwingUtilities.invokeLater(() -> {
-            statusBar.setText(text);
+    /**
+     * The file chooser is shown on the event dispatch thread, while this
+     * thread waits for the user to select the new file.
+     *
+     * @param fileCallback the callback to obtain the file from.
+     * @return the selected file, null if none was selected.
+     * @throws NewFileCreationException if the file cannot be obtained.
+     */
+    private File selectNewFile(FileCallback fileCallback) throws NewFileCreationException {
+        FutureTask<File> getFileTask = new FutureTask<>(fileCallback::getFile);
+        try {
+            SwingUtilities.invokeAndWait(getFileTask);
+            return getFileTask.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.log(Level.SEVERE, "A thread waiting for the user to select new file to be created has been interrupted.", ex);
+            throw new NewFileCreationException(rb.getString("FailedToCreateNewFile"), ex);
+        } catch (InvocationTargetException | ExecutionException ex) {
+            log.log(Level.SEVERE, "Failed to obtain the new file name.", ex);
+            throw new NewFileCreationException(rb.getString("FailedToCreateNewFile"), ex);
+        }
+    }
+
+    public void generateReport(File inputFile, File outputFile, boolean undo, Stores store) {
+        generateReports(Collections.singletonList(inputFile), outputFile, undo, store);
+    }
+
+    /**
+     * Applies several input files of a store, in the given order, loading and
+     * saving the output file once. Nothing is saved if one of them fails. The
+     * reports into the same output file are generated in the order they were
+     * requested, those into other output files meanwhile.
+     *
+     * @param inputFiles input files, for example the weeks of a season.
+     * @param outputFile the output file.
+     * @param undo whether the input files are removed from the output file.
+     * @param store the store the input files come from.
+     */
+    public void generateReports(List<File> inputFiles, File outputFile, boolean undo, Stores store) {
+        reportScheduler.submit(outputFile, () -> {
+            try {
+                ReportManager reportManager = new LayoutReportManager(RetailerLayout.forStore(store), inputFiles, outputFile, undo);
+                reportManager.setStreamingOutput(streamingOutput);
+                reportManager.setParseExecutor(parseExec);
+                reportManager.setInputCache(inputCache);
+                reportManager.setTopCount(topCount);
+                reportManager.setLockTimeoutMillis(lockTimeoutMillis);
+                if (writeRanking) {
+                    reportManager.setRankingFile(ReportManager.getRankingFile(outputFile));
+                }
+                reportManager.generateReport();
+                statusCallback.setStatus(rb.getString("SuccessfullyGeneratedReport"));
+            } catch (OutputFileIsFullException | OutputFileNoRecordsFoundException | InputFileNotMatchingSelectedFileException | OutputFileNotCorrectException | OutputFileIOException | InputFileContainsNoValidDateException | InputFileIOException | InputFileAlreadyAppliedException ex) {
+                log.log(Level.SEVERE, "Failiure during raport generation!", ex);
+                statusCallback.showError(ex.getMessage());
+                statusCallback.setStatus(rb.getString("FailedToGenerateReport"));
+            } catch (RuntimeException ex) {
+                log.log(Level.SEVERE, "Unexpected failure during report generation!", ex);
+                statusCallback.showError(rb.getString("FailedToGenerateReport"));
+                statusCallback.setStatus(rb.getString("FailedToGenerateReport"));
+            }
         });
     }
 }
@@ -0,0 +1,392 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import lombok.Setter;
+import lombok.extern.java.Log;
+import net.thecir.callbacks.StatusCallback;
+import net.thecir.enums.Stores;
+import net.thecir.exceptions.InputFileContainsNoValidDateException;
+import net.thecir.exceptions.InputFileIOException;
+import net.thecir.exceptions.InputFileNotMatchingSelectedFileException;
+import net.thecir.exceptions.NewFileCreationException;
+import net.thecir.exceptions.OutputFileIOException;
+import net.thecir.exceptions.OutputFileIsFullException;
+import net.thecir.exceptions.OutputFileNoRecordsFoundException;
+import net.thecir.exceptions.OutputFileNotCorrectException;
+import net.thecir.filemanagers.AtomicFileSaver;
+import net.thecir.filemanagers.NewFileManager;
+import net.thecir.filemanagers.OutputFileLock;
+import net.thecir.exceptions.InputFileAlreadyAppliedException;
+import net.thecir.reportmanagers.LayoutReportManager;
+import net.thecir.reportmanagers.ParsedInputCache;
+import net.thecir.reportmanagers.ReportManager;
+import net.thecir.reportmanagers.RetailerLayout;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+
+/**
+ * Entry point without a GUI, for scheduled jobs. Creates new output files and
+ * applies or undoes input files, reporting through a status callback. The
+ * operations run on the calling thread and AWT/Swing is never initialized.
+ * <pre>
+ * new [--lock-timeout &lt;seconds&gt;] &lt;output file&gt;
+ * compact [--lock-timeout &lt;seconds&gt;] &lt;output file&gt;
+ * report [--streaming] [--backups &lt;n&gt;] [--no-cache] [--top &lt;n&gt;] [--ranking &lt;file&gt;] [--lock-timeout &lt;seconds&gt;] &lt;Technopolis|Technomarket|layout file&gt; &lt;output file&gt; &lt;input file&gt;...
+ * undo [--streaming] [--backups &lt;n&gt;] [--no-cache] [--top &lt;n&gt;] [--ranking &lt;file&gt;] [--lock-timeout &lt;seconds&gt;] &lt;Technopolis|Technomarket|layout file&gt; &lt;output file&gt; &lt;input file&gt;...
+ * undo-weeks [--backups &lt;n&gt;] [--top &lt;n&gt;] [--ranking &lt;file&gt;] [--lock-timeout &lt;seconds&gt;] &lt;output file&gt; &lt;steps&gt;
+ * redo-weeks [--backups &lt;n&gt;] [--top &lt;n&gt;] [--ranking &lt;file&gt;] [--lock-timeout &lt;seconds&gt;] &lt;output file&gt; &lt;steps&gt;
+ * </pre>
+ * With --backups, the last n versions of the output file are kept next to
+ * it, see {@link AtomicFileSaver}.
+ * --lock-timeout waits up to the given seconds for the other jobs on the
+ * output file, 0 to wait until they finish, see {@link OutputFileLock}.
+ * --top ranks the best n shops and games, 5 by default. The top five sheet
+ * shows the first five, --ranking writes all of them to a tab separated
+ * file, with the best games of every platform and of every shop.
+ * The input files read are cached, so the same file is not read again when
+ * it's undone or applied again, see {@link ParsedInputCache}. --no-cache
+ * reads every input file.
+ * The input files of a chain with no store of its own are read with the
+ * layout descriptor of the chain, see {@link RetailerLayout}. The latest weeks
+ * applied can be undone and redone from the journal of the output file,
+ * without their input files.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+public class LiteReportManagerCli {
+
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILURE = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private final StatusCallback statusCallback;
+    private final ResourceBundle rb;
+    //Number of previous output files kept as backups, 0 for none
+    @Setter
+    private int outputBackups;
+    //The input files read before, null to read every input file
+    @Setter
+    private ParsedInputCache inputCache = ParsedInputCache.getDefault();
+    //Number of shops and games ranked
+    @Setter
+    private int topCount = ReportManager.DEFAULT_TOP_COUNT;
+    //Where all the ranked shops and games are written, null for none
+    @Setter
+    private File rankingFile;
+    //How long to wait for the other jobs on the output file, OutputFileLock.WAIT_INDEFINITELY to wait until they finish
+    @Setter
+    private long lockTimeoutMillis = OutputFileLock.DEFAULT_TIMEOUT_MILLIS;
+
+    public LiteReportManagerCli(StatusCallback statusCallback) {
+        this.statusCallback = statusCallback;
+        rb = ResourceBundle.getBundle("CoreLanguageBundles/ErrorMessages");
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(new LiteReportManagerCli(new ConsoleStatusCallback()).run(args));
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @param args the command and its arguments.
+     * @return EXIT_SUCCESS, EXIT_FAILURE if the command failed or EXIT_USAGE
+     * if the arguments are wrong.
+     */
+    public int run(String[] args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (arguments.isEmpty()) {
+            return usage();
+        }
+        String command = arguments.remove(0);
+        boolean streaming = arguments.remove("--streaming");
+        if (arguments.remove("--no-cache")) {
+            inputCache = null;
+        }
+        int backupsIndex = arguments.indexOf("--backups");
+        if (backupsIndex >= 0) {
+            try {
+                outputBackups = Integer.parseInt(arguments.get(backupsIndex + 1));
+            } catch (IndexOutOfBoundsException | NumberFormatException ex) {
+                return usage();
+            }
+            if (outputBackups < 0) {
+                return usage();
+            }
+            arguments.subList(backupsIndex, backupsIndex + 2).clear();
+        }
+        int topIndex = arguments.indexOf("--top");
+        if (topIndex >= 0) {
+            try {
+                topCount = Integer.parseInt(arguments.get(topIndex + 1));
+            } catch (IndexOutOfBoundsException | NumberFormatException ex) {
+                return usage();
+            }
+            if (topCount < 1) {
+                return usage();
+            }
+            arguments.subList(topIndex, topIndex + 2).clear();
+        }
+        int lockTimeoutIndex = arguments.indexOf("--lock-timeout");
+        if (lockTimeoutIndex >= 0) {
+            long lockTimeoutSeconds;
+            try {
+                lockTimeoutSeconds = Long.parseLong(arguments.get(lockTimeoutIndex + 1));
+            } catch (IndexOutOfBoundsException | NumberFormatException ex) {
+                return usage();
+            }
+            if (lockTimeoutSeconds < 0) {
+                return usage();
+            }
+            lockTimeoutMillis = lockTimeoutSeconds == 0 ? OutputFileLock.WAIT_INDEFINITELY
+                    : TimeUnit.SECONDS.toMillis(lockTimeoutSeconds);
+            arguments.subList(lockTimeoutIndex, lockTimeoutIndex + 2).clear();
+        }
+        int rankingIndex = arguments.indexOf("--ranking");
+        if (rankingIndex >= 0) {
+            if (rankingIndex + 1 >= arguments.size()) {
+                return usage();
+            }
+            rankingFile = new File(arguments.get(rankingIndex + 1));
+            arguments.subList(rankingIndex, rankingIndex + 2).clear();
+        }
+        if ("new".equals(command) && arguments.size() == 1 && !streaming) {
+            return createNewFile(new File(arguments.get(0))) ? EXIT_SUCCESS : EXIT_FAILURE;
+        }
+        if ("compact".equals(command) && arguments.size() == 1 && !streaming) {
+            return compactOutputFile(new File(arguments.get(0))) ? EXIT_SUCCESS : EXIT_FAILURE;
+        }
+        if (("undo-weeks".equals(command) || "redo-weeks".equals(command)) && arguments.size() == 2) {
+            int steps;
+            try {
+                steps = Integer.parseInt(arguments.get(1));
+            } catch (NumberFormatException ex) {
+                return usage();
+            }
+            if (steps < 1) {
+                return usage();
+            }
+            return replayWeeks(new File(arguments.get(0)), steps, "undo-weeks".equals(command))
+                    ? EXIT_SUCCESS : EXIT_FAILURE;
+        }
+        if (!("report".equals(command) || "undo".equals(command)) || arguments.size() < 3) {
+            return usage();
+        }
+        RetailerLayout layout = null;
+        for (Stores value : Stores.values()) {
+            if (value.name().equalsIgnoreCase(arguments.get(0))) {
+                layout = RetailerLayout.forStore(value);
+            }
+        }
+        if (layout == null) {
+            File layoutFile = new File(arguments.get(0));
+            if (!layoutFile.isFile()) {
+                return usage();
+            }
+            try {
+                layout = RetailerLayout.load(layoutFile);
+            } catch (IOException | IllegalArgumentException ex) {
+                log.log(Level.SEVERE, "The layout file is not valid.", ex);
+                statusCallback.showError(rb.getString("LayoutFileNotValid"));
+                statusCallback.setStatus(rb.getString("FailedToGenerateReport"));
+                return EXIT_FAILURE;
+            }
+        }
+        List<File> inputFiles = new ArrayList<>();
+        for (String inputFile : arguments.subList(2, arguments.size())) {
+            inputFiles.add(new File(inputFile));
+        }
+        boolean generated = generateReports(inputFiles, new File(arguments.get(1)), "undo".equals(command),
+                layout, streaming);
+        return generated ? EXIT_SUCCESS : EXIT_FAILURE;
+    }
+
+    /**
+     * Creates a new, formatted output file.
+     *
+     * @param outputFile the file to create.
+     * @return whether the file was created.
+     */
+    public boolean createNewFile(File outputFile) {
+        try {
+            NewFileManager.getInstance().createNewWorkbook(outputFile, lockTimeoutMillis);
+            statusCallback.setStatus(rb.getString("SuccessfullyCreatedNewFile"));
+            return true;
+        } catch (OutputFileIOException | NewFileCreationException ex) {
+            log.log(Level.SEVERE, "An error occured while creating file.", ex);
+            statusCallback.showError(ex.getMessage());
+            statusCallback.setStatus(rb.getString("FailedToCreateNewFile"));
+            return false;
+        }
+    }
+
+    /**
+     * Removes the duplicate styles of an output file, left by the versions
+     * which created a new style for every formatted area. The journal and the
+     * running totals of the output file are kept, and the output file is
+     * locked while it's compacted, see {@link OutputFileLock}.
+     *
+     * @param outputFile the output file.
+     * @return whether the file was compacted or had nothing to compact.
+     */
+    public boolean compactOutputFile(File outputFile) {
+        if (!outputFile.isFile()) {
+            log.log(Level.SEVERE, "The output file {0} was not found.", outputFile);
+            statusCallback.showError(rb.getString("OutputFileNotFoundMessage"));
+            statusCallback.setStatus(rb.getString("FailedToCompactFile"));
+            return false;
+        }
+        OutputFileLock lock;
+        try {
+            lock = OutputFileLock.lock(outputFile, lockTimeoutMillis);
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "The selected output file is in use by another process/program.", ex);
+            statusCallback.showError(rb.getString("OutputFileInUseException"));
+            statusCallback.setStatus(rb.getString("FailedToCompactFile"));
+            return false;
+        }
+        try {
+            int removed = ReportManager.compactOutputWorkbook(outputFile);
+            log.log(Level.INFO, "Removed {0} duplicate cell styles, fonts, fills and borders.", removed);
+            statusCallback.setStatus(rb.getString("SuccessfullyCompactedFile"));
+            return true;
+        } catch (IOException | InvalidFormatException ex) {
+            log.log(Level.SEVERE, "An error occured while compacting file.", ex);
+            statusCallback.showError(rb.getString("OutputFileIOExceptionMessage"));
+            statusCallback.setStatus(rb.getString("FailedToCompactFile"));
+            return false;
+        } finally {
+            try {
+                lock.close();
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "The output file cannot be unlocked.", ex);
+            }
+        }
+    }
+
+    /**
+     * Applies or undoes several input files of a store, loading and saving the
+     * output file once. Nothing is saved if one of them fails.
+     *
+     * @param inputFiles input files, for example the weeks of a season.
+     * @param outputFile the output file.
+     * @param undo whether the input files are removed from the output file.
+     * @param store the store the input files come from.
+     * @param streaming whether the largest output sheets are streamed when
+     * saving.
+     * @return whether the output file was saved.
+     */
+    public boolean generateReports(List<File> inputFiles, File outputFile, boolean undo, Stores store,
+            boolean streaming) {
+        return generateReports(inputFiles, outputFile, undo, RetailerLayout.forStore(store), streaming);
+    }
+
+    /**
+     * Applies or undoes several input files of a retail chain, loading and
+     * saving the output file once. Nothing is saved if one of them fails.
+     *
+     * @param inputFiles input files, for example the weeks of a season.
+     * @param outputFile the output file.
+     * @param undo whether the input files are removed from the output file.
+     * @param layout the layout of the input files.
+     * @param streaming whether the largest output sheets are streamed when
+     * saving.
+     * @return whether the output file was saved.
+     */
+    public boolean generateReports(List<File> inputFiles, File outputFile, boolean undo, RetailerLayout layout,
+            boolean streaming) {
+        ReportManager reportManager = new LayoutReportManager(layout, inputFiles, outputFile, undo);
+        reportManager.setStreamingOutput(streaming);
+        reportManager.setOutputBackups(outputBackups);
+        reportManager.setInputCache(inputCache);
+        reportManager.setTopCount(topCount);
+        reportManager.setRankingFile(rankingFile);
+        reportManager.setLockTimeoutMillis(lockTimeoutMillis);
+        ExecutorService parseExec = inputFiles.size() > 1
+                ? Executors.newFixedThreadPool(Math.min(inputFiles.size(), Runtime.getRuntime().availableProcessors()))
+                : null;
+        reportManager.setParseExecutor(parseExec);
+        try {
+            reportManager.generateReport();
+            statusCallback.setStatus(rb.getString("SuccessfullyGeneratedReport"));
+            return true;
+        } catch (OutputFileIsFullException | OutputFileNoRecordsFoundException | InputFileNotMatchingSelectedFileException | OutputFileNotCorrectException | OutputFileIOException | InputFileContainsNoValidDateException | InputFileIOException | InputFileAlreadyAppliedException ex) {
+            log.log(Level.SEVERE, "Failiure during raport generation!", ex);
+            statusCallback.showError(ex.getMessage());
+            statusCallback.setStatus(rb.getString("FailedToGenerateReport"));
+            return false;
+        } finally {
+            if (parseExec != null) {
+                parseExec.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Undoes or redoes the latest weeks of an output file, from its journal.
+     *
+     * @param outputFile the output file.
+     * @param steps the number of weeks.
+     * @param undo whether the weeks are undone or redone.
+     * @return whether the output file was saved.
+     */
+    public boolean replayWeeks(File outputFile, int steps, boolean undo) {
+        ReportManager reportManager = new LayoutReportManager(outputFile);
+        reportManager.setOutputBackups(outputBackups);
+        reportManager.setTopCount(topCount);
+        reportManager.setRankingFile(rankingFile);
+        reportManager.setLockTimeoutMillis(lockTimeoutMillis);
+        try {
+            if (undo) {
+                reportManager.undoWeeks(steps);
+            } else {
+                reportManager.redoWeeks(steps);
+            }
+            statusCallback.setStatus(rb.getString("SuccessfullyGeneratedReport"));
+            return true;
+        } catch (OutputFileIsFullException | OutputFileNoRecordsFoundException | OutputFileNotCorrectException | OutputFileIOException ex) {
+            log.log(Level.SEVERE, "Failiure during raport generation!", ex);
+            statusCallback.showError(ex.getMessage());
+            statusCallback.setStatus(rb.getString("FailedToGenerateReport"));
+            return false;
+        }
+    }
+
+    private int usage() {
+        statusCallback.showError(rb.getString("CommandLineUsage"));
+        return EXIT_USAGE;
+    }
+}
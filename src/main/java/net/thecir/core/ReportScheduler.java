@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+/**
+ * Runs the jobs on output files - one at a time and in the order given for
+ * each output file, in parallel for different output files, up to a limit.
+ * The output files are told apart by their canonical path, so two paths to
+ * the same file wait for each other. The jobs of other processes are kept
+ * out by the lock of the output file, see
+ * {@link net.thecir.filemanagers.OutputFileLock}.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+public class ReportScheduler {
+
+    public static final int DEFAULT_MAX_PARALLEL = 2;
+
+    private final ThreadPoolExecutor executor;
+    //The jobs waiting for the running job of their output file, by canonical path
+    private final Map<String, Queue<FutureTask<Void>>> waitingJobs = new HashMap<>();
+
+    /**
+     * @param maxParallel the most jobs run at the same time.
+     */
+    public ReportScheduler(int maxParallel) {
+        executor = new ThreadPoolExecutor(maxParallel, maxParallel, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the most jobs run at the same time.
+     */
+    public synchronized int getMaxParallel() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Changes the number of jobs run at the same time. The jobs running are
+     * not interrupted.
+     *
+     * @param maxParallel the most jobs run at the same time.
+     */
+    public synchronized void setMaxParallel(int maxParallel) {
+        if (maxParallel < 1) {
+            throw new IllegalArgumentException("At least one job must run: " + maxParallel);
+        }
+        if (maxParallel > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(maxParallel);
+            executor.setCorePoolSize(maxParallel);
+        } else {
+            executor.setCorePoolSize(maxParallel);
+            executor.setMaximumPoolSize(maxParallel);
+        }
+    }
+
+    /**
+     * Runs a job after the jobs submitted before it for the same output file.
+     *
+     * @param outputFile the output file of the job.
+     * @param job the job.
+     * @return the job, done once it has run.
+     */
+    public Future<?> submit(File outputFile, Runnable job) {
+        String key = getKey(outputFile);
+        FutureTask<Void> task = new FutureTask<>(job, null);
+        synchronized (waitingJobs) {
+            Queue<FutureTask<Void>> queue = waitingJobs.get(key);
+            if (queue != null) {
+                queue.add(task);
+                return task;
+            }
+            waitingJobs.put(key, new ArrayDeque<>());
+        }
+        try {
+            executor.execute(() -> run(key, task));
+        } catch (RejectedExecutionException ex) {
+            synchronized (waitingJobs) {
+                waitingJobs.remove(key);
+            }
+            throw ex;
+        }
+        return task;
+    }
+
+    /**
+     * Stops taking jobs. The jobs submitted already still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs a job, then hands the next job of its output file to the executor,
+     * behind the jobs of other output files submitted in the meantime. Once
+     * the executor is shut down, the jobs left run on this thread.
+     */
+    private void run(String key, FutureTask<Void> task) {
+        FutureTask<Void> next = task;
+        while (next != null) {
+            runAndLog(next);
+            synchronized (waitingJobs) {
+                next = waitingJobs.get(key).poll();
+                if (next == null) {
+                    waitingJobs.remove(key);
+                }
+            }
+            if (next != null) {
+                FutureTask<Void> queued = next;
+                try {
+                    executor.execute(() -> run(key, queued));
+                    return;
+                } catch (RejectedExecutionException ex) {
+                    //Shut down, the loop runs it
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a job. FutureTask keeps whatever the job throws, which is logged
+     * here, as nobody may wait for the job.
+     */
+    private static void runAndLog(FutureTask<Void> task) {
+        task.run();
+        try {
+            task.get();
+        } catch (ExecutionException ex) {
+            log.log(Level.SEVERE, "A job on an output file failed.", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String getKey(File outputFile) {
+        try {
+            return outputFile.getCanonicalPath();
+        } catch (IOException ex) {
+            return outputFile.getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.core;
+
+import java.util.ResourceBundle;
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import net.thecir.callbacks.StatusCallback;
+
+/**
+ * Shows the status in the status bar and the errors in a message dialog.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class SwingStatusCallback implements StatusCallback {
+
+    private final JFrame parentFrame;
+    private final JTextField statusBar;
+    private final ResourceBundle rb;
+
+    SwingStatusCallback(JFrame parentFrame, JTextField statusBar) {
+        this.parentFrame = parentFrame;
+        this.statusBar = statusBar;
+        rb = ResourceBundle.getBundle("CoreLanguageBundles/ErrorMessages");
+    }
+
+    @Override
+    public void setStatus(String status) {
+        SwingUtilities.invokeLater(() -> {
+            statusBar.setText(status);
+        });
+    }
+
+    @Override
+    public void showError(String message) {
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(parentFrame, message, rb.getString("MessageTitle"), JOptionPane.ERROR_MESSAGE);
+        });
+    }
+}
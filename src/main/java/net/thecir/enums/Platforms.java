@@ -23,6 +23,7 @@
  */
 package net.thecir.enums;
 
+import java.util.HashMap;
 import lombok.Getter;
 
 /**
@@ -30,28 +31,38 @@ import lombok.Getter;
  * @author Konstantin Tsanov <k.tsanov@gmail.com>
  */
 public enum Platforms {
-    PS2("PS2", "P2", "PS2"),
-    PS3("PS3", "P3", "PS3"),
-    PS4("PS4", "P4", "PS4"),
-    XBOX360("XBOX360", "XB3", "XBOX360"),
-    XBOXONE("XBOXONE", "XBO", "XBOXONE"),
-    WII("WII", "WII", "WII"),
-    PSP("PSP", "PSP", "PSP"),
-    DS3("3DS", "3D", "3DS"),
-    PSVITA("PSVITA", "PSV", "PSVITA"),
-    PC("PC", "PC", "PC"),
-    NDS("NDS", "DS", "NDS"),
-    Other("Other", "Other", "Other");
+    PS2("PS2"),
+    PS3("PS3"),
+    PS4("PS4"),
+    XBOX360("XBOX360"),
+    XBOXONE("XBOXONE"),
+    WII("WII"),
+    PSP("PSP"),
+    DS3("3DS"),
+    PSVITA("PSVITA"),
+    PC("PC"),
+    NDS("NDS"),
+    Other("Other");
+    private static final HashMap<String, Platforms> BY_OUTPUT_ABBREVIATION = new HashMap<>();
+
+    static {
+        for (Platforms platform : values()) {
+            BY_OUTPUT_ABBREVIATION.put(platform.outputAbbreviation, platform);
+        }
+    }
     @Getter
     private final String outputAbbreviation;
-    @Getter
-    private final String technopolisAbbreviation;
-    @Getter
-    private final String technomarketAbbreviation;
 
-    private Platforms(String outputAbbreviation, String technopolisAbbreviation, String technomarketAbbreviation) {
+    private Platforms(String outputAbbreviation) {
         this.outputAbbreviation = outputAbbreviation;
-        this.technopolisAbbreviation = technopolisAbbreviation;
-        this.technomarketAbbreviation = technomarketAbbreviation;
+    }
+
+    /**
+     * @param outputAbbreviation the platform name, as written in the output
+     * file.
+     * @return the platform, null if there's no such.
+     */
+    public static Platforms getByOutputAbbreviation(String outputAbbreviation) {
+        return BY_OUTPUT_ABBREVIATION.get(outputAbbreviation);
     }
 }
@@ -21,19 +21,21 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package net.thecir.constants;
+package net.thecir.exceptions;
 
 /**
- * All constants are zero-based here.
  *
  * @author Konstantin Tsanov <k.tsanov@gmail.com>
  */
-public final class TechnopolisConstants {
+public class InputFileAlreadyAppliedException extends Exception {
 
-    public static int ITEM_COLUMN = 0;
-    public static int GAME_DESCR_COLUMN = 1;
-    public static int SHOP_COLUMN = 2;
-    public static int SOLD_QUANTITY_COLUMN = 3;
-    public static int STOCK_COLUMN = 4;
-    public static int FIRST_ROW = 0;
+    private static final long serialVersionUID = 1L;
+
+    public InputFileAlreadyAppliedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InputFileAlreadyAppliedException(String message) {
+        super(message);
+    }
 }
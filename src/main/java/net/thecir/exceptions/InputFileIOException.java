@@ -21,22 +21,21 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package net.thecir.constants;
+package net.thecir.exceptions;
 
 /**
- * ZERO-BASED CONSTANTS!
  *
  * @author Konstantin Tsanov <k.tsanov@gmail.com>
  */
-public final class TechnomarketConstants {
+public class InputFileIOException extends Exception {
 
-    private TechnomarketConstants() {
-    }
-    public static int SHOPS_ROW = 4;
-    public static int SHOPS_FIRST_COLUMN = 7;
+    private static final long serialVersionUID = 1L;
 
-    public static int INFO_CELL_ROW = 2;
-    public static int INFO_CELL_COL = 0;
+    public InputFileIOException(String message, Throwable cause) {
+        super(message, cause);
+    }
 
-    public static int SHEET_FIRST_ROW = 0;
+    public InputFileIOException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+/**
+ * Saves a file so that a crash never leaves it half written. The content is
+ * written to a temporary file in the same directory, through a buffered
+ * FileChannel, forced to disk and then moved over the file atomically. Until
+ * the move, the previous file is left as it is. Optionally, the previous
+ * files are kept as numbered backups next to it, the latest one as
+ * &lt;name&gt;.1.bak.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+public class AtomicFileSaver {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String BACKUP_SUFFIX = ".bak";
+
+    /**
+     * Writes the content of the file.
+     */
+    @FunctionalInterface
+    public interface Content {
+
+        /**
+         * @param out the stream to write to, closed by the saver.
+         * @throws IOException if the content cannot be written.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    @Getter
+    private final File file;
+    //Number of previous files kept, 0 for none
+    @Getter
+    @Setter
+    private int backups;
+    //Time spent writing the content to the temporary file
+    @Getter
+    private long serializeNanos;
+    //Time spent forcing the temporary file to disk and moving it over the file
+    @Getter
+    private long syncNanos;
+    //Length and CRC32 of the file saved
+    @Getter
+    private long length;
+    @Getter
+    private long checksum;
+
+    /**
+     * @param file the file to save.
+     */
+    public AtomicFileSaver(File file) {
+        this.file = file.getAbsoluteFile();
+    }
+
+    /**
+     * @param file the file.
+     * @param generation 1 for the latest backup.
+     * @return the backup of the file.
+     */
+    public static File getBackupFile(File file, int generation) {
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + "." + generation + BACKUP_SUFFIX);
+    }
+
+    /**
+     * Saves the file. If anything fails, the file is left as it was.
+     *
+     * @param content writes the content of the file.
+     * @throws IOException if the file cannot be written or replaced.
+     */
+    public void save(Content content) throws IOException {
+        Path target = file.toPath();
+        Path tempFile = createTempFile(target);
+        try {
+            long serializeStart = System.nanoTime();
+            CRC32 crc = new CRC32();
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                OutputStream out = new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), crc);
+                //POI closes the stream it writes to, the channel is still needed to force it
+                content.writeTo(new FilterOutputStream(out) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                });
+                out.flush();
+                long syncStart = System.nanoTime();
+                serializeNanos = syncStart - serializeStart;
+                channel.force(true);
+                length = channel.size();
+                syncNanos = System.nanoTime() - syncStart;
+            }
+            checksum = crc.getValue();
+            if (backups > 0 && Files.exists(target)) {
+                rotateBackups(target);
+            }
+            long moveStart = System.nanoTime();
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                log.log(Level.WARNING, "The file system cannot replace {0} atomically.", file);
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(target.getParent());
+            syncNanos += System.nanoTime() - moveStart;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Creates the temporary file next to the target, with the permissions of
+     * the target if it exists, otherwise with the usual permissions of a new
+     * file.
+     */
+    private static Path createTempFile(Path target) throws IOException {
+        while (true) {
+            Path tempFile = target.resolveSibling("." + target.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.newByteChannel(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+            } catch (FileAlreadyExistsException ex) {
+                continue;
+            }
+            if (Files.exists(target)) {
+                try {
+                    Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(target));
+                } catch (UnsupportedOperationException ex) {
+                    //Not a POSIX file system, the file gets the default permissions
+                }
+            }
+            return tempFile;
+        }
+    }
+
+    /**
+     * Shifts the backups by one generation, dropping the oldest, and keeps
+     * the current file as the latest backup. The file is linked rather than
+     * copied where the file system allows it.
+     */
+    private void rotateBackups(Path target) throws IOException {
+        Files.deleteIfExists(getBackupFile(file, backups).toPath());
+        for (int generation = backups - 1; generation >= 1; generation--) {
+            Path backup = getBackupFile(file, generation).toPath();
+            if (Files.exists(backup)) {
+                Files.move(backup, getBackupFile(file, generation + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path latest = getBackupFile(file, 1).toPath();
+        try {
+            Files.createLink(latest, target);
+        } catch (IOException | UnsupportedOperationException ex) {
+            Files.copy(target, latest, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Forces the directory entry of the moved file to disk, where the file
+     * system allows opening a directory.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            //E.g. on Windows, where the move is durable on its own
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The directories of the caches kept between runs, under
+ * &lt;home&gt;/.LiteReportManager. The cached files end up in the output
+ * files, so they are kept where only the current user can write - the temp
+ * directory is shared, and another user could create the cache directory in
+ * it first. Where the file system has POSIX permissions, the directories are
+ * created for the owner only, and a directory owned by another user or
+ * writable by others is refused.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class CacheDirectory {
+
+    private static final String ROOT = ".LiteReportManager";
+    private static final Set<PosixFilePermission> OTHERS_WRITE = EnumSet.of(PosixFilePermission.GROUP_WRITE,
+            PosixFilePermission.OTHERS_WRITE);
+
+    private CacheDirectory() {
+    }
+
+    /**
+     * @param name the name of the cache.
+     * @return the directory of the cache, created if missing.
+     * @throws IOException if the directory cannot be created, or may have
+     * been written by another user.
+     */
+    public static Path get(String name) throws IOException {
+        Path home = Paths.get(System.getProperty("user.home"));
+        Path root = home.resolve(ROOT);
+        Path directory = root.resolve(name);
+        PosixFileAttributeView homeView = Files.getFileAttributeView(home, PosixFileAttributeView.class);
+        if (homeView == null) {
+            Files.createDirectories(directory);
+            return directory;
+        }
+        for (Path path : new Path[]{root, directory}) {
+            if (!Files.isDirectory(path)) {
+                try {
+                    Files.createDirectory(path, PosixFilePermissions.asFileAttribute(
+                            PosixFilePermissions.fromString("rwx------")));
+                } catch (FileAlreadyExistsException ex) {
+                    //Created meanwhile, checked below
+                }
+            }
+            PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class);
+            if (!attributes.isDirectory() || !attributes.owner().equals(homeView.getOwner())
+                    || attributes.permissions().stream().anyMatch(OTHERS_WRITE::contains)) {
+                throw new IOException("The cache directory " + path + " is not the user's own.");
+            }
+        }
+        return directory;
+    }
+}
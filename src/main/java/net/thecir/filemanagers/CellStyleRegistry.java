@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Hands out the cell styles and fonts of a workbook by their attributes, so
+ * each distinct style and font is created in the workbook once. XSSF adds a
+ * new style and font on every create call, even if an identical one exists.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class CellStyleRegistry {
+
+    /**
+     * Background color of the styles without a fill.
+     */
+    static final int NO_BACKGROUND = -1;
+
+    private final XSSFWorkbook wb;
+    private final Map<List<Object>, XSSFCellStyle> styles = new HashMap<>();
+    private final Map<List<Object>, XSSFFont> fonts = new HashMap<>();
+
+    CellStyleRegistry(XSSFWorkbook workbook) {
+        this.wb = workbook;
+    }
+
+    /**
+     * @param bold whether the font is bold.
+     * @param heightInPoints height of the font, 0 for the default one.
+     * @return the font with these attributes.
+     */
+    XSSFFont getFont(boolean bold, short heightInPoints) {
+        List<Object> key = Arrays.asList(bold, heightInPoints);
+        XSSFFont font = fonts.get(key);
+        if (font == null) {
+            font = wb.createFont();
+            font.setBold(bold);
+            if (heightInPoints > 0) {
+                font.setFontHeightInPoints(heightInPoints);
+            }
+            fonts.put(key, font);
+        }
+        return font;
+    }
+
+    /**
+     * @param border border around the cells, null for none.
+     * @param alignment horizontal alignment, null for the general one.
+     * @param font font from getFont, null for the default one.
+     * @param rotationDegrees rotation of the text.
+     * @param backgroundColor solid background as 0xRRGGBB, NO_BACKGROUND for
+     * none.
+     * @param dataFormat number format, null for the general one.
+     * @return the style with these attributes.
+     */
+    XSSFCellStyle getStyle(BorderStyle border, HorizontalAlignment alignment, XSSFFont font, short rotationDegrees,
+            int backgroundColor, String dataFormat) {
+        List<Object> key = Arrays.asList(border, alignment, font == null ? null : font.getIndex(), rotationDegrees,
+                backgroundColor, dataFormat);
+        XSSFCellStyle style = styles.get(key);
+        if (style == null) {
+            style = wb.createCellStyle();
+            if (border != null) {
+                applyBorderStyle(style, border);
+            }
+            if (alignment != null) {
+                style.setAlignment(alignment);
+            }
+            if (font != null) {
+                style.setFont(font);
+            }
+            if (rotationDegrees != 0) {
+                style.setRotation(rotationDegrees);
+            }
+            if (backgroundColor != NO_BACKGROUND) {
+                setBackgroundColor(style, backgroundColor);
+            }
+            if (dataFormat != null) {
+                style.setDataFormat(wb.createDataFormat().getFormat(dataFormat));
+            }
+            styles.put(key, style);
+        }
+        return style;
+    }
+
+    /**
+     * Creates a border around the selected cells
+     *
+     * @param style Style to apply the border to.
+     * @param borderStyle Type of border.
+     */
+    private void applyBorderStyle(XSSFCellStyle style, BorderStyle borderStyle) {
+        style.setBorderBottom(borderStyle);
+        style.setBorderLeft(borderStyle);
+        style.setBorderRight(borderStyle);
+        style.setBorderTop(borderStyle);
+    }
+
+    /**
+     * Sets background color to selected style.
+     *
+     * @param style Style to apply color to.
+     * @param color Color to be applied, as 0xRRGGBB. Kept off java.awt.Color
+     * so the files can be created without AWT.
+     */
+    private void setBackgroundColor(XSSFCellStyle style, int color) {
+        XSSFColor myColor = new XSSFColor(new byte[]{(byte) (color >> 16), (byte) (color >> 8), (byte) color});
+        style.setFillForegroundColor(myColor);
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * Digests the class files of the classes a cache entry is made with, so an
+ * entry made by an older version is never served. A class is read with its
+ * nested and anonymous classes, through its own class loader.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class ClassFingerprint {
+
+    private ClassFingerprint() {
+    }
+
+    /**
+     * @param digest the digest to update.
+     * @param classes the classes, with their nested and anonymous classes.
+     * @throws IOException if the class file of a class cannot be read.
+     */
+    public static void update(MessageDigest digest, Class<?>... classes) throws IOException {
+        for (Class<?> type : classes) {
+            if (!updateResource(digest, type, type.getName().replace('.', '/') + ".class")) {
+                throw new IOException("Missing class file of " + type.getName());
+            }
+            for (Class<?> nestedClass : type.getDeclaredClasses()) {
+                update(digest, nestedClass);
+            }
+            //The anonymous classes are numbered from 1
+            for (int anonymous = 1; updateResource(digest, type, type.getName().replace('.', '/') + "$" + anonymous + ".class"); anonymous++) {
+            }
+        }
+    }
+
+    /**
+     * @param digest the digest to update.
+     * @param loadedBy the class whose class loader reads the resource.
+     * @param resource the path of the resource.
+     * @return false if there's no such resource.
+     * @throws IOException if the resource cannot be read.
+     */
+    public static boolean updateResource(MessageDigest digest, Class<?> loadedBy, String resource) throws IOException {
+        ClassLoader loader = loadedBy.getClassLoader();
+        try (InputStream in = loader != null ? loader.getResourceAsStream(resource)
+                : ClassLoader.getSystemResourceAsStream(resource)) {
+            if (in == null) {
+                return false;
+            }
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+            return true;
+        }
+    }
+}
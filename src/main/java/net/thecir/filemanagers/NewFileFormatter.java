@@ -23,14 +23,11 @@
  */
 package net.thecir.filemanagers;
 
-import java.awt.Color;
 import net.thecir.constants.Constants;
 import net.thecir.enums.Platforms;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.FillPatternType;
-import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -38,7 +35,6 @@ import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.ss.util.CellUtil;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
-import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
@@ -49,6 +45,7 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 public class NewFileFormatter {
 
     private final XSSFWorkbook wb;
+    private final CellStyleRegistry styles;
 
     /**
      * Creates a formatter for the new workbook
@@ -57,6 +54,7 @@ public class NewFileFormatter {
      */
     public NewFileFormatter(XSSFWorkbook workbook) {
         this.wb = workbook;
+        this.styles = new CellStyleRegistry(workbook);
     }
 
     /**
@@ -170,19 +168,13 @@ public class NewFileFormatter {
     private void firstSheetTableSellout(XSSFSheet sheet) {
         CellRangeAddress tableAddress = CellRangeAddress.valueOf("B" + Constants.PLATFORMS_TABLE_WEEK_ROW + ":BE" + Constants.PLATFORMS_TABLE_LASTROW);
         createCells(tableAddress, sheet);
-        XSSFCellStyle tableCellStyle = (XSSFCellStyle) wb.createCellStyle();
-        applyBorderStyle(tableCellStyle, BorderStyle.THIN);
+        XSSFCellStyle tableCellStyle = tableStyle(null);
         applyStyleToCells(tableAddress, sheet, tableCellStyle);
-        XSSFCellStyle totalBarCellStyle = (XSSFCellStyle) wb.createCellStyle();
-        totalBarCellStyle.cloneStyleFrom(tableCellStyle);
-        Font tableFont = wb.createFont();
-        tableFont.setBold(true);
-        tableFont.setFontHeightInPoints((short) 12);
-        totalBarCellStyle.setFont(tableFont);
+        XSSFCellStyle totalBarCellStyle = styles.getStyle(BorderStyle.THIN, null, styles.getFont(true, (short) 12), (short) 0,
+                CellStyleRegistry.NO_BACKGROUND, null);
         applyStyleToCells(CellRangeAddress.valueOf("B" + Constants.PLATFORMS_TABLE_LASTROW + ":BC" + Constants.PLATFORMS_TABLE_LASTROW), sheet, totalBarCellStyle);
-        XSSFCellStyle weekBarStyle = (XSSFCellStyle) wb.createCellStyle();
-        weekBarStyle.cloneStyleFrom(tableCellStyle);
-        align(weekBarStyle, HorizontalAlignment.RIGHT);
+        XSSFCellStyle weekBarStyle = styles.getStyle(BorderStyle.THIN, HorizontalAlignment.RIGHT, null, (short) 0,
+                CellStyleRegistry.NO_BACKGROUND, null);
         applyStyleToCells(CellRangeAddress.valueOf("C" + Constants.PLATFORMS_TABLE_WEEK_ROW + ":BB" + Constants.PLATFORMS_TABLE_WEEK_ROW), sheet, weekBarStyle);
         //Sets the platforms labels to the left and right
         int rowIter = Constants.PLATFORM_HEADER_FIRST_ROW;
@@ -210,18 +202,12 @@ public class NewFileFormatter {
             totalCell.setCellType(CellType.FORMULA);
             totalCell.setCellFormula("SUM(" + letter + Constants.PLATFORM_HEADER_FIRST_ROW + ":" + letter + Constants.PLATFORM_HEADER_LAST_ROW + ")");
         }
-        XSSFCellStyle totalPcsStyle = (XSSFCellStyle) wb.createCellStyle();
-        totalPcsStyle.cloneStyleFrom(tableCellStyle);
-        //Same as before
-        totalBarCellStyle.setFont(tableFont);
-        applyStyleToCells(CellRangeAddress.valueOf("BD" + Constants.PLATFORMS_TABLE_WEEK_ROW), sheet, totalPcsStyle);
+        applyStyleToCells(CellRangeAddress.valueOf("BD" + Constants.PLATFORMS_TABLE_WEEK_ROW), sheet, tableCellStyle);
         CellReference totalPcs = new CellReference("BD" + Constants.PLATFORMS_TABLE_WEEK_ROW);
         Cell totalPcsLabelCell = sheet.getRow(totalPcs.getRow()).getCell(totalPcs.getCol());
         totalPcsLabelCell.setCellValue(Constants.TOTAL_PCS);
         //Sets color of the total pcs column
-        XSSFCellStyle totalPcsColumnStyle = (XSSFCellStyle) wb.createCellStyle();
-        totalPcsColumnStyle.cloneStyleFrom(tableCellStyle);
-        setBackgroundColor(totalPcsColumnStyle, 0x92D050);
+        XSSFCellStyle totalPcsColumnStyle = styles.getStyle(BorderStyle.THIN, null, null, (short) 0, 0x92D050, null);
         applyStyleToCells(CellRangeAddress.valueOf("BD" + Constants.PLATFORM_HEADER_FIRST_ROW + ":BD" + Constants.PLATFORMS_TABLE_LASTROW), sheet, totalPcsColumnStyle);
         //From platforms firstrow to the last row of the table, so i can sum all weeks
         for (int i = Constants.PLATFORM_HEADER_FIRST_ROW; i <= Constants.PLATFORMS_TABLE_LASTROW; i++) {
@@ -231,9 +217,7 @@ public class NewFileFormatter {
             totalPcsCell.setCellFormula("SUM(C" + i + ":BB" + i + ")");
         }
         //Percentage column formatting
-        XSSFCellStyle percentageColumnStyle = (XSSFCellStyle) wb.createCellStyle();
-        percentageColumnStyle.cloneStyleFrom(tableCellStyle);
-        percentageColumnStyle.setDataFormat(wb.createDataFormat().getFormat("0.00%"));
+        XSSFCellStyle percentageColumnStyle = tableStyle("0.00%");
         applyStyleToCells(CellRangeAddress.valueOf("BE" + Constants.PLATFORM_HEADER_FIRST_ROW + ":BE" + Constants.PLATFORMS_TABLE_LASTROW), sheet, percentageColumnStyle);
         //Percentage column formulas
         for (int i = Constants.PLATFORM_HEADER_FIRST_ROW; i <= Constants.PLATFORM_HEADER_LAST_ROW; i++) {
@@ -252,9 +236,7 @@ public class NewFileFormatter {
     private void firstSheetTableStockFormat(XSSFSheet sheet) {
         CellRangeAddress tableAddress = CellRangeAddress.valueOf("BH" + Constants.PLATFORM_HEADER_FIRST_ROW + ":" + "BJ" + Constants.PLATFORMS_TABLE_LASTROW);
         createCells(tableAddress, sheet);
-        XSSFCellStyle tableCellStyle = (XSSFCellStyle) wb.createCellStyle();
-        applyBorderStyle(tableCellStyle, BorderStyle.THIN);
-        applyStyleToCells(tableAddress, sheet, tableCellStyle);
+        applyStyleToCells(tableAddress, sheet, tableStyle(null));
         //Adds platform labels to table stock
         int rowIter = Constants.PLATFORM_HEADER_FIRST_ROW;
         for (Platforms platform : Platforms.values()) {
@@ -283,9 +265,7 @@ public class NewFileFormatter {
         Cell daysInStockLabelCell = sheet.getRow(daysInStockLabelCellRef.getRow()).getCell(daysInStockLabelCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
         daysInStockLabelCell.setCellValue(Constants.DAYS_IN_STOCK);
         //Sets the days in stock number format
-        XSSFCellStyle daysInStockNumberFormat = (XSSFCellStyle) wb.createCellStyle();
-        daysInStockNumberFormat.cloneStyleFrom(tableCellStyle);
-        daysInStockNumberFormat.setDataFormat(wb.createDataFormat().getFormat("0"));
+        XSSFCellStyle daysInStockNumberFormat = tableStyle("0");
         applyStyleToCells(CellRangeAddress.valueOf("BJ" + Constants.PLATFORM_HEADER_FIRST_ROW + ":BJ" + Constants.PLATFORMS_TABLE_LASTROW), sheet, daysInStockNumberFormat);
 
         CellReference totalDaysInStockRef = new CellReference("BJ" + Constants.PLATFORMS_TABLE_LASTROW);
@@ -298,9 +278,7 @@ public class NewFileFormatter {
     private void firstSheetTableTotalFormat(XSSFSheet sheet) {
         CellRangeAddress tableAddress = CellRangeAddress.valueOf("BM" + Constants.PLATFORM_HEADER_FIRST_ROW + ":" + "BO" + Constants.PLATFORMS_TABLE_LASTROW);
         createCells(tableAddress, sheet);
-        XSSFCellStyle tableCellStyle = (XSSFCellStyle) wb.createCellStyle();
-        applyBorderStyle(tableCellStyle, BorderStyle.THIN);
-        applyStyleToCells(tableAddress, sheet, tableCellStyle);
+        applyStyleToCells(tableAddress, sheet, tableStyle(null));
 
         //Sets the platform labels to the table
         int rowIter = Constants.PLATFORM_HEADER_FIRST_ROW;
@@ -319,9 +297,7 @@ public class NewFileFormatter {
         Cell salesLabelCell = sheet.getRow(salesLabelRef.getRow()).getCell(salesLabelRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
         salesLabelCell.setCellValue(Constants.SALES);
         //Sets the percentage column style
-        XSSFCellStyle percentageStyle = (XSSFCellStyle) wb.createCellStyle();
-        percentageStyle.cloneStyleFrom(tableCellStyle);
-        percentageStyle.setDataFormat(wb.createDataFormat().getFormat("0.00%"));
+        XSSFCellStyle percentageStyle = tableStyle("0.00%");
         //Applies percentage style to the sales column
         applyStyleToCells(CellRangeAddress.valueOf("BN" + Constants.PLATFORM_HEADER_FIRST_ROW + ":BN" + Constants.PLATFORMS_TABLE_LASTROW), sheet, percentageStyle);
 
@@ -382,30 +358,20 @@ public class NewFileFormatter {
         CellRangeAddress tableAddress = CellRangeAddress.valueOf(cellRange);
         createCells(tableAddress, sheet);
 
-        XSSFCellStyle tableStyle = (XSSFCellStyle) wb.createCellStyle();
-        applyBorderStyle(tableStyle, BorderStyle.THIN);
+        XSSFCellStyle tableStyle = tableStyle(null);
         applyStyleToCells(tableAddress, sheet, tableStyle);
 
         formatLabel(tableLabel, new CellRangeAddress(tableAddress.getFirstRow(), tableAddress.getFirstRow(), tableAddress.getFirstColumn(), tableAddress.getLastColumn())
                 .formatAsString(), sheet, 0xFFA500, (short) 0);
 
-        XSSFCellStyle firstRowLabelStyle = (XSSFCellStyle) wb.createCellStyle();
-        firstRowLabelStyle.cloneStyleFrom(tableStyle);
-
-        Font labelFont = wb.createFont();
-        labelFont.setBold(true);
-        firstRowLabelStyle.setFont(labelFont);
-
         for (int i = tableAddress.getFirstRow() + 1; i <= tableAddress.getLastRow(); i++) {
             CellRangeAddress secondRowLabelAddress = new CellRangeAddress(i, i, tableAddress.getFirstColumn(), tableAddress.getLastColumn() - 1);
             mergeCells(secondRowLabelAddress, sheet);
             applyStyleToCells(secondRowLabelAddress, sheet, tableStyle);
         }
 
-        XSSFCellStyle secondRowStyle = (XSSFCellStyle) wb.createCellStyle();
-        secondRowStyle.cloneStyleFrom(tableStyle);
-        secondRowStyle.setFont(labelFont);
-        align(secondRowStyle, HorizontalAlignment.CENTER);
+        XSSFCellStyle secondRowStyle = styles.getStyle(BorderStyle.THIN, HorizontalAlignment.CENTER,
+                styles.getFont(true, (short) 0), (short) 0, CellStyleRegistry.NO_BACKGROUND, null);
 
         Row secondRow = sheet.getRow(tableAddress.getFirstRow() + 1);
         Cell secondRowLeftCell = secondRow.getCell(tableAddress.getFirstColumn());
@@ -430,8 +396,8 @@ public class NewFileFormatter {
 
         CellRangeAddress region = new CellRangeAddress(row, row, column, column + Platforms.values().length);
         createCells(region, sheet);
-        XSSFCellStyle style = (XSSFCellStyle) wb.createCellStyle();
-        align(style, HorizontalAlignment.CENTER);
+        XSSFCellStyle style = styles.getStyle(null, HorizontalAlignment.CENTER, null, (short) 0,
+                CellStyleRegistry.NO_BACKGROUND, null);
         applyStyleToCells(region, sheet, style);
         int iterator = column;
         for (Platforms platform : Platforms.values()) {
@@ -473,14 +439,8 @@ public class NewFileFormatter {
     //--------------TOOLS-----------------
     private void formatLabel(String labelText, String cellRange, Sheet sheet, int backgroundColor, short rotationDegrees) {
         CellRangeAddress region = CellRangeAddress.valueOf(cellRange);
-        XSSFCellStyle style = (XSSFCellStyle) wb.createCellStyle();
-        applyBorderStyle(style, BorderStyle.THIN);
-        align(style, HorizontalAlignment.CENTER);
-        Font font = wb.createFont();
-        font.setBold(true);
-        style.setFont(font);
-        setRotation(style, rotationDegrees);
-        setBackgroundColor(style, backgroundColor);
+        XSSFCellStyle style = styles.getStyle(BorderStyle.THIN, HorizontalAlignment.CENTER,
+                styles.getFont(true, (short) 0), rotationDegrees, backgroundColor, null);
         createCells(region, sheet);
         applyStyleToCells(region, sheet, style);
         mergeCells(region, sheet);
@@ -488,41 +448,13 @@ public class NewFileFormatter {
     }
 
     /**
-     * Creates a border around the selected cells
-     *
-     * @param style Style to apply the border to.
-     * @param borderStyle Type of border.
-     */
-    private void applyBorderStyle(XSSFCellStyle style, BorderStyle borderStyle) {
-        style.setBorderBottom(borderStyle);
-        style.setBorderLeft(borderStyle);
-        style.setBorderRight(borderStyle);
-        style.setBorderTop(borderStyle);
-    }
-
-    /**
-     * Applies centering to a style.
-     *
-     * @param style Style to apply center to.
-     */
-    private void align(XSSFCellStyle style, HorizontalAlignment alignment) {
-        style.setAlignment(alignment);
-    }
-
-    private void setRotation(XSSFCellStyle style, short degrees) {
-        style.setRotation(degrees);
-    }
-
-    /**
-     * Sets background color to selected style.
+     * The thin bordered style of the tables.
      *
-     * @param style Style to apply color to.
-     * @param color Color to be applied.
+     * @param dataFormat number format, null for the general one.
+     * @return the style, shared by all tables of the workbook.
      */
-    private void setBackgroundColor(XSSFCellStyle style, int color) {
-        XSSFColor myColor = new XSSFColor(new Color(color));
-        style.setFillForegroundColor(myColor);
-        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    private XSSFCellStyle tableStyle(String dataFormat) {
+        return styles.getStyle(BorderStyle.THIN, null, null, (short) 0, CellStyleRegistry.NO_BACKGROUND, dataFormat);
     }
 
     /**
@@ -23,20 +23,28 @@
  */
 package net.thecir.filemanagers;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ResourceBundle;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
-import javax.swing.SwingUtilities;
 import lombok.extern.java.Log;
 import net.thecir.callbacks.FileCallback;
+import net.thecir.constants.Constants;
+import net.thecir.enums.Platforms;
 import net.thecir.exceptions.NewFileCreationException;
 import net.thecir.exceptions.OutputFileIOException;
+import org.apache.poi.Version;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
@@ -47,7 +55,16 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 @Log
 public class NewFileManager {
 
+    private static final String DEFAULT_WORKBOOK = "excel/default.xlsx";
+    private static final String TEMPLATE_PREFIX = "template-";
+    private static final String TEMPLATE_SUFFIX = ".xlsx";
+    //The classes the default workbook is formatted with, with their nested classes
+    private static final Class<?>[] FORMATTER_CLASSES = {NewFileManager.class, NewFileFormatter.class,
+        CellStyleRegistry.class, Constants.class, Platforms.class};
+
     private volatile FileCallback fileCallback;
+    //Formatted default workbook, copied to every new file
+    private Path templateFile;
 
     private static NewFileManager instance;
     private static ResourceBundle rb;
@@ -67,59 +84,163 @@ public class NewFileManager {
         this.fileCallback = fileCallback;
     }
 
-    public boolean createNewWorkbook() throws OutputFileIOException, NewFileCreationException {
-        XSSFWorkbook wb;
+    public FileCallback getFileCallback() {
+        return fileCallback;
+    }
+
+    /**
+     * Creates a new, formatted output file. Runs on the calling thread, the
+     * file is selected beforehand. The formatted workbook is the same every
+     * time, so it's built once and cached, and the new file is a copy of it.
+     * The file is locked while it's saved, see {@link OutputFileLock}.
+     *
+     * @param file the file to create.
+     * @throws OutputFileIOException if the file is in use or cannot be saved.
+     * @throws NewFileCreationException if the default workbook cannot be
+     * read.
+     */
+    public void createNewWorkbook(File file) throws OutputFileIOException, NewFileCreationException {
+        createNewWorkbook(file, OutputFileLock.DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a new, formatted output file, see {@link #createNewWorkbook(File)}.
+     *
+     * @param file the file to create.
+     * @param lockTimeoutMillis how long to wait for the jobs on the file to
+     * finish, {@link OutputFileLock#WAIT_INDEFINITELY} to wait until they do.
+     * @throws OutputFileIOException if the file is in use or cannot be saved.
+     * @throws NewFileCreationException if the default workbook cannot be
+     * read.
+     */
+    public void createNewWorkbook(File file, long lockTimeoutMillis) throws OutputFileIOException,
+            NewFileCreationException {
+        Path template = getTemplateFile();
+        OutputFileLock lock;
         try {
-            wb = new XSSFWorkbook(ClassLoader.getSystemResourceAsStream("excel/default.xlsx"));
-            NewFileFormatter formatter = new NewFileFormatter(wb);
-            formatter.formatWorkbook();
-            FutureTask<File> getFileTask = new FutureTask<>(new Callable<File>() {
-                @Override
-                public File call() {
-                    return fileCallback.getFile();
-                }
-            });
-            try {
-                SwingUtilities.invokeAndWait(getFileTask);
-            } catch (InterruptedException ex) {
-                log.log(Level.SEVERE, "A thread waiting for the user to select new file to be created has been interrupted.", ex);
-                throw new RuntimeException(rb.getString("FailedToCreateNewFile"));
-            } catch (InvocationTargetException ex) {
-                log.log(Level.SEVERE, "Invocation of the runnable to obtain the new file name/path has failed.", ex);
-                throw new RuntimeException(rb.getString("FailedToCreateNewFile"));
+            lock = OutputFileLock.lock(file, lockTimeoutMillis);
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "The selected output file is in use by another process/program.", ex);
+            throw new OutputFileIOException(rb.getString("OutputFileInUseException"), ex);
+        }
+        try {
+            if (template != null) {
+                //Copied through a stream, so the file gets the usual permissions and not those of the cache
+                new AtomicFileSaver(file).save(fileOut -> Files.copy(template, fileOut));
+            } else {
+                ByteArrayOutputStream formatted = new ByteArrayOutputStream();
+                writeTemplate(formatted);
+                new AtomicFileSaver(file).save(formatted::writeTo);
             }
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Failed to save output file!", ex);
+            throw new OutputFileIOException("A problem occured while saving file!");
+        } finally {
+            unlock(lock);
+        }
+    }
 
-            File file = null;
-            try {
-                file = getFileTask.get();
-            } catch (InterruptedException ex) {
-                log.log(Level.SEVERE, "The thread waiting for the user to select new file to be created has been interrupted.", ex);
-                throw new RuntimeException(rb.getString("FailedToCreateNewFile"));
-            } catch (ExecutionException ex) {
-                log.log(Level.SEVERE, "Failed to obtain the new file name.", ex);
-                throw new RuntimeException(rb.getString("FailedToCreateNewFile"));
-            }
-            if (file == null) {
-                return false;
-            }
-            if (file.exists() && !file.renameTo(file)) {
-                log.log(Level.SEVERE, "The selected output file is in use by another process/program.");
-                throw new OutputFileIOException(rb.getString("OutputFileInUseException"));
+    private void unlock(OutputFileLock lock) {
+        try {
+            lock.close();
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The output file cannot be unlocked.", ex);
+        }
+    }
+
+    /**
+     * The formatted workbook is cached in the user's cache directory, see
+     * {@link CacheDirectory}, under a key of
+     * the default workbook, the classes it's formatted with and the POI
+     * version, so a changed format is never served from an old cache. The
+     * workbooks cached under other keys are deleted once a new one is cached.
+     *
+     * @return the cached formatted workbook, null if it cannot be cached.
+     * @throws NewFileCreationException if the default workbook cannot be
+     * read.
+     */
+    private synchronized Path getTemplateFile() throws NewFileCreationException {
+        if (templateFile != null && Files.isRegularFile(templateFile)) {
+            return templateFile;
+        }
+        Path file;
+        try {
+            Path cacheDir = CacheDirectory.get("templates");
+            file = cacheDir.resolve(TEMPLATE_PREFIX + getTemplateKey() + TEMPLATE_SUFFIX);
+            if (!Files.isRegularFile(file)) {
+                Path tempFile = Files.createTempFile(cacheDir, "template", ".tmp");
+                try {
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                        writeTemplate(out);
+                    }
+                    Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                deleteOtherTemplates(cacheDir, file);
             }
-            try (FileOutputStream fileOut = new FileOutputStream(file)) {
-                wb.write(fileOut);
-                fileCallback.setAsOutputAndDisplay();
-                return true;
-            } catch (IOException ex) {
-                log.log(Level.SEVERE, "Failed to save output file!", ex);
-                throw new OutputFileIOException("A problem occured while saving file!");
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The formatted workbook cannot be cached, new files are formatted one by one.", ex);
+            return null;
+        }
+        templateFile = file;
+        return templateFile;
+    }
+
+    /**
+     * @return the SHA-256 of the default workbook, of the classes it's
+     * formatted with and of the POI version.
+     * @throws IOException if the default workbook or a class cannot be read.
+     */
+    private String getTemplateKey() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("SHA-256 is not available.", ex);
+        }
+        if (!ClassFingerprint.updateResource(digest, NewFileManager.class, DEFAULT_WORKBOOK)) {
+            throw new IOException("Missing resource " + DEFAULT_WORKBOOK);
+        }
+        ClassFingerprint.update(digest, FORMATTER_CLASSES);
+        digest.update(Version.getVersion().getBytes(StandardCharsets.UTF_8));
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    /**
+     * Deletes the formatted workbooks cached under other keys, left by other
+     * versions.
+     */
+    private void deleteOtherTemplates(Path cacheDir, Path file) {
+        try (DirectoryStream<Path> templates = Files.newDirectoryStream(cacheDir, TEMPLATE_PREFIX + "*" + TEMPLATE_SUFFIX)) {
+            for (Path template : templates) {
+                if (!template.equals(file)) {
+                    Files.deleteIfExists(template);
+                }
             }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The formatted workbooks of other versions cannot be deleted.", ex);
+        }
+    }
 
-        } catch (OutputFileIOException ex) {
-            throw ex;
+    /**
+     * Formats the default workbook.
+     *
+     * @param out the stream to write the formatted workbook to.
+     * @throws IOException if the formatted workbook cannot be written.
+     * @throws NewFileCreationException if the default workbook cannot be
+     * read.
+     */
+    private void writeTemplate(OutputStream out) throws IOException, NewFileCreationException {
+        XSSFWorkbook wb;
+        try {
+            wb = new XSSFWorkbook(NewFileManager.class.getClassLoader().getResourceAsStream(DEFAULT_WORKBOOK));
         } catch (IOException ex) {
             log.log(Level.SEVERE, "A problem occured while getting the default workbook...", ex);
             throw new NewFileCreationException("Cannot create new file!");
         }
+        NewFileFormatter formatter = new NewFileFormatter(wb);
+        formatter.formatWorkbook();
+        wb.write(out);
     }
 }
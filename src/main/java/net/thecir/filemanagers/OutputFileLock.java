@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks an output file for the length of a job. The jobs of this process
+ * take turns on a semaphore of the output file, the jobs of other processes
+ * are kept out with a FileChannel lock on a file next to it,
+ * &lt;name&gt;.lock. Only the job holding the semaphore opens the lock file -
+ * on POSIX systems closing any channel of a file releases every lock the
+ * process holds on it, so a job still waiting must not have one. The output
+ * file itself is replaced when it's saved, so a lock on it would not last
+ * until the end of the job. The lock file is named after the canonical path
+ * of the output file, so two paths to the same file lock the same file, and
+ * is left in place, as deleting it would let the next two jobs lock
+ * different files; it's one of the files kept next to the output file, with
+ * its totals and its journal. A job waits for the lock up to a time limit,
+ * then the output file is taken to be in use.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class OutputFileLock implements Closeable {
+
+    /**
+     * How long a job waits for the jobs on its output file to finish by
+     * default, longer than a report into a large output file takes.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * Timeout to wait for the lock for as long as it takes.
+     */
+    public static final long WAIT_INDEFINITELY = 0;
+
+    private static final long RETRY_MILLIS = 100;
+    private static final String SUFFIX = ".lock";
+
+    //The semaphores of the lock files held or waited for in this process, by path
+    private static final Map<File, FileSemaphore> SEMAPHORES = new HashMap<>();
+
+    private final File lockFile;
+    private final FileSemaphore semaphore;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private OutputFileLock(File lockFile, FileSemaphore semaphore, FileChannel channel, FileLock lock) {
+        this.lockFile = lockFile;
+        this.semaphore = semaphore;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * @param outputFile the output file.
+     * @return the file the output file is locked with.
+     */
+    public static File getLockFile(File outputFile) {
+        File file;
+        try {
+            file = outputFile.getCanonicalFile();
+        } catch (IOException ex) {
+            file = outputFile.getAbsoluteFile();
+        }
+        return new File(file.getParentFile(), file.getName() + SUFFIX);
+    }
+
+    /**
+     * Locks an output file, waiting for the jobs on it to finish for up to
+     * {@link #DEFAULT_TIMEOUT_MILLIS}.
+     *
+     * @param outputFile the output file.
+     * @return the lock, to be closed at the end of the job.
+     * @throws IOException if the lock file cannot be opened, or the output
+     * file is still locked by another job.
+     */
+    public static OutputFileLock lock(File outputFile) throws IOException {
+        return lock(outputFile, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Locks an output file, waiting for the jobs on it, of this process or of
+     * other processes, to finish.
+     *
+     * @param outputFile the output file.
+     * @param timeoutMillis how long to wait for the lock,
+     * {@link #WAIT_INDEFINITELY} to wait until it's free.
+     * @return the lock, to be closed at the end of the job.
+     * @throws IOException if the lock file cannot be opened, or the output
+     * file is still locked by another job after the wait.
+     */
+    public static OutputFileLock lock(File outputFile, long timeoutMillis) throws IOException {
+        File lockFile = getLockFile(outputFile);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        FileSemaphore semaphore = acquire(lockFile);
+        boolean locked = false;
+        try {
+            if (timeoutMillis == WAIT_INDEFINITELY) {
+                semaphore.permit.acquire();
+            } else if (!semaphore.permit.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new IOException("The output file is locked by another job of this process.");
+            }
+            try {
+                FileChannel channel = FileChannel.open(lockFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                try {
+                    FileLock lock;
+                    while ((lock = channel.tryLock()) == null) {
+                        if (timeoutMillis != WAIT_INDEFINITELY && System.nanoTime() - deadline >= 0) {
+                            throw new IOException("The output file is locked by another process.");
+                        }
+                        Thread.sleep(RETRY_MILLIS);
+                    }
+                    locked = true;
+                    return new OutputFileLock(lockFile, semaphore, channel, lock);
+                } finally {
+                    if (!locked) {
+                        //No other job of this process has the lock file open meanwhile
+                        channel.close();
+                    }
+                }
+            } finally {
+                if (!locked) {
+                    semaphore.permit.release();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The wait for the output file was interrupted.", ex);
+        } finally {
+            if (!locked) {
+                release(lockFile, semaphore);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            try {
+                lock.release();
+            } finally {
+                channel.close();
+            }
+        } finally {
+            semaphore.permit.release();
+            release(lockFile, semaphore);
+        }
+    }
+
+    /**
+     * @return the semaphore of a lock file, counting one more job on it.
+     */
+    private static FileSemaphore acquire(File lockFile) {
+        synchronized (SEMAPHORES) {
+            FileSemaphore semaphore = SEMAPHORES.get(lockFile);
+            if (semaphore == null) {
+                semaphore = new FileSemaphore();
+                SEMAPHORES.put(lockFile, semaphore);
+            }
+            semaphore.jobs++;
+            return semaphore;
+        }
+    }
+
+    /**
+     * Counts one job less on a lock file, the semaphore is dropped once no job
+     * holds it or waits for it.
+     */
+    private static void release(File lockFile, FileSemaphore semaphore) {
+        synchronized (SEMAPHORES) {
+            if (--semaphore.jobs == 0) {
+                SEMAPHORES.remove(lockFile);
+            }
+        }
+    }
+
+    /**
+     * The jobs of this process on a lock file, which take turns in the order
+     * they asked for it.
+     */
+    private static class FileSemaphore {
+
+        private final Semaphore permit = new Semaphore(1, true);
+        //Jobs holding or waiting for the permit, guarded by SEMAPHORES
+        private int jobs;
+    }
+}
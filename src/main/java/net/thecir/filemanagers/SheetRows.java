@@ -0,0 +1,349 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFCell;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Rows of a sheet kept out of the XSSF model, with only the cell values,
+ * styles and row heights, along with the merged regions among them. Used to
+ * hold the large sheets of the output file while it's loaded and saved in
+ * streaming mode.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class SheetRows {
+
+    private final List<RowCells> rows = new ArrayList<>();
+    private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+
+    public int getRowsCount() {
+        return rows.size();
+    }
+
+    /**
+     * @param index of the row, from 0 to getRowsCount() - 1.
+     * @return the 0-based row number in the sheet.
+     */
+    public int getRowNum(int index) {
+        return rows.get(index).rowNum;
+    }
+
+    /**
+     * @return the 0-based number of the last row, -1 if there are no rows.
+     */
+    public int getLastRowNum() {
+        return rows.isEmpty() ? -1 : rows.get(rows.size() - 1).rowNum;
+    }
+
+    /**
+     * @param rowNum 0-based row number in the sheet.
+     * @return the index of the row, -1 if there's no such row.
+     */
+    public int findRow(int rowNum) {
+        int low = 0;
+        int high = rows.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleRowNum = rows.get(middle).rowNum;
+            if (middleRowNum < rowNum) {
+                low = middle + 1;
+            } else if (middleRowNum > rowNum) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a row after the last one.
+     *
+     * @param rowNum 0-based row number, greater than getLastRowNum().
+     * @return the index of the new row.
+     */
+    public int addRow(int rowNum) {
+        if (rowNum <= getLastRowNum()) {
+            throw new IllegalArgumentException("Rows must be added in order, " + rowNum + " after " + getLastRowNum());
+        }
+        rows.add(new RowCells(rowNum));
+        return rows.size() - 1;
+    }
+
+    /**
+     * @param index of the row.
+     * @param height in twips, as Row.setHeight, -1 for the default.
+     */
+    public void setRowHeight(int index, short height) {
+        rows.get(index).height = height;
+    }
+
+    /**
+     * @param index of the row.
+     * @param column 0-based column.
+     * @return whether the row has a cell in the column.
+     */
+    public boolean hasCell(int index, int column) {
+        return rows.get(index).find(column) >= 0;
+    }
+
+    /**
+     * @param index of the row.
+     * @param column 0-based column.
+     * @return the type of the cell, BLANK if there's no such cell.
+     */
+    public CellType getCellType(int index, int column) {
+        RowCells row = rows.get(index);
+        int cell = row.find(column);
+        return cell < 0 ? CellType.BLANK : row.types[cell];
+    }
+
+    /**
+     * @param index of the row.
+     * @param column 0-based column.
+     * @return the value of a string cell, "" for a blank one.
+     * @throws IllegalStateException if the cell holds something else.
+     */
+    public String getStringCellValue(int index, int column) {
+        RowCells row = rows.get(index);
+        int cell = row.find(column);
+        if (cell < 0 || row.types[cell] == CellType.BLANK) {
+            return "";
+        }
+        if (row.types[cell] != CellType.STRING) {
+            throw new IllegalStateException("Cannot get a STRING value from a " + row.types[cell] + " cell");
+        }
+        return row.strings[cell];
+    }
+
+    /**
+     * @param index of the row.
+     * @param column 0-based column.
+     * @return the value of a numeric cell, 0 for a blank one.
+     * @throws IllegalStateException if the cell holds something else.
+     */
+    public double getNumericCellValue(int index, int column) {
+        RowCells row = rows.get(index);
+        int cell = row.find(column);
+        if (cell < 0 || row.types[cell] == CellType.BLANK) {
+            return 0;
+        }
+        if (row.types[cell] != CellType.NUMERIC) {
+            throw new IllegalStateException("Cannot get a NUMERIC value from a " + row.types[cell] + " cell");
+        }
+        return row.numbers[cell];
+    }
+
+    public void setCellValue(int index, int column, double value) {
+        RowCells row = rows.get(index);
+        int cell = row.findOrAdd(column);
+        row.types[cell] = CellType.NUMERIC;
+        row.numbers[cell] = value;
+        row.strings[cell] = null;
+    }
+
+    public void setCellValue(int index, int column, String value) {
+        RowCells row = rows.get(index);
+        int cell = row.findOrAdd(column);
+        row.types[cell] = CellType.STRING;
+        row.strings[cell] = value;
+    }
+
+    /**
+     * Sets a cell as it was read. For a formula the string is its text and
+     * the number its cached result, NaN if the result isn't numeric. Boolean
+     * cells hold 1 or 0 and error cells the error code.
+     *
+     * @param index of the row.
+     * @param column 0-based column.
+     * @param type of the cell.
+     * @param number numeric value.
+     * @param string string value or formula.
+     * @param style index of the cell style.
+     */
+    public void setCell(int index, int column, CellType type, double number, String string, short style) {
+        RowCells row = rows.get(index);
+        int cell = row.findOrAdd(column);
+        row.types[cell] = type;
+        row.numbers[cell] = number;
+        row.strings[cell] = string;
+        row.styles[cell] = style;
+    }
+
+    /**
+     * Copies a row of the XSSF model after the last one.
+     *
+     * @param row the row to copy.
+     */
+    public void addRow(XSSFRow row) {
+        int index = addRow(row.getRowNum());
+        if (row.getCTRow().isSetHt()) {
+            setRowHeight(index, row.getHeight());
+        }
+        for (Cell cell : row) {
+            CellType type = cell.getCellTypeEnum();
+            double number = 0;
+            String string = null;
+            switch (type) {
+                case NUMERIC:
+                    number = cell.getNumericCellValue();
+                    break;
+                case STRING:
+                    string = cell.getStringCellValue();
+                    break;
+                case BOOLEAN:
+                    number = cell.getBooleanCellValue() ? 1 : 0;
+                    break;
+                case ERROR:
+                    number = cell.getErrorCellValue();
+                    break;
+                case FORMULA:
+                    string = cell.getCellFormula();
+                    number = cell.getCachedFormulaResultTypeEnum() == CellType.NUMERIC
+                            ? cell.getNumericCellValue() : Double.NaN;
+                    break;
+                default:
+                    break;
+            }
+            setCell(index, cell.getColumnIndex(), type, number, string, cell.getCellStyle().getIndex());
+        }
+    }
+
+    public List<CellRangeAddress> getMergedRegions() {
+        return mergedRegions;
+    }
+
+    public void addMergedRegion(CellRangeAddress region) {
+        mergedRegions.add(region);
+    }
+
+    /**
+     * Writes the rows to a streaming sheet. They are let go as they're
+     * written.
+     *
+     * @param sheet the sheet to write to, with no rows from the first one on.
+     * @param workbook the workbook the cell styles belong to.
+     */
+    public void writeTo(SXSSFSheet sheet, XSSFWorkbook workbook) {
+        for (int index = 0; index < rows.size(); index++) {
+            RowCells row = rows.get(index);
+            rows.set(index, null);
+            SXSSFRow streamedRow = sheet.createRow(row.rowNum);
+            if (row.height >= 0) {
+                streamedRow.setHeight(row.height);
+            }
+            for (int cell = 0; cell < row.count; cell++) {
+                SXSSFCell streamedCell = streamedRow.createCell(row.columns[cell]);
+                CellStyle style = workbook.getCellStyleAt(row.styles[cell]);
+                streamedCell.setCellStyle(style);
+                switch (row.types[cell]) {
+                    case NUMERIC:
+                        streamedCell.setCellValue(row.numbers[cell]);
+                        break;
+                    case STRING:
+                        streamedCell.setCellValue(row.strings[cell]);
+                        break;
+                    case BOOLEAN:
+                        streamedCell.setCellValue(row.numbers[cell] != 0);
+                        break;
+                    case ERROR:
+                        streamedCell.setCellErrorValue((byte) row.numbers[cell]);
+                        break;
+                    case FORMULA:
+                        streamedCell.setCellFormula(row.strings[cell]);
+                        if (!Double.isNaN(row.numbers[cell])) {
+                            streamedCell.setCellValue(row.numbers[cell]);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        rows.clear();
+    }
+
+    /**
+     * The cells of a row, in parallel arrays ordered by column.
+     */
+    private static class RowCells {
+
+        private final int rowNum;
+        private short height = -1;
+        private int[] columns = new int[4];
+        private CellType[] types = new CellType[4];
+        private double[] numbers = new double[4];
+        private String[] strings = new String[4];
+        private short[] styles = new short[4];
+        private int count;
+
+        RowCells(int rowNum) {
+            this.rowNum = rowNum;
+        }
+
+        int find(int column) {
+            int cell = Arrays.binarySearch(columns, 0, count, column);
+            return cell < 0 ? -1 : cell;
+        }
+
+        int findOrAdd(int column) {
+            int cell = Arrays.binarySearch(columns, 0, count, column);
+            if (cell >= 0) {
+                return cell;
+            }
+            cell = -cell - 1;
+            if (count == columns.length) {
+                columns = Arrays.copyOf(columns, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+                numbers = Arrays.copyOf(numbers, count * 2);
+                strings = Arrays.copyOf(strings, count * 2);
+                styles = Arrays.copyOf(styles, count * 2);
+            }
+            System.arraycopy(columns, cell, columns, cell + 1, count - cell);
+            System.arraycopy(types, cell, types, cell + 1, count - cell);
+            System.arraycopy(numbers, cell, numbers, cell + 1, count - cell);
+            System.arraycopy(strings, cell, strings, cell + 1, count - cell);
+            System.arraycopy(styles, cell, styles, cell + 1, count - cell);
+            columns[cell] = column;
+            types[cell] = CellType.BLANK;
+            numbers[cell] = 0;
+            strings[cell] = null;
+            styles[cell] = 0;
+            count++;
+            return cell;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.namespace.QName;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.SAXException;
+
+/**
+ * Opens a workbook with the rows of its largest sheets kept out of the XSSF
+ * model. The sheet XML is streamed before the workbook is built, the rows from
+ * a given one on and the merged regions among them are moved to a compact
+ * buffer and the rest of the sheet is left to XSSF. The workbook then only
+ * holds the headers of those sheets, the rows are put back by
+ * StreamingWorkbookWriter on save.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class StreamingWorkbookReader {
+
+    private static final String SHEET_DATA = "sheetData";
+    private static final String ROW = "row";
+    private static final String CELL = "c";
+    private static final String VALUE = "v";
+    private static final String FORMULA = "f";
+    private static final String INLINE_STRING_TEXT = "t";
+    private static final String MERGE_CELLS = "mergeCells";
+    private static final String MERGE_CELL = "mergeCell";
+
+    private final OPCPackage pkg;
+    private final XSSFReader reader;
+    private final ReadOnlySharedStringsTable sharedStrings;
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    /**
+     * @param in the workbook, it's read to the end but not closed.
+     * @throws IOException if the workbook cannot be read.
+     * @throws InvalidFormatException if it isn't an OOXML workbook.
+     */
+    public StreamingWorkbookReader(InputStream in) throws IOException, InvalidFormatException {
+        //The sheets come from files of unknown origin
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        pkg = OPCPackage.open(in);
+        try {
+            reader = new XSSFReader(pkg);
+            sharedStrings = new ReadOnlySharedStringsTable(pkg);
+        } catch (OpenXML4JException | SAXException ex) {
+            pkg.revert();
+            throw new InvalidFormatException("The workbook parts cannot be read.", ex);
+        }
+    }
+
+    /**
+     * Moves the rows of a sheet from the given one on out of the workbook.
+     * Sheets with shared or array formulas in those rows are left as they
+     * are.
+     *
+     * @param sheetIndex 0-based index of the sheet.
+     * @param firstRow 0-based, the rows above it stay in the workbook.
+     * @return the rows taken out, null if the sheet was left as it is.
+     * @throws IOException if the sheet cannot be read.
+     */
+    public SheetRows extract(int sheetIndex, int firstRow) throws IOException {
+        PackagePart sheetPart = findSheetPart(sheetIndex);
+        if (sheetPart == null) {
+            return null;
+        }
+        SheetRows rows = new SheetRows();
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        try (InputStream in = sheetPart.getInputStream()) {
+            if (!split(in, headers, rows, firstRow)) {
+                return null;
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("The sheet cannot be parsed.", ex);
+        }
+        try (OutputStream out = sheetPart.getOutputStream()) {
+            headers.writeTo(out);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the workbook, without the extracted rows.
+     * @throws IOException if the workbook cannot be built.
+     */
+    public XSSFWorkbook getWorkbook() throws IOException {
+        return new XSSFWorkbook(pkg);
+    }
+
+    private PackagePart findSheetPart(int sheetIndex) throws IOException {
+        try {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            //The iterator may return a sheet more than once in a row, so only distinct parts are counted
+            PackagePart previousPart = null;
+            int index = -1;
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                PackagePart part = sheets.getSheetPart();
+                if (part != previousPart) {
+                    previousPart = part;
+                    index++;
+                }
+                if (index == sheetIndex) {
+                    return part;
+                }
+            }
+        } catch (InvalidFormatException ex) {
+            throw new IOException("The sheets of the workbook cannot be read.", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Copies the sheet XML to out, except for the rows from firstRow on and
+     * their merged regions, which go to rows.
+     *
+     * @return false if a row to move holds a shared or array formula, which
+     * cannot be moved.
+     */
+    private boolean split(InputStream in, OutputStream out, SheetRows rows, int firstRow) throws XMLStreamException {
+        XMLEventReader events = inputFactory.createXMLEventReader(in);
+        XMLEventWriter writer = outputFactory.createXMLEventWriter(out, "UTF-8");
+        int nextRowNum = 0;
+        while (events.hasNext()) {
+            XMLEvent event = events.nextEvent();
+            if (event.isStartElement()) {
+                StartElement element = event.asStartElement();
+                String name = element.getName().getLocalPart();
+                if (ROW.equals(name)) {
+                    String r = attribute(element, "r");
+                    int rowNum = r == null ? nextRowNum : Integer.parseInt(r) - 1;
+                    nextRowNum = rowNum + 1;
+                    if (rowNum >= firstRow) {
+                        if (!readRow(events, element, rowNum, rows)) {
+                            return false;
+                        }
+                        continue;
+                    }
+                } else if (MERGE_CELLS.equals(name)) {
+                    writeMergeCells(events, element, writer, rows, firstRow);
+                    continue;
+                }
+            }
+            writer.add(event);
+        }
+        writer.close();
+        return true;
+    }
+
+    private boolean readRow(XMLEventReader events, StartElement rowElement, int rowNum, SheetRows rows)
+            throws XMLStreamException {
+        int index = rows.addRow(rowNum);
+        String height = attribute(rowElement, "ht");
+        if (height != null) {
+            rows.setRowHeight(index, (short) (Double.parseDouble(height) * 20));
+        }
+        int nextColumn = 0;
+        while (true) {
+            XMLEvent event = events.nextEvent();
+            if (event.isEndElement()) {
+                return true;
+            }
+            if (!event.isStartElement()) {
+                continue;
+            }
+            StartElement cell = event.asStartElement();
+            String reference = attribute(cell, "r");
+            int column = reference == null ? nextColumn : new CellReference(reference).getCol();
+            nextColumn = column + 1;
+            String style = attribute(cell, "s");
+            if (!readCell(events, cell, rows, index, column, style == null ? 0 : Short.parseShort(style))) {
+                return false;
+            }
+        }
+    }
+
+    private boolean readCell(XMLEventReader events, StartElement cell, SheetRows rows, int index, int column,
+            short style) throws XMLStreamException {
+        String type = attribute(cell, "t");
+        String value = null;
+        StringBuilder inlineString = null;
+        String formula = null;
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = events.nextEvent();
+            if (event.isEndElement()) {
+                depth--;
+            } else if (event.isStartElement()) {
+                depth++;
+                StartElement element = event.asStartElement();
+                String name = element.getName().getLocalPart();
+                if (VALUE.equals(name)) {
+                    value = events.getElementText();
+                    depth--;
+                } else if (FORMULA.equals(name)) {
+                    if (attribute(element, "t") != null) {
+                        return false;
+                    }
+                    formula = events.getElementText();
+                    depth--;
+                } else if (INLINE_STRING_TEXT.equals(name)) {
+                    if (inlineString == null) {
+                        inlineString = new StringBuilder();
+                    }
+                    inlineString.append(events.getElementText());
+                    depth--;
+                }
+            }
+        }
+        if (formula != null) {
+            double result = value != null && (type == null || "n".equals(type)) ? Double.parseDouble(value) : Double.NaN;
+            rows.setCell(index, column, CellType.FORMULA, result, formula, style);
+        } else if ("inlineStr".equals(type)) {
+            rows.setCell(index, column, CellType.STRING, 0, inlineString == null ? "" : inlineString.toString(), style);
+        } else if (value == null) {
+            rows.setCell(index, column, CellType.BLANK, 0, null, style);
+        } else if ("s".equals(type)) {
+            rows.setCell(index, column, CellType.STRING, 0, sharedStrings.getEntryAt(Integer.parseInt(value)), style);
+        } else if ("str".equals(type)) {
+            rows.setCell(index, column, CellType.STRING, 0, value, style);
+        } else if ("b".equals(type)) {
+            rows.setCell(index, column, CellType.BOOLEAN, "1".equals(value) ? 1 : 0, null, style);
+        } else if ("e".equals(type)) {
+            rows.setCell(index, column, CellType.ERROR, FormulaError.forString(value).getCode(), null, style);
+        } else {
+            rows.setCell(index, column, CellType.NUMERIC, Double.parseDouble(value), null, style);
+        }
+        return true;
+    }
+
+    /**
+     * Copies the merged regions above firstRow and moves the rest to rows.
+     */
+    private void writeMergeCells(XMLEventReader events, StartElement mergeCells, XMLEventWriter writer,
+            SheetRows rows, int firstRow) throws XMLStreamException {
+        List<StartElement> kept = new ArrayList<>();
+        while (true) {
+            XMLEvent event = events.nextEvent();
+            if (event.isEndElement() && MERGE_CELLS.equals(event.asEndElement().getName().getLocalPart())) {
+                break;
+            }
+            if (event.isStartElement() && MERGE_CELL.equals(event.asStartElement().getName().getLocalPart())) {
+                StartElement mergeCell = event.asStartElement();
+                CellRangeAddress region = CellRangeAddress.valueOf(attribute(mergeCell, "ref"));
+                if (region.getFirstRow() >= firstRow) {
+                    rows.addMergedRegion(region);
+                } else {
+                    kept.add(mergeCell);
+                }
+            }
+        }
+        if (kept.isEmpty()) {
+            return;
+        }
+        QName name = mergeCells.getName();
+        List<Attribute> attributes = new ArrayList<>();
+        for (Iterator<?> it = mergeCells.getAttributes(); it.hasNext();) {
+            Attribute attribute = (Attribute) it.next();
+            attributes.add("count".equals(attribute.getName().getLocalPart())
+                    ? eventFactory.createAttribute(attribute.getName(), Integer.toString(kept.size())) : attribute);
+        }
+        writer.add(eventFactory.createStartElement(name.getPrefix(), name.getNamespaceURI(), name.getLocalPart(),
+                attributes.iterator(), mergeCells.getNamespaces()));
+        for (StartElement mergeCell : kept) {
+            QName mergeCellName = mergeCell.getName();
+            writer.add(mergeCell);
+            writer.add(eventFactory.createEndElement(mergeCellName.getPrefix(), mergeCellName.getNamespaceURI(),
+                    mergeCellName.getLocalPart()));
+        }
+        writer.add(eventFactory.createEndElement(name.getPrefix(), name.getNamespaceURI(), name.getLocalPart()));
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute == null ? null : attribute.getValue();
+    }
+}
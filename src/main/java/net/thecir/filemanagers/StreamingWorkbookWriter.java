@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.namespace.QName;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlCursor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTMergeCells;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+
+/**
+ * Saves a workbook with the rows of its largest sheets streamed through
+ * SXSSF, instead of serializing them from the XSSF model. The rows of a
+ * streamed sheet are either taken out of the workbook before saving, or were
+ * kept out of it since it was opened by StreamingWorkbookReader. On write the
+ * headers, formatting and merged regions come from the workbook, as
+ * NewFileFormatter left them, and the rows are written behind them with a
+ * sliding window.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class StreamingWorkbookWriter {
+
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+
+    private final XSSFWorkbook workbook;
+    private final int windowSize;
+    private final List<Integer> streamedSheetIndexes = new ArrayList<>();
+    private final List<SheetRows> streamedSheets = new ArrayList<>();
+
+    /**
+     * @param workbook the workbook to save.
+     * @param windowSize rows kept in memory while writing, the rest are
+     * flushed to a temporary file.
+     */
+    public StreamingWorkbookWriter(XSSFWorkbook workbook, int windowSize) {
+        this.workbook = workbook;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Moves the rows of a sheet from the given one on out of the workbook, to
+     * be streamed on write. The formulas should be evaluated before, the
+     * cached results are streamed with them.
+     *
+     * @param sheet a sheet of the workbook.
+     * @param firstRow 0-based, the rows above it stay in the workbook.
+     */
+    public void stream(XSSFSheet sheet, int firstRow) {
+        SheetRows rows = new SheetRows();
+        List<Row> rowsToRemove = new ArrayList<>();
+        for (Row row : sheet) {
+            if (row.getRowNum() >= firstRow) {
+                rows.addRow((XSSFRow) row);
+                rowsToRemove.add(row);
+            }
+        }
+        //Removed in ascending order, so each removal only counts the rows above firstRow
+        for (Row row : rowsToRemove) {
+            sheet.removeRow(row);
+        }
+        stream(sheet, rows);
+    }
+
+    /**
+     * Streams rows, which are not in the workbook, on write.
+     *
+     * @param sheet a sheet of the workbook, with no rows where the given ones
+     * go.
+     * @param rows the rows of the sheet, as given by StreamingWorkbookReader.
+     */
+    public void stream(XSSFSheet sheet, SheetRows rows) {
+        streamedSheetIndexes.add(workbook.getSheetIndex(sheet));
+        streamedSheets.add(rows);
+    }
+
+    /**
+     * Writes the workbook. The streamed rows are gone from it afterwards.
+     *
+     * @param out where to write the workbook.
+     * @throws IOException if writing fails.
+     */
+    public void write(OutputStream out) throws IOException {
+        for (int sheet = 0; sheet < streamedSheets.size(); sheet++) {
+            addMergedRegions(workbook.getSheetAt(streamedSheetIndexes.get(sheet)),
+                    streamedSheets.get(sheet).getMergedRegions());
+        }
+        SXSSFWorkbook streamingWorkbook = new SXSSFWorkbook(workbook, windowSize, false, true);
+        try {
+            for (int sheet = 0; sheet < streamedSheets.size(); sheet++) {
+                streamedSheets.get(sheet).writeTo(streamingWorkbook.getSheetAt(streamedSheetIndexes.get(sheet)), workbook);
+            }
+            streamingWorkbook.write(out);
+        } finally {
+            streamingWorkbook.dispose();
+        }
+    }
+
+    /**
+     * Appends the regions to the merged cells of the sheet with a cursor.
+     * XSSFSheet.addMergedRegion counts the merged cells on every call, which
+     * is quadratic for a sheet with a merged region on each row.
+     */
+    private static void addMergedRegions(XSSFSheet sheet, List<CellRangeAddress> regions) {
+        if (regions.isEmpty()) {
+            return;
+        }
+        CTWorksheet worksheet = sheet.getCTWorksheet();
+        CTMergeCells mergeCells = worksheet.isSetMergeCells() ? worksheet.getMergeCells() : worksheet.addNewMergeCells();
+        QName mergeCellName = new QName(XSSFRelation.NS_SPREADSHEETML, "mergeCell");
+        XmlCursor cursor = mergeCells.newCursor();
+        try {
+            cursor.toEndToken();
+            for (CellRangeAddress region : regions) {
+                cursor.beginElement(mergeCellName);
+                cursor.insertAttributeWithValue("ref", region.formatAsString());
+                cursor.toNextToken();
+            }
+        } finally {
+            cursor.dispose();
+        }
+        if (mergeCells.isSetCount()) {
+            mergeCells.setCount(mergeCells.sizeOfMergeCellArray());
+        }
+    }
+}
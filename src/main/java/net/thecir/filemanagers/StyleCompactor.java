@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.filemanagers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import org.apache.poi.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorder;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorders;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellStyleXfs;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellXfs;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFills;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFonts;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTStylesheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.StyleSheetDocument;
+
+/**
+ * Removes the duplicate cell styles, fonts, fills and borders of an existing
+ * workbook, such as the output files created before the styles were shared.
+ * Every duplicate is replaced by its first occurrence in the styles part and in
+ * the cells, rows and columns of the sheets. XSSF cannot remove styles, so
+ * the package parts are rewritten directly.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class StyleCompactor {
+
+    private static final String CELL = "c";
+    private static final String ROW = "row";
+    private static final String COLUMN = "col";
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    public StyleCompactor() {
+        //The sheets come from files of unknown origin
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Compacts the styles of a workbook. The compacted workbook is written
+     * next to it and moved over it, the workbook is left as it is if it has
+     * no duplicates or anything fails.
+     *
+     * @param workbookFile the workbook.
+     * @return the number of cell styles, fonts, fills and borders removed.
+     * @throws IOException if the workbook cannot be read or replaced.
+     * @throws InvalidFormatException if it isn't an OOXML workbook.
+     */
+    public int compact(File workbookFile) throws IOException, InvalidFormatException {
+        return compact(workbookFile, new AtomicFileSaver(workbookFile));
+    }
+
+    /**
+     * Compacts the styles of a workbook, saved with the given saver.
+     *
+     * @param workbookFile the workbook.
+     * @param saver the saver of the workbook, which holds the length and the
+     * CRC32 of the compacted workbook once it's saved.
+     * @return the number of cell styles, fonts, fills and borders removed,
+     * the workbook is not saved if none were.
+     * @throws IOException if the workbook cannot be read or replaced.
+     * @throws InvalidFormatException if it isn't an OOXML workbook.
+     */
+    public int compact(File workbookFile, AtomicFileSaver saver) throws IOException, InvalidFormatException {
+        OPCPackage pkg;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(workbookFile.toPath()))) {
+            pkg = OPCPackage.open(in);
+        }
+        try {
+            int removed = compact(pkg);
+            if (removed == 0) {
+                return 0;
+            }
+            saver.save(pkg::save);
+            return removed;
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Compacts the styles of an opened package, the package is not saved.
+     *
+     * @param pkg the package of the workbook.
+     * @return the number of cell styles, fonts, fills and borders removed.
+     * @throws IOException if the parts cannot be read or written.
+     * @throws InvalidFormatException if the styles part cannot be parsed.
+     */
+    public int compact(OPCPackage pkg) throws IOException, InvalidFormatException {
+        List<PackagePart> styleParts = pkg.getPartsByContentType(XSSFRelation.STYLES.getContentType());
+        if (styleParts.isEmpty()) {
+            return 0;
+        }
+        PackagePart stylesPart = styleParts.get(0);
+        StyleSheetDocument document;
+        try (InputStream in = stylesPart.getInputStream()) {
+            document = StyleSheetDocument.Factory.parse(in, POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+        } catch (XmlException ex) {
+            throw new InvalidFormatException("The styles of the workbook cannot be parsed.", ex);
+        }
+        CTStylesheet stylesheet = document.getStyleSheet();
+        int[] fontMap = new int[0];
+        int[] fillMap = new int[0];
+        int[] borderMap = new int[0];
+        int removedParts = 0;
+        CTFonts fonts = stylesheet.getFonts();
+        if (fonts != null) {
+            List<CTFont> distinct = new ArrayList<>();
+            fontMap = distinct(fonts.getFontArray(), distinct);
+            removedParts += fontMap.length - distinct.size();
+            fonts.setFontArray(distinct.toArray(new CTFont[distinct.size()]));
+            fonts.setCount(distinct.size());
+        }
+        CTFills fills = stylesheet.getFills();
+        if (fills != null) {
+            List<CTFill> distinct = new ArrayList<>();
+            fillMap = distinct(fills.getFillArray(), distinct);
+            removedParts += fillMap.length - distinct.size();
+            fills.setFillArray(distinct.toArray(new CTFill[distinct.size()]));
+            fills.setCount(distinct.size());
+        }
+        CTBorders borders = stylesheet.getBorders();
+        if (borders != null) {
+            List<CTBorder> distinct = new ArrayList<>();
+            borderMap = distinct(borders.getBorderArray(), distinct);
+            removedParts += borderMap.length - distinct.size();
+            borders.setBorderArray(distinct.toArray(new CTBorder[distinct.size()]));
+            borders.setCount(distinct.size());
+        }
+        CTCellStyleXfs cellStyleXfs = stylesheet.getCellStyleXfs();
+        if (cellStyleXfs != null) {
+            for (CTXf xf : cellStyleXfs.getXfArray()) {
+                remap(xf, fontMap, fillMap, borderMap);
+            }
+        }
+        CTCellXfs cellXfs = stylesheet.getCellXfs();
+        int[] xfMap = new int[0];
+        int removed = 0;
+        if (cellXfs != null) {
+            CTXf[] xfs = cellXfs.getXfArray();
+            for (CTXf xf : xfs) {
+                remap(xf, fontMap, fillMap, borderMap);
+            }
+            List<CTXf> distinctXfs = new ArrayList<>();
+            xfMap = distinct(xfs, distinctXfs);
+            removed = xfs.length - distinctXfs.size();
+            cellXfs.setXfArray(distinctXfs.toArray(new CTXf[distinctXfs.size()]));
+            cellXfs.setCount(distinctXfs.size());
+        }
+        if (removed == 0 && removedParts == 0) {
+            return 0;
+        }
+        try (OutputStream out = stylesPart.getOutputStream()) {
+            document.save(out, POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+        }
+        if (removed > 0) {
+            for (PackagePart sheetPart : pkg.getPartsByContentType(XSSFRelation.WORKSHEET.getContentType())) {
+                remapSheet(sheetPart, xfMap);
+            }
+        }
+        return removed + removedParts;
+    }
+
+    /**
+     * Copies the first occurrence of every distinct element to distinct.
+     *
+     * @return the index in distinct of each element.
+     */
+    private static <T extends XmlObject> int[] distinct(T[] elements, List<T> distinct) {
+        Map<String, Integer> indexes = new HashMap<>();
+        int[] map = new int[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            String key = elements[i].xmlText();
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = distinct.size();
+                indexes.put(key, index);
+                distinct.add(elements[i]);
+            }
+            map[i] = index;
+        }
+        return map;
+    }
+
+    private static void remap(CTXf xf, int[] fontMap, int[] fillMap, int[] borderMap) {
+        if (xf.isSetFontId() && xf.getFontId() < fontMap.length) {
+            xf.setFontId(fontMap[(int) xf.getFontId()]);
+        }
+        if (xf.isSetFillId() && xf.getFillId() < fillMap.length) {
+            xf.setFillId(fillMap[(int) xf.getFillId()]);
+        }
+        if (xf.isSetBorderId() && xf.getBorderId() < borderMap.length) {
+            xf.setBorderId(borderMap[(int) xf.getBorderId()]);
+        }
+    }
+
+    /**
+     * Points the cells, rows and columns of a sheet to the remaining styles.
+     */
+    private void remapSheet(PackagePart sheetPart, int[] xfMap) throws IOException {
+        ByteArrayOutputStream sheet = new ByteArrayOutputStream();
+        try (InputStream in = sheetPart.getInputStream()) {
+            XMLEventReader events = inputFactory.createXMLEventReader(in);
+            XMLEventWriter writer = outputFactory.createXMLEventWriter(sheet, "UTF-8");
+            while (events.hasNext()) {
+                XMLEvent event = events.nextEvent();
+                if (event.isStartElement()) {
+                    StartElement element = event.asStartElement();
+                    String name = element.getName().getLocalPart();
+                    if (CELL.equals(name) || ROW.equals(name)) {
+                        event = remapStyle(element, "s", xfMap);
+                    } else if (COLUMN.equals(name)) {
+                        event = remapStyle(element, "style", xfMap);
+                    }
+                }
+                writer.add(event);
+            }
+            writer.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException("The sheet cannot be parsed.", ex);
+        }
+        try (OutputStream out = sheetPart.getOutputStream()) {
+            sheet.writeTo(out);
+        }
+    }
+
+    private StartElement remapStyle(StartElement element, String styleAttribute, int[] xfMap) {
+        Attribute style = element.getAttributeByName(new QName(styleAttribute));
+        if (style == null) {
+            return element;
+        }
+        int index = Integer.parseInt(style.getValue());
+        if (index >= xfMap.length || xfMap[index] == index) {
+            return element;
+        }
+        List<Attribute> attributes = new ArrayList<>();
+        for (Iterator<?> it = element.getAttributes(); it.hasNext();) {
+            Attribute attribute = (Attribute) it.next();
+            attributes.add(attribute.getName().equals(style.getName())
+                    ? eventFactory.createAttribute(style.getName(), Integer.toString(xfMap[index])) : attribute);
+        }
+        QName name = element.getName();
+        return eventFactory.createStartElement(name.getPrefix(), name.getNamespaceURI(), name.getLocalPart(),
+                attributes.iterator(), element.getNamespaces());
+    }
+}
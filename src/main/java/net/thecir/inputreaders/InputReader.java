@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.inputreaders;
+
+import java.io.IOException;
+
+/**
+ * Streams the first sheet of an input file row by row, without building the
+ * whole workbook in memory.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public interface InputReader {
+
+    /**
+     * Reads the first sheet from the top, until the end of the sheet or until
+     * the handler asks to stop. Every call starts a new pass over the file.
+     *
+     * @param handler receives the rows.
+     * @throws IOException if the file cannot be read.
+     */
+    public void read(InputRowHandler handler) throws IOException;
+
+    /**
+     * Same as {@link #read}, for checking the file from its first rows. A
+     * reader may take a lighter path here, which is only worth it as long as
+     * the handler stops after a few rows.
+     *
+     * @param handler receives the rows.
+     * @throws IOException if the file cannot be read.
+     */
+    public default void probe(InputRowHandler handler) throws IOException {
+        read(handler);
+    }
+}
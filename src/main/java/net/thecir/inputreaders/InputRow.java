@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.inputreaders;
+
+import com.thecir.tools.ExcelTools;
+import java.util.Arrays;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * A single row of the input sheet, as delivered by an {@link InputReader}.
+ * Only the values are kept, so a row costs a few small arrays no matter how
+ * large the file it came from is. Missing cells behave like blank cells.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class InputRow {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int rowNum;
+    private int lastCellNum = -1;
+    private CellType[] types = new CellType[INITIAL_CAPACITY];
+    private String[] strings = new String[INITIAL_CAPACITY];
+    private double[] numbers = new double[INITIAL_CAPACITY];
+
+    /**
+     * @param rowNum zero-based row number within the sheet.
+     */
+    public InputRow(int rowNum) {
+        this.rowNum = rowNum;
+    }
+
+    /**
+     * @return zero-based row number within the sheet.
+     */
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    /**
+     * Same as {@link org.apache.poi.ss.usermodel.Row#getLastCellNum()} - the
+     * index of the last cell plus one, or -1 if the row has no cells.
+     *
+     * @return index of the last cell in the row plus one.
+     */
+    public int getLastCellNum() {
+        return lastCellNum;
+    }
+
+    public CellType getCellType(int column) {
+        if (column >= lastCellNum || types[column] == null) {
+            return CellType.BLANK;
+        }
+        return types[column];
+    }
+
+    /**
+     * Behaves as {@link org.apache.poi.ss.usermodel.Cell#getStringCellValue()}
+     * - blank cells give an empty string, numeric cells are an error.
+     *
+     * @param column zero-based column index.
+     * @return the string value of the cell.
+     */
+    public String getStringCellValue(int column) {
+        switch (getCellType(column)) {
+            case STRING:
+                return strings[column];
+            case NUMERIC:
+                throw new IllegalStateException("Cannot get a STRING value from a NUMERIC cell");
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Behaves as {@link org.apache.poi.ss.usermodel.Cell#getNumericCellValue()}
+     * - blank cells give 0, string cells are an error.
+     *
+     * @param column zero-based column index.
+     * @return the numeric value of the cell.
+     */
+    public double getNumericCellValue(int column) {
+        switch (getCellType(column)) {
+            case NUMERIC:
+                return numbers[column];
+            case STRING:
+                throw new IllegalStateException("Cannot get a NUMERIC value from a STRING cell");
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Behaves as {@link com.thecir.tools.ExcelTools#getStringCellValue}.
+     *
+     * @param column zero-based column index.
+     * @return the value of numeric and string cells as string, null otherwise.
+     */
+    public String getCellValueAsString(int column) {
+        switch (getCellType(column)) {
+            case NUMERIC:
+                return String.valueOf(numbers[column]);
+            case STRING:
+                return strings[column];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Behaves as {@link ExcelTools.RowCursor#isNumber}.
+     *
+     * @param column zero-based column index.
+     * @return whether the cell holds a number, as a number or as text.
+     */
+    public boolean isNumber(int column) {
+        switch (getCellType(column)) {
+            case NUMERIC:
+                return true;
+            case STRING:
+                return NumberUtils.isParsable(strings[column]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Behaves as {@link ExcelTools.RowCursor#getDouble}.
+     *
+     * @param column zero-based column index.
+     * @param defaultValue returned if the cell holds no number.
+     * @return the number in the cell.
+     */
+    public double getDouble(int column, double defaultValue) {
+        switch (getCellType(column)) {
+            case NUMERIC:
+                return numbers[column];
+            case STRING:
+                return ExcelTools.parseNumber(strings[column], defaultValue);
+            default:
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Behaves as {@link ExcelTools.RowCursor#getInt}.
+     *
+     * @param column zero-based column index.
+     * @param defaultValue returned if the cell holds no number.
+     * @return the number in the cell, without its fraction.
+     */
+    public int getInt(int column, int defaultValue) {
+        return (int) getDouble(column, defaultValue);
+    }
+
+    /**
+     * Behaves as {@link ExcelTools.RowCursor#getLong}.
+     *
+     * @param column zero-based column index.
+     * @param defaultValue returned if the cell holds no number.
+     * @return the number in the cell, without its fraction.
+     */
+    public long getLong(int column, long defaultValue) {
+        return isNumber(column) ? (long) getDouble(column, 0) : defaultValue;
+    }
+
+    /**
+     * Behaves as {@link ExcelTools.RowCursor#getStringOrEmpty}.
+     *
+     * @param column zero-based column index.
+     * @return the text in the cell, an empty string if it holds no text.
+     */
+    public String getStringOrEmpty(int column) {
+        return getCellType(column) == CellType.STRING ? strings[column] : "";
+    }
+
+    void addCell(int column) {
+        ensureCapacity(column);
+        if (column >= lastCellNum) {
+            lastCellNum = column + 1;
+        }
+        if (types[column] == null) {
+            types[column] = CellType.BLANK;
+        }
+    }
+
+    void setStringCellValue(int column, String value) {
+        addCell(column);
+        types[column] = CellType.STRING;
+        strings[column] = value;
+    }
+
+    void setNumericCellValue(int column, double value) {
+        addCell(column);
+        types[column] = CellType.NUMERIC;
+        numbers[column] = value;
+    }
+
+    void setCellType(int column, CellType type) {
+        addCell(column);
+        types[column] = type;
+    }
+
+    private void ensureCapacity(int column) {
+        if (column < types.length) {
+            return;
+        }
+        int capacity = Math.max(types.length * 2, column + 1);
+        types = Arrays.copyOf(types, capacity);
+        strings = Arrays.copyOf(strings, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.inputreaders;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * Reads the first rows of a sheet of an .xlsx file, to check the file before
+ * it's loaded. Only the parts needed are read from the zip - the workbook, the
+ * sheet up to the row the handler stops at and the shared strings up to the
+ * last one used by those rows. Nothing is built for the rest of the file, so
+ * a wrong file is rejected in milliseconds, whatever its size.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class WorkbookProbe implements Closeable {
+
+    private static final String RELATIONSHIPS_NAMESPACE
+            = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String OFFICE_DOCUMENT_TYPE = "/officeDocument";
+    private static final String SHARED_STRINGS_TYPE = "/sharedStrings";
+
+    private final ZipFile zip;
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    //Paths of the sheets within the zip, in the order of the workbook
+    private final List<String> sheetParts = new ArrayList<>();
+    private final String sharedStringsPart;
+    //The shared strings read so far, the rest are read when first used
+    private final List<String> sharedStrings = new ArrayList<>();
+    private InputStream sharedStringsStream;
+    private XMLStreamReader sharedStringsReader;
+
+    /**
+     * @param file the .xlsx file.
+     * @throws IOException if the file is not an .xlsx file or cannot be read.
+     */
+    public WorkbookProbe(File file) throws IOException {
+        //The parts come from files of unknown origin
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        zip = new ZipFile(file);
+        try {
+            String workbookPart = readRelationships("").get(OFFICE_DOCUMENT_TYPE);
+            if (workbookPart == null) {
+                throw new IOException("The file holds no workbook.");
+            }
+            Map<String, String> workbookRelationships = readRelationships(workbookPart);
+            sharedStringsPart = workbookRelationships.get(SHARED_STRINGS_TYPE);
+            readSheets(workbookPart, workbookRelationships);
+        } catch (IOException | RuntimeException ex) {
+            zip.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the number of sheets of the workbook.
+     */
+    public int getSheetCount() {
+        return sheetParts.size();
+    }
+
+    /**
+     * Reads a sheet from the top, until its end or until the handler asks to
+     * stop. The rows are as {@link XlsxInputReader} reads them.
+     *
+     * @param sheetIndex zero-based index of the sheet.
+     * @param handler receives the rows.
+     * @throws IOException if the sheet cannot be read.
+     */
+    public void read(int sheetIndex, InputRowHandler handler) throws IOException {
+        try (InputStream in = getPart(sheetParts.get(sheetIndex))) {
+            XMLStreamReader xml = inputFactory.createXMLStreamReader(in);
+            try {
+                readRows(xml, handler);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Failed to parse the sheet.", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (sharedStringsReader != null) {
+                sharedStringsReader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (sharedStringsStream != null) {
+                sharedStringsStream.close();
+            }
+            zip.close();
+        }
+    }
+
+    private void readRows(XMLStreamReader xml, InputRowHandler handler) throws XMLStreamException, IOException {
+        InputRow row = null;
+        int nextRowNum = 0;
+        int column = -1;
+        String type = null;
+        String value = null;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "row":
+                        String rowReference = xml.getAttributeValue(null, "r");
+                        row = new InputRow(rowReference != null ? Integer.parseInt(rowReference) - 1 : nextRowNum);
+                        nextRowNum = row.getRowNum() + 1;
+                        column = -1;
+                        break;
+                    case "c":
+                        String reference = xml.getAttributeValue(null, "r");
+                        column = reference != null ? XlsxInputReader.columnIndex(reference) : column + 1;
+                        type = xml.getAttributeValue(null, "t");
+                        value = null;
+                        row.addCell(column);
+                        break;
+                    case "v":
+                        value = xml.getElementText();
+                        break;
+                    case "is":
+                        value = readText(xml, "is");
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "c":
+                        setCellValue(row, column, type, value);
+                        break;
+                    case "row":
+                        if (!handler.handleRow(row)) {
+                            return;
+                        }
+                        break;
+                    case "sheetData":
+                        return;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as the RowCollector of {@link XlsxInputReader}.
+     */
+    private void setCellValue(InputRow row, int column, String type, String value)
+            throws XMLStreamException, IOException {
+        if (type == null || "n".equals(type)) {
+            if (value != null && !value.isEmpty()) {
+                try {
+                    row.setNumericCellValue(column, Double.parseDouble(value));
+                } catch (NumberFormatException ex) {
+                    row.setStringCellValue(column, value);
+                }
+            }
+        } else if ("b".equals(type)) {
+            row.setCellType(column, CellType.BOOLEAN);
+        } else if ("e".equals(type)) {
+            row.setCellType(column, CellType.ERROR);
+        } else if ("s".equals(type)) {
+            if (value != null && !value.isEmpty()) {
+                row.setStringCellValue(column, getSharedString(Integer.parseInt(value.trim())));
+            }
+        } else if (value != null) {
+            row.setStringCellValue(column, value);
+        }
+    }
+
+    /**
+     * Reads the shared strings up to the given one, if they're not read yet.
+     */
+    private String getSharedString(int index) throws XMLStreamException, IOException {
+        if (sharedStringsReader == null) {
+            if (sharedStringsPart == null) {
+                throw new IOException("The workbook holds no shared strings.");
+            }
+            sharedStringsStream = getPart(sharedStringsPart);
+            sharedStringsReader = inputFactory.createXMLStreamReader(sharedStringsStream);
+        }
+        while (sharedStrings.size() <= index && sharedStringsReader.hasNext()) {
+            if (sharedStringsReader.next() == XMLStreamConstants.START_ELEMENT
+                    && "si".equals(sharedStringsReader.getLocalName())) {
+                sharedStrings.add(readText(sharedStringsReader, "si"));
+            }
+        }
+        if (sharedStrings.size() <= index) {
+            throw new IOException("The workbook holds no shared string " + index + ".");
+        }
+        return sharedStrings.get(index);
+    }
+
+    /**
+     * @return the text of all text runs up to the end of the given element.
+     */
+    private static String readText(XMLStreamReader xml, String element) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "t".equals(xml.getLocalName())) {
+                text.append(xml.getElementText());
+            } else if (event == XMLStreamConstants.END_ELEMENT && element.equals(xml.getLocalName())) {
+                break;
+            }
+        }
+        return text.toString();
+    }
+
+    private void readSheets(String workbookPart, Map<String, String> workbookRelationships) throws IOException {
+        try (InputStream in = getPart(workbookPart)) {
+            XMLStreamReader xml = inputFactory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && "sheet".equals(xml.getLocalName())) {
+                        String sheetPart = workbookRelationships.get(xml.getAttributeValue(RELATIONSHIPS_NAMESPACE, "id"));
+                        if (sheetPart == null) {
+                            throw new IOException("A sheet of the workbook is missing.");
+                        }
+                        sheetParts.add(sheetPart);
+                    } else if (event == XMLStreamConstants.END_ELEMENT && "sheets".equals(xml.getLocalName())) {
+                        break;
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Failed to parse the workbook.", ex);
+        }
+    }
+
+    /**
+     * Reads the relationships of a part. The targets are mapped both by id
+     * and by the last segment of their type, e.g. /sharedStrings.
+     *
+     * @param part the part, "" for the package itself.
+     * @return the paths of the targets within the zip.
+     */
+    private Map<String, String> readRelationships(String part) throws IOException {
+        int slash = part.lastIndexOf('/');
+        String directory = part.substring(0, slash + 1);
+        String relationshipsPart = directory + "_rels/" + part.substring(slash + 1) + ".rels";
+        Map<String, String> targets = new HashMap<>();
+        if (zip.getEntry(relationshipsPart) == null) {
+            return targets;
+        }
+        try (InputStream in = getPart(relationshipsPart)) {
+            XMLStreamReader xml = inputFactory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT
+                            && "Relationship".equals(xml.getLocalName())
+                            && !"External".equals(xml.getAttributeValue(null, "TargetMode"))) {
+                        String target = resolve(directory, xml.getAttributeValue(null, "Target"));
+                        String type = xml.getAttributeValue(null, "Type");
+                        targets.put(xml.getAttributeValue(null, "Id"), target);
+                        targets.putIfAbsent(type.substring(type.lastIndexOf('/')), target);
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Failed to parse the relationships of " + part + ".", ex);
+        }
+        return targets;
+    }
+
+    /**
+     * @return the path within the zip of a target relative to the given
+     * directory, or absolute.
+     */
+    private static String resolve(String directory, String target) {
+        if (target.startsWith("/")) {
+            return target.substring(1);
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : (directory + target).split("/")) {
+            if ("..".equals(segment)) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+            } else if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.add(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private InputStream getPart(String part) throws IOException {
+        ZipEntry entry = zip.getEntry(part);
+        if (entry == null) {
+            throw new IOException("The part " + part + " is missing.");
+        }
+        return zip.getInputStream(entry);
+    }
+}
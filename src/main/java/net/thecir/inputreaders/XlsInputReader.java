@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.inputreaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.TreeSet;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * Reads legacy .xls files through the record level event API of POI. The
+ * records of the first sheet are turned into rows as they come, so only the
+ * shared strings table and the current row are held in memory.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class XlsInputReader implements InputReader {
+
+    private static final short CONTINUE = 0;
+    private static final short STOP = 1;
+
+    private final File file;
+
+    public XlsInputReader(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(InputRowHandler handler) throws IOException {
+        try (NPOIFSFileSystem fs = new NPOIFSFileSystem(file, true);
+                InputStream workbook = fs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot()))) {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(new RowCollector(handler));
+            new HSSFEventFactory().abortableProcessEvents(request, workbook);
+        } catch (HSSFUserException ex) {
+            throw new IOException("Failed to parse the input sheet.", ex);
+        }
+    }
+
+    /**
+     * Builds the rows of the first worksheet. The row records of a block come
+     * before its cells, so rows without any cells are known in advance and
+     * handed out in their place, same as the rows of a loaded sheet.
+     */
+    private static class RowCollector extends AbortableHSSFListener {
+
+        private final InputRowHandler handler;
+        private SSTRecord sst;
+        private int worksheetsSeen;
+        //Nesting of substreams (charts etc.) within the first worksheet
+        private int depth;
+        private InputRow row;
+        private final TreeSet<Integer> announcedRows = new TreeSet<>();
+        //Column of a formula, whose string result comes in the next record
+        private int formulaStringColumn = -1;
+
+        RowCollector(InputRowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) {
+            if (record.getSid() == BOFRecord.sid) {
+                if (depth > 0) {
+                    depth++;
+                } else if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET && ++worksheetsSeen == 1) {
+                    depth = 1;
+                }
+                return CONTINUE;
+            }
+            if (record.getSid() == SSTRecord.sid) {
+                sst = (SSTRecord) record;
+                return CONTINUE;
+            }
+            if (depth != 1) {
+                if (record.getSid() == EOFRecord.sid && depth > 1) {
+                    depth--;
+                }
+                return CONTINUE;
+            }
+            switch (record.getSid()) {
+                case EOFRecord.sid:
+                    depth = 0;
+                    flushRowsBefore(Integer.MAX_VALUE);
+                    return STOP;
+                case RowRecord.sid:
+                    announcedRows.add(((RowRecord) record).getRowNumber());
+                    return CONTINUE;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    if (!moveTo(number.getRow())) {
+                        return STOP;
+                    }
+                    row.setNumericCellValue(number.getColumn(), number.getValue());
+                    return CONTINUE;
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord label = (LabelSSTRecord) record;
+                    if (!moveTo(label.getRow())) {
+                        return STOP;
+                    }
+                    row.setStringCellValue(label.getColumn(), sst.getString(label.getSSTIndex()).getString());
+                    return CONTINUE;
+                case LabelRecord.sid:
+                    LabelRecord oldLabel = (LabelRecord) record;
+                    if (!moveTo(oldLabel.getRow())) {
+                        return STOP;
+                    }
+                    row.setStringCellValue(oldLabel.getColumn(), oldLabel.getValue());
+                    return CONTINUE;
+                case BlankRecord.sid:
+                    BlankRecord blank = (BlankRecord) record;
+                    if (!moveTo(blank.getRow())) {
+                        return STOP;
+                    }
+                    row.addCell(blank.getColumn());
+                    return CONTINUE;
+                case MulBlankRecord.sid:
+                    MulBlankRecord blanks = (MulBlankRecord) record;
+                    if (!moveTo(blanks.getRow())) {
+                        return STOP;
+                    }
+                    for (int column = blanks.getFirstColumn(); column <= blanks.getLastColumn(); column++) {
+                        row.addCell(column);
+                    }
+                    return CONTINUE;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    if (!moveTo(boolErr.getRow())) {
+                        return STOP;
+                    }
+                    row.setCellType(boolErr.getColumn(), boolErr.isBoolean() ? CellType.BOOLEAN : CellType.ERROR);
+                    return CONTINUE;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (!moveTo(formula.getRow())) {
+                        return STOP;
+                    }
+                    if (formula.hasCachedResultString()) {
+                        formulaStringColumn = formula.getColumn();
+                        row.addCell(formulaStringColumn);
+                    } else {
+                        CellType resultType = getCachedResultType(formula);
+                        if (resultType == CellType.NUMERIC) {
+                            row.setNumericCellValue(formula.getColumn(), formula.getValue());
+                        } else {
+                            row.setCellType(formula.getColumn(), resultType);
+                        }
+                    }
+                    return CONTINUE;
+                case StringRecord.sid:
+                    if (formulaStringColumn >= 0) {
+                        row.setStringCellValue(formulaStringColumn, ((StringRecord) record).getString());
+                        formulaStringColumn = -1;
+                    }
+                    return CONTINUE;
+                default:
+                    return CONTINUE;
+            }
+        }
+
+        /**
+         * Hands out the current row, once a cell of a later row comes in.
+         *
+         * @return false if the handler asked to stop.
+         */
+        private boolean moveTo(int rowNum) {
+            if (row != null && row.getRowNum() == rowNum) {
+                return true;
+            }
+            if (!flushRowsBefore(rowNum)) {
+                return false;
+            }
+            announcedRows.remove(rowNum);
+            row = new InputRow(rowNum);
+            return true;
+        }
+
+        /**
+         * Hands out the current row and all empty rows before the given one.
+         *
+         * @return false if the handler asked to stop.
+         */
+        private boolean flushRowsBefore(int rowNum) {
+            formulaStringColumn = -1;
+            while (!announcedRows.isEmpty() || row != null) {
+                int nextEmptyRowNum = announcedRows.isEmpty() ? Integer.MAX_VALUE : announcedRows.first();
+                InputRow next;
+                if (row != null && row.getRowNum() < nextEmptyRowNum) {
+                    next = row;
+                    row = null;
+                } else if (nextEmptyRowNum < rowNum) {
+                    next = new InputRow(announcedRows.pollFirst());
+                } else {
+                    break;
+                }
+                if (!handler.handleRow(next)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    //FormulaRecord only gives the int code in POI 3.16
+    @SuppressWarnings("deprecation")
+    private static CellType getCachedResultType(FormulaRecord formula) {
+        return CellType.forInt(formula.getCachedResultType());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.inputreaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Reads .xlsx files through the SAX based event API of POI. Only the shared
+ * strings table and the current row are held in memory.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class XlsxInputReader implements InputReader {
+
+    private final File file;
+
+    public XlsxInputReader(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(InputRowHandler handler) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException ex) {
+            throw new IOException("The input file is not a valid xlsx package.", ex);
+        }
+        try {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                RawValueFormatter formatter = new RawValueFormatter();
+                RowCollector collector = new RowCollector(handler, formatter);
+                collector.setContentHandler(new XSSFSheetXMLHandler(styles, strings, collector, formatter, false));
+                XMLReader parser = SAXHelper.newXMLReader();
+                parser.setContentHandler(collector);
+                parser.parse(new InputSource(sheet));
+            } catch (StopReadingException ex) {
+                //The handler has everything it needs
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException ex) {
+            throw new IOException("Failed to parse the input sheet.", ex);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Reads through a {@link WorkbookProbe}, which loads neither the styles
+     * nor the whole shared strings table the way {@link #read} has to.
+     */
+    @Override
+    public void probe(InputRowHandler handler) throws IOException {
+        try (WorkbookProbe probe = new WorkbookProbe(file)) {
+            if (probe.getSheetCount() > 0) {
+                probe.read(0, handler);
+            }
+        }
+    }
+
+    /**
+     * Column index of an A1-style reference, without building a
+     * CellReference for every cell.
+     */
+    static int columnIndex(String reference) {
+        int index = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char letter = reference.charAt(i);
+            if (letter < 'A' || letter > 'Z') {
+                break;
+            }
+            index = index * 26 + (letter - 'A' + 1);
+        }
+        return index - 1;
+    }
+
+    /**
+     * Thrown from within the parser to stop reading once the handler is done.
+     */
+    private static class StopReadingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        StopReadingException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * XSSFSheetXMLHandler passes every number through the data formatter. The
+     * raw value is kept here, so numeric cells don't need to be parsed back
+     * from their formatted text.
+     */
+    private static class RawValueFormatter extends DataFormatter {
+
+        private boolean hasValue;
+        private double value;
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            this.hasValue = true;
+            this.value = value;
+            return null;
+        }
+    }
+
+    /**
+     * Sits in front of XSSFSheetXMLHandler to see the cell elements
+     * themselves. That way blank cells and the declared cell type are known,
+     * which the handler alone does not report.
+     */
+    private static class RowCollector extends XMLFilterImpl implements SheetContentsHandler {
+
+        private final InputRowHandler handler;
+        private final RawValueFormatter formatter;
+        private InputRow row;
+        private int column;
+        private String declaredType;
+
+        RowCollector(InputRowHandler handler, RawValueFormatter formatter) {
+            this.handler = handler;
+            this.formatter = formatter;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if ("c".equals(localName)) {
+                String reference = atts.getValue("r");
+                column = reference != null ? columnIndex(reference) : column + 1;
+                declaredType = atts.getValue("t");
+                formatter.hasValue = false;
+                row.addCell(column);
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row = new InputRow(rowNum);
+            column = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!handler.handleRow(row)) {
+                throw new StopReadingException();
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (declaredType == null || "n".equals(declaredType)) {
+                if (formatter.hasValue) {
+                    row.setNumericCellValue(column, formatter.value);
+                } else if (formattedValue != null && !formattedValue.isEmpty()) {
+                    try {
+                        row.setNumericCellValue(column, Double.parseDouble(formattedValue));
+                    } catch (NumberFormatException ex) {
+                        //Formula with a string result
+                        row.setStringCellValue(column, formattedValue);
+                    }
+                }
+            } else if ("b".equals(declaredType)) {
+                row.setCellType(column, CellType.BOOLEAN);
+            } else if ("e".equals(declaredType)) {
+                row.setCellType(column, CellType.ERROR);
+            } else {
+                row.setStringCellValue(column, formattedValue);
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Durations and counters of a report. The input files are read by their own
+ * report managers, each filling its own metrics, which are added together
+ * when the report is done. Not thread safe.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class ReportMetrics {
+
+    private final long[] phaseNanos = new long[ReportPhase.values().length];
+
+    //Wall time of the whole report. The input files may be read in parallel,
+    //so the phases can add up to more than this
+    @Getter
+    @Setter
+    private long totalNanos;
+    @Getter
+    private int inputFiles;
+    @Getter
+    private long rowsParsed;
+    @Getter
+    private long cellsWritten;
+    //Titles and shops of each input file, summed over the input files
+    @Getter
+    private long titles;
+    @Getter
+    private long shops;
+    @Getter
+    @Setter
+    private long bytesWritten;
+
+    public long getPhaseNanos(ReportPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public void addPhaseNanos(ReportPhase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Counts an input file, read in full.
+     *
+     * @param rows rows read from the input file, over all passes.
+     * @param titles titles in the input file.
+     * @param shops shops in the input file.
+     */
+    public void addInputFile(long rows, int titles, int shops) {
+        inputFiles++;
+        rowsParsed += rows;
+        this.titles += titles;
+        this.shops += shops;
+    }
+
+    public void addCellsWritten(int cells) {
+        cellsWritten += cells;
+    }
+
+    /**
+     * Adds the durations and counters of an input file, read by another
+     * report manager.
+     *
+     * @param other the metrics to add.
+     */
+    public void add(ReportMetrics other) {
+        for (int phase = 0; phase < phaseNanos.length; phase++) {
+            phaseNanos[phase] += other.phaseNanos[phase];
+        }
+        inputFiles += other.inputFiles;
+        rowsParsed += other.rowsParsed;
+        cellsWritten += other.cellsWritten;
+        titles += other.titles;
+        shops += other.shops;
+        bytesWritten += other.bytesWritten;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import lombok.extern.java.Log;
+
+/**
+ * Keeps the metrics of the last report and the totals of all reports, and
+ * publishes them through JMX. Registered with the platform MBean server the
+ * first time it's used.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+public class ReportMetricsCollector implements ReportMetricsListener, ReportMetricsMXBean {
+
+    public static final String OBJECT_NAME = "net.thecir:type=ReportMetrics";
+
+    private static ReportMetricsCollector instance;
+
+    private long reportsGenerated;
+    private ReportMetrics last = new ReportMetrics();
+    private ReportMetrics total = new ReportMetrics();
+
+    private ReportMetricsCollector() {
+    }
+
+    public static synchronized ReportMetricsCollector getInstance() {
+        if (instance == null) {
+            instance = new ReportMetricsCollector();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+            } catch (JMException ex) {
+                log.log(Level.WARNING, "The report metrics cannot be published through JMX.", ex);
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void reportGenerated(ReportMetrics metrics) {
+        reportsGenerated++;
+        last = metrics;
+        total.add(metrics);
+        total.setTotalNanos(total.getTotalNanos() + metrics.getTotalNanos());
+    }
+
+    @Override
+    public synchronized long getReportsGenerated() {
+        return reportsGenerated;
+    }
+
+    @Override
+    public synchronized Map<String, Double> getLastPhaseMillis() {
+        return getPhaseMillis(last);
+    }
+
+    @Override
+    public synchronized Map<String, Double> getTotalPhaseMillis() {
+        return getPhaseMillis(total);
+    }
+
+    @Override
+    public synchronized double getLastTotalMillis() {
+        return last.getTotalNanos() / 1e6;
+    }
+
+    @Override
+    public synchronized long getLastInputFiles() {
+        return last.getInputFiles();
+    }
+
+    @Override
+    public synchronized long getLastRowsParsed() {
+        return last.getRowsParsed();
+    }
+
+    @Override
+    public synchronized long getLastCellsWritten() {
+        return last.getCellsWritten();
+    }
+
+    @Override
+    public synchronized long getLastTitles() {
+        return last.getTitles();
+    }
+
+    @Override
+    public synchronized long getLastShops() {
+        return last.getShops();
+    }
+
+    @Override
+    public synchronized long getLastBytesWritten() {
+        return last.getBytesWritten();
+    }
+
+    @Override
+    public synchronized double getLastRowsPerSecond() {
+        return last.getTotalNanos() > 0 ? last.getRowsParsed() * 1e9 / last.getTotalNanos() : 0;
+    }
+
+    @Override
+    public synchronized long getTotalRowsParsed() {
+        return total.getRowsParsed();
+    }
+
+    @Override
+    public synchronized long getTotalCellsWritten() {
+        return total.getCellsWritten();
+    }
+
+    @Override
+    public synchronized long getTotalBytesWritten() {
+        return total.getBytesWritten();
+    }
+
+    @Override
+    public synchronized void reset() {
+        reportsGenerated = 0;
+        last = new ReportMetrics();
+        total = new ReportMetrics();
+    }
+
+    private static Map<String, Double> getPhaseMillis(ReportMetrics metrics) {
+        Map<String, Double> phaseMillis = new LinkedHashMap<>();
+        for (ReportPhase phase : ReportPhase.values()) {
+            phaseMillis.put(phase.name(), metrics.getPhaseNanos(phase) / 1e6);
+        }
+        return phaseMillis;
+    }
+}
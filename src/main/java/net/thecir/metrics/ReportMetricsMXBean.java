@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.metrics;
+
+import java.util.Map;
+
+/**
+ * The report metrics, as published through JMX under
+ * {@value ReportMetricsCollector#OBJECT_NAME}.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public interface ReportMetricsMXBean {
+
+    public long getReportsGenerated();
+
+    /**
+     * @return Milliseconds of each phase of the last report.
+     */
+    public Map<String, Double> getLastPhaseMillis();
+
+    /**
+     * @return Milliseconds of each phase, over all reports.
+     */
+    public Map<String, Double> getTotalPhaseMillis();
+
+    public double getLastTotalMillis();
+
+    public long getLastInputFiles();
+
+    public long getLastRowsParsed();
+
+    public long getLastCellsWritten();
+
+    public long getLastTitles();
+
+    public long getLastShops();
+
+    public long getLastBytesWritten();
+
+    /**
+     * @return Input rows read per second of the last report, over its wall
+     * time.
+     */
+    public double getLastRowsPerSecond();
+
+    public long getTotalRowsParsed();
+
+    public long getTotalCellsWritten();
+
+    public long getTotalBytesWritten();
+
+    /**
+     * Clears the totals and the last report.
+     */
+    public void reset();
+}
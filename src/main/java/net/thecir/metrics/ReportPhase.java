@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.metrics;
+
+/**
+ * The phases of generating a report, timed separately.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public enum ReportPhase {
+    /**
+     * Waiting for the jobs of other processes on the output file.
+     */
+    LOCK_OUTPUT,
+    /**
+     * Checking the output file from its first row, before it's loaded.
+     */
+    CHECK_OUTPUT,
+    /**
+     * Loading the output workbook.
+     */
+    LOAD_OUTPUT,
+    /**
+     * Checking the input files and reading their week.
+     */
+    CHECK_INPUT,
+    /**
+     * readInputData, reading the stock and sales of the input files.
+     */
+    READ_INPUT,
+    /**
+     * writeToSheet, applying the input files to the output workbook.
+     */
+    WRITE_TO_SHEET,
+    /**
+     * Evaluating the formulas affected by the input files.
+     */
+    RECALCULATE,
+    /**
+     * Writing the output workbook to a temporary file next to the output
+     * file.
+     */
+    WRITE_OUTPUT,
+    /**
+     * Forcing the written workbook to disk and moving it over the output
+     * file.
+     */
+    SYNC_OUTPUT
+}
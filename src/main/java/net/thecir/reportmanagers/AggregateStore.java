@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The running totals of an output file - the sales of every shop by platform
+ * and the sales of every game - kept in a small binary file next to it, so a
+ * report doesn't read them back from the sheets. The file is only trusted if
+ * the workbook still matches it, see {@link SidecarFile}. Otherwise the
+ * totals are rebuilt from the sheets.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class AggregateStore {
+
+    private static final SidecarFile SIDECAR = new SidecarFile(0x4C524D54, 1, ".totals");
+
+    /**
+     * The sales of each shop by platform header, in the order of the shop
+     * rows of the sales by platform sheet.
+     */
+    @Getter
+    private final LinkedHashMap<String, HashMap<String, Integer>> shopPlatformSales;
+    /**
+     * The records of the sales by game sheet, in row order.
+     */
+    @Getter
+    private final List<GameTotal> gameTotals = new ArrayList<>();
+    //The first record of each game, by platform and title
+    private final HashMap<String, HashMap<String, GameTotal>> firstGameTotals = new HashMap<>();
+
+    /**
+     * @param shopPlatformSales the sales of each shop by platform header, in
+     * the order of the shop rows.
+     */
+    AggregateStore(LinkedHashMap<String, HashMap<String, Integer>> shopPlatformSales) {
+        this.shopPlatformSales = shopPlatformSales;
+    }
+
+    /**
+     * Adds a record of the sales by game sheet, after the ones added so far.
+     *
+     * @param row 0-based row of the record.
+     * @param platform abbreviation of the platform.
+     * @param title of the game.
+     * @param sales of the game.
+     * @return the record.
+     */
+    GameTotal addGameTotal(int row, String platform, String title, double sales) {
+        GameTotal gameTotal = new GameTotal(row, platform, title, sales);
+        gameTotals.add(gameTotal);
+        firstGameTotals.computeIfAbsent(platform, key -> new HashMap<>()).putIfAbsent(title, gameTotal);
+        return gameTotal;
+    }
+
+    /**
+     * @param platform abbreviation of the platform.
+     * @param title of the game.
+     * @return the first record of the game, null if it has none.
+     */
+    GameTotal getGameTotal(String platform, String title) {
+        HashMap<String, GameTotal> platformGameTotals = firstGameTotals.get(platform);
+        return platformGameTotals == null ? null : platformGameTotals.get(title);
+    }
+
+    /**
+     * @param workbookFile the output file.
+     * @return the file the totals of the output file are kept in.
+     */
+    static File getSidecarFile(File workbookFile) {
+        return SIDECAR.getFile(workbookFile);
+    }
+
+    /**
+     * Reads the totals of an output file.
+     *
+     * @param workbookFile the output file.
+     * @param length the length of the output file, as loaded.
+     * @param checksum the CRC32 of the output file, as loaded.
+     * @return the totals, null if there are none, they were written with a
+     * different output file or they're damaged.
+     */
+    static AggregateStore read(File workbookFile, long length, long checksum) {
+        return SIDECAR.read(workbookFile, length, checksum, in -> {
+            int shopsCount = in.readInt();
+            LinkedHashMap<String, HashMap<String, Integer>> shopPlatformSales = new LinkedHashMap<>();
+            for (int shop = 0; shop < shopsCount; shop++) {
+                String name = in.readUTF();
+                int platformsCount = in.readInt();
+                HashMap<String, Integer> platformSales = new HashMap<>();
+                for (int platform = 0; platform < platformsCount; platform++) {
+                    platformSales.put(in.readUTF(), in.readInt());
+                }
+                shopPlatformSales.put(name, platformSales);
+            }
+            AggregateStore store = new AggregateStore(shopPlatformSales);
+            int gamesCount = in.readInt();
+            for (int game = 0; game < gamesCount; game++) {
+                store.addGameTotal(in.readInt(), in.readUTF(), in.readUTF(), in.readDouble());
+            }
+            return store;
+        });
+    }
+
+    /**
+     * Writes the totals next to the output file.
+     *
+     * @param workbookFile the output file.
+     * @param length the length of the output file, as saved.
+     * @param checksum the CRC32 of the output file, as saved.
+     * @throws IOException if the totals cannot be written.
+     */
+    void write(File workbookFile, long length, long checksum) throws IOException {
+        SIDECAR.write(workbookFile, length, checksum, out -> {
+            out.writeInt(shopPlatformSales.size());
+            for (Entry<String, HashMap<String, Integer>> shop : shopPlatformSales.entrySet()) {
+                out.writeUTF(shop.getKey());
+                out.writeInt(shop.getValue().size());
+                for (Entry<String, Integer> platform : shop.getValue().entrySet()) {
+                    out.writeUTF(platform.getKey());
+                    out.writeInt(platform.getValue());
+                }
+            }
+            out.writeInt(gameTotals.size());
+            for (GameTotal gameTotal : gameTotals) {
+                out.writeInt(gameTotal.row);
+                out.writeUTF(gameTotal.platform);
+                out.writeUTF(gameTotal.title);
+                out.writeDouble(gameTotal.sales);
+            }
+        });
+    }
+
+    /**
+     * A record of the sales by game sheet.
+     */
+    static class GameTotal {
+
+        @Getter
+        private final int row;
+        @Getter
+        private final String platform;
+        @Getter
+        private final String title;
+        @Getter
+        @Setter
+        private double sales;
+
+        private GameTotal(int row, String platform, String title, double sales) {
+            this.row = row;
+            this.platform = platform;
+            this.title = title;
+            this.sales = sales;
+        }
+    }
+}
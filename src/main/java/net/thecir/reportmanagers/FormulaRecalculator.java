@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import net.thecir.constants.Constants;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+
+/**
+ * Recalculates the formulas of the output file after a report is written,
+ * instead of evaluating every formula cell of the workbook. It knows the
+ * formulas NewFileFormatter and ReportManager lay down:
+ * <ul>
+ * <li>the weekly totals row, SUM of each week column from C to BB;</li>
+ * <li>BD, SUM of each platform row over the weeks;</li>
+ * <li>BE and BN, the share of each platform in the sales, from BD;</li>
+ * <li>BI total, BJ days in stock and BO stock share, from BI and BD;</li>
+ * <li>the Total column of each shop on the sales by platform sheet.</li>
+ * </ul>
+ * Only the cells downstream of the changed ones are evaluated, along with the
+ * ones of the layout, which hold no result yet, as in a new file. The
+ * evaluator follows the precedents of a cell by itself, so the order they are
+ * evaluated in doesn't matter.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class FormulaRecalculator {
+
+    private static final int WEEKS_FIRST_COLUMN = CellReference.convertColStringToIndex("C");
+    private static final int WEEKS_LAST_COLUMN = CellReference.convertColStringToIndex("BB");
+    private static final int TOTAL_PCS_COLUMN = CellReference.convertColStringToIndex("BD");
+    private static final int PERCENTAGE_COLUMN = CellReference.convertColStringToIndex("BE");
+    private static final int STOCK_COLUMN = CellReference.convertColStringToIndex("BI");
+    private static final int DAYS_IN_STOCK_COLUMN = CellReference.convertColStringToIndex("BJ");
+    private static final int SALES_SHARE_COLUMN = CellReference.convertColStringToIndex("BN");
+    private static final int STOCK_SHARE_COLUMN = CellReference.convertColStringToIndex("BO");
+    //0-based rows of the platforms table on the first sheet
+    private static final int PLATFORMS_FIRST_ROW = Constants.PLATFORM_HEADER_FIRST_ROW - 1;
+    private static final int TOTALS_ROW = Constants.PLATFORMS_TABLE_LASTROW - 1;
+    private static final int SHOP_TOTAL_COLUMN = Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL - 1;
+
+    private final Sheet weeklyReportSheet;
+    private final Sheet salesByPlatformSheet;
+    private final FormulaEvaluator evaluator;
+
+    private final Set<CellAddress> weeklyReportCells = new LinkedHashSet<>();
+    private final Set<CellAddress> salesByPlatformCells = new LinkedHashSet<>();
+
+    FormulaRecalculator(Sheet weeklyReportSheet, Sheet salesByPlatformSheet, FormulaEvaluator evaluator) {
+        this.weeklyReportSheet = weeklyReportSheet;
+        this.salesByPlatformSheet = salesByPlatformSheet;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * The sales or the header of a week column changed.
+     *
+     * @param column 0-based column, from C to BB.
+     */
+    void weekChanged(int column) {
+        weeklyReportCells.add(new CellAddress(TOTALS_ROW, column));
+        for (int row = PLATFORMS_FIRST_ROW; row <= TOTALS_ROW; row++) {
+            weeklyReportCells.add(new CellAddress(row, TOTAL_PCS_COLUMN));
+            weeklyReportCells.add(new CellAddress(row, PERCENTAGE_COLUMN));
+            weeklyReportCells.add(new CellAddress(row, DAYS_IN_STOCK_COLUMN));
+            weeklyReportCells.add(new CellAddress(row, SALES_SHARE_COLUMN));
+        }
+    }
+
+    /**
+     * The latest stock, column BI, changed.
+     */
+    void stockChanged() {
+        weeklyReportCells.add(new CellAddress(TOTALS_ROW, STOCK_COLUMN));
+        for (int row = PLATFORMS_FIRST_ROW; row <= TOTALS_ROW; row++) {
+            weeklyReportCells.add(new CellAddress(row, DAYS_IN_STOCK_COLUMN));
+            weeklyReportCells.add(new CellAddress(row, STOCK_SHARE_COLUMN));
+        }
+    }
+
+    /**
+     * The sales of a shop on the sales by platform sheet changed.
+     *
+     * @param row 0-based row of the shop.
+     */
+    void shopChanged(int row) {
+        salesByPlatformCells.add(new CellAddress(row, SHOP_TOTAL_COLUMN));
+    }
+
+    /**
+     * Evaluates the changed formulas and the ones with no result yet, and
+     * stores their results in the cells.
+     */
+    void recalculate() {
+        addCellsWithNoResult();
+        evaluator.clearAllCachedResultValues();
+        evaluate(weeklyReportSheet, weeklyReportCells);
+        evaluate(salesByPlatformSheet, salesByPlatformCells);
+        weeklyReportCells.clear();
+        salesByPlatformCells.clear();
+    }
+
+    private void addCellsWithNoResult() {
+        for (int column = WEEKS_FIRST_COLUMN; column <= WEEKS_LAST_COLUMN; column++) {
+            addIfNoResult(weeklyReportSheet, weeklyReportCells, TOTALS_ROW, column);
+        }
+        for (int row = PLATFORMS_FIRST_ROW; row <= TOTALS_ROW; row++) {
+            addIfNoResult(weeklyReportSheet, weeklyReportCells, row, TOTAL_PCS_COLUMN);
+            addIfNoResult(weeklyReportSheet, weeklyReportCells, row, PERCENTAGE_COLUMN);
+            addIfNoResult(weeklyReportSheet, weeklyReportCells, row, DAYS_IN_STOCK_COLUMN);
+            addIfNoResult(weeklyReportSheet, weeklyReportCells, row, SALES_SHARE_COLUMN);
+            addIfNoResult(weeklyReportSheet, weeklyReportCells, row, STOCK_SHARE_COLUMN);
+        }
+        addIfNoResult(weeklyReportSheet, weeklyReportCells, TOTALS_ROW, STOCK_COLUMN);
+        for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW - 1; row <= salesByPlatformSheet.getLastRowNum(); row++) {
+            addIfNoResult(salesByPlatformSheet, salesByPlatformCells, row, SHOP_TOTAL_COLUMN);
+        }
+    }
+
+    private static void addIfNoResult(Sheet sheet, Set<CellAddress> cells, int row, int column) {
+        Cell cell = getCell(sheet, row, column);
+        //HSSF formula cells always hold a result
+        if (cell instanceof XSSFCell && cell.getCellTypeEnum() == CellType.FORMULA
+                && !((XSSFCell) cell).getCTCell().isSetV()) {
+            cells.add(new CellAddress(row, column));
+        }
+    }
+
+    private void evaluate(Sheet sheet, Set<CellAddress> cells) {
+        for (CellAddress address : cells) {
+            Cell cell = getCell(sheet, address.getRow(), address.getColumn());
+            if (cell != null && cell.getCellTypeEnum() == CellType.FORMULA) {
+                evaluator.evaluateFormulaCellEnum(cell);
+            }
+        }
+    }
+
+    private static Cell getCell(Sheet sheet, int row, int column) {
+        Row sheetRow = sheet.getRow(row);
+        return sheetRow == null ? null : sheetRow.getCell(column);
+    }
+}
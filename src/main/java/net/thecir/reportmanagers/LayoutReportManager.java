@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import lombok.Getter;
+import lombok.extern.java.Log;
+import net.thecir.exceptions.InputFileContainsNoValidDateException;
+import net.thecir.exceptions.InputFileIOException;
+import net.thecir.inputreaders.InputRow;
+import net.thecir.inputreaders.InputRowHandler;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * Reads the input files of any retail chain, as described by its layout. The
+ * layout is compiled up front and the shop columns are mapped to shops once
+ * per file, so the rows are read with no lookups by name.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+public class LayoutReportManager extends ReportManager {
+
+    @Getter
+    private final RetailerLayout layout;
+    //Rows up to the last header row, read once from the top of the input sheet
+    private InputRow[] headerRows;
+
+    public LayoutReportManager(RetailerLayout layout, File inputFilePath, File outputFilePath, boolean undo) {
+        super(inputFilePath, outputFilePath, undo);
+        this.layout = layout;
+    }
+
+    public LayoutReportManager(RetailerLayout layout, List<File> inputFilePaths, File outputFilePath, boolean undo) {
+        super(inputFilePaths, outputFilePath, undo);
+        this.layout = layout;
+    }
+
+    /**
+     * Undoes or redoes the weeks of an output file from its journal, see
+     * {@link #undoWeeks(int)}, reading no input files, so no layout is needed.
+     *
+     * @param outputFilePath the output file.
+     */
+    public LayoutReportManager(File outputFilePath) {
+        this(null, Collections.<File>emptyList(), outputFilePath, false);
+    }
+
+    @Override
+    protected void clearInputRows() {
+        headerRows = null;
+    }
+
+    @Override
+    protected ReportManager createInputParser(File inputWorkbookFile) {
+        return new LayoutReportManager(layout, inputWorkbookFile, null, undo);
+    }
+
+    @Override
+    protected String getInputFormat() {
+        return layout.getFingerprint();
+    }
+
+    /**
+     * The date is taken from the first of the date cells, which holds one.
+     * If the cell holds several dates, the latest one gives the week.
+     */
+    @Override
+    protected int getWeekNumber() throws InputFileContainsNoValidDateException, InputFileIOException {
+        readHeaderRows();
+        for (int rowNum = layout.getDateCells().getFirstRow(); rowNum <= layout.getDateCells().getLastRow(); rowNum++) {
+            InputRow dateRow = headerRows[rowNum];
+            for (int column = layout.getDateCells().getFirstColumn(); column <= layout.getDateCells().getLastColumn(); column++) {
+                if (dateRow.getCellType(column) != CellType.STRING
+                        || "".equals(dateRow.getStringCellValue(column))) {
+                    continue;
+                }
+                Date date = getLatestDate(dateRow.getStringCellValue(column));
+                if (date != null) {
+                    Calendar cal = Calendar.getInstance();
+                    cal.setTime(date);
+                    return cal.get(Calendar.WEEK_OF_YEAR);
+                }
+            }
+        }
+        throw new InputFileContainsNoValidDateException(rb.getString(layout.getDateErrorKey()));
+    }
+
+    /**
+     * @param value the value of a date cell.
+     * @return the latest date in the value, null if there's none.
+     * @throws InputFileContainsNoValidDateException if there are too many
+     * dates or one cannot be parsed.
+     */
+    private Date getLatestDate(String value) throws InputFileContainsNoValidDateException {
+        Matcher matcher = layout.matchDates(value);
+        Date latest = null;
+        int datesCount = 0;
+        while (matcher.find()) {
+            if (++datesCount > layout.getMaxDatesCount()) {
+                throw new InputFileContainsNoValidDateException(rb.getString(layout.getDateErrorKey()));
+            }
+            String extractedDate = matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+            try {
+                Date date = new SimpleDateFormat(layout.getDateFormat(extractedDate)).parse(extractedDate);
+                if (latest == null || date.compareTo(latest) > 0) {
+                    latest = date;
+                }
+            } catch (ParseException ex) {
+                log.log(Level.SEVERE, "Unparsable source file date!", ex);
+                throw new InputFileContainsNoValidDateException(rb.getString(layout.getDateErrorKey()));
+            }
+        }
+        return latest;
+    }
+
+    @Override
+    protected void readInputData() throws InputFileIOException {
+        if (layout.getShopsOrientation() == RetailerLayout.ShopsOrientation.ROWS) {
+            readInput(new ItemRowsHandler());
+        } else {
+            readHeaderRows();
+            readInput(new ShopColumnsHandler(headerRows[layout.getShopsRow()]));
+        }
+    }
+
+    /**
+     * Every item starts with a row holding the item number, description and
+     * the first shop. The rows below it, with no item number, hold the rest of
+     * the shops. If the last of them, right before the next item, is the total
+     * for the item, it's skipped. Since the rows arrive one at a time, a shop
+     * row is kept pending until the row after it shows whether it's the
+     * total.
+     */
+    private class ItemRowsHandler implements InputRowHandler {
+
+        private int currentGame;
+        //Shop id of each shop cell value seen so far, -1 if the shop is not read
+        private final HashMap<String, Integer> storeIds = new HashMap<>();
+        //Row waiting for the next one, to tell if it's the item total
+        private InputRow pendingRow;
+        //Row number, which would continue the current item, -1 if none
+        private int nextItemRowNum = -1;
+
+        @Override
+        public boolean handleRow(InputRow row) {
+            if (row.getRowNum() < layout.getFirstRow()) {
+                return true;
+            }
+            if (pendingRow != null) {
+                boolean nextRowHasNoItem = row.getRowNum() == pendingRow.getRowNum() + 1 && hasEmptyItemNumber(row);
+                if (hasEmptyItemNumber(pendingRow) && nextRowHasNoItem) {
+                    addStockAndSales(pendingRow);
+                    nextItemRowNum = pendingRow.getRowNum() + 1;
+                }
+                pendingRow = null;
+            }
+            if (nextItemRowNum >= 0) {
+                boolean continuesItem = row.getRowNum() == nextItemRowNum;
+                nextItemRowNum = -1;
+                if (continuesItem && layout.isLastItemRowTotal()) {
+                    pendingRow = row;
+                    return true;
+                } else if (continuesItem && hasEmptyItemNumber(row)) {
+                    addStockAndSales(row);
+                    nextItemRowNum = row.getRowNum() + 1;
+                    return true;
+                }
+            }
+            if (!layout.hasItemNumber(row)) {
+                return true;
+            }
+            PlatformClassifier.Match match = layout.classify(row.getStringCellValue(layout.getDescriptionColumn()));
+            currentGame = newData.addGame(match.getPlatform(), match.getTitle());
+            addStockAndSales(row);
+            nextItemRowNum = row.getRowNum() + 1;
+            return true;
+        }
+
+        private void addStockAndSales(InputRow row) {
+            String shop = row.getStringCellValue(layout.getShopColumn());
+            Integer store = storeIds.get(shop);
+            if (store == null) {
+                String storeName = layout.getShopName(shop);
+                store = storeName == null ? -1 : newData.addShop(storeName);
+                storeIds.put(shop, store);
+            }
+            if (store < 0) {
+                return;
+            }
+            int stock = row.getInt(layout.getStockColumn(), 0);
+            int sales = row.getInt(layout.getSalesColumn(), 0);
+            newData.add(store, currentGame, stock, sales);
+        }
+
+        /**
+         * The rows of an item, other than the first one, hold an empty string
+         * in place of the item number.
+         */
+        private boolean hasEmptyItemNumber(InputRow row) {
+            return row.getCellType(layout.getItemColumn()) == CellType.STRING
+                    && row.getStringCellValue(layout.getItemColumn()).isEmpty();
+        }
+    }
+
+    /**
+     * Every item is a row, with a stock and a sales column for each shop. The
+     * shop columns are mapped to their shop and field once, from the shops
+     * row, and the columns with no shop are left out of the mapping.
+     */
+    private class ShopColumnsHandler implements InputRowHandler {
+
+        //The shop columns, the shop id of each and whether it holds the stock
+        private final int[] columns;
+        private final int[] columnStores;
+        private final boolean[] stockColumns;
+
+        ShopColumnsHandler(InputRow shopsRow) {
+            int columnsCount = Math.max(0, shopsRow.getLastCellNum() - layout.getShopsFirstColumn());
+            int[] mappedColumns = new int[columnsCount];
+            int[] mappedStores = new int[columnsCount];
+            boolean[] mappedStockColumns = new boolean[columnsCount];
+            int mapped = 0;
+            //The shops are added as their columns are first seen, in column order
+            for (int column = layout.getShopsFirstColumn(); column < shopsRow.getLastCellNum(); column++) {
+                String store = layout.getShopName(shopsRow.getStringCellValue(column));
+                if (store == null) {
+                    continue;
+                }
+                mappedColumns[mapped] = column;
+                mappedStores[mapped] = newData.addShop(store);
+                mappedStockColumns[mapped] = layout.isStockColumn(column);
+                mapped++;
+            }
+            columns = Arrays.copyOf(mappedColumns, mapped);
+            columnStores = Arrays.copyOf(mappedStores, mapped);
+            stockColumns = Arrays.copyOf(mappedStockColumns, mapped);
+        }
+
+        @Override
+        public boolean handleRow(InputRow row) {
+            if (row.getRowNum() < layout.getFirstRow() || !layout.hasItemNumber(row)) {
+                return true;
+            }
+            PlatformClassifier.Match match = layout.classify(row.getStringCellValue(layout.getDescriptionColumn()));
+            int game = newData.addGame(match.getPlatform(), match.getTitle());
+            for (int i = 0; i < columns.length; i++) {
+                int value = row.getInt(columns[i], 0);
+                if (stockColumns[i]) {
+                    newData.add(columnStores[i], game, value, 0);
+                } else {
+                    newData.add(columnStores[i], game, 0, value);
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    protected boolean isInputFileCorrect() throws InputFileIOException {
+        readHeaderRows();
+        if (layout.getCheckColumnCount() >= 0
+                && headerRows[layout.getFirstRow()].getLastCellNum() != layout.getCheckColumnCount()) {
+            return false;
+        }
+        if (layout.getCheckRow() >= 0) {
+            InputRow checkRow = headerRows[layout.getCheckRow()];
+            return checkRow.getCellType(layout.getCheckColumn()) == CellType.STRING
+                    && layout.isCheckValue(checkRow.getStringCellValue(layout.getCheckColumn()));
+        }
+        boolean[] found = new boolean[1];
+        probeInput(row -> {
+            if (row.getRowNum() < layout.getFirstRow()
+                    || row.getCellType(layout.getCheckColumn()) != CellType.STRING) {
+                return true;
+            }
+            found[0] = layout.isCheckValue(row.getStringCellValue(layout.getCheckColumn()));
+            return !found[0];
+        });
+        return found[0];
+    }
+
+    /**
+     * The date, the check cell and the shop names are at the top of the
+     * sheet, so only the first few rows are read. Missing rows are treated as
+     * empty.
+     *
+     * @throws InputFileIOException if the input file cannot be read.
+     */
+    private void readHeaderRows() throws InputFileIOException {
+        if (headerRows != null) {
+            return;
+        }
+        int lastHeaderRow = layout.getLastHeaderRow();
+        InputRow[] rows = new InputRow[lastHeaderRow + 1];
+        probeInput(row -> {
+            if (row.getRowNum() <= lastHeaderRow) {
+                rows[row.getRowNum()] = row;
+            }
+            return row.getRowNum() < lastHeaderRow;
+        });
+        for (int rowNum = 0; rowNum < rows.length; rowNum++) {
+            if (rows[rowNum] == null) {
+                rows[rowNum] = new InputRow(rowNum);
+            }
+        }
+        headerRows = rows;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The weeks applied to an output file, in order, kept in a file next to it,
+ * so the latest ones can be undone and redone any number of steps without
+ * their input files. The weeks after the applied ones are those undone, until
+ * a new week is applied. Like the running totals, the journal is dropped if
+ * the workbook doesn't match it, see {@link SidecarFile}.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class OperationJournal {
+
+    private static final SidecarFile SIDECAR = new SidecarFile(0x4C524D4A, 1, ".journal");
+
+    private final List<WeekDelta> weeks = new ArrayList<>();
+    //Number of weeks applied, the rest can be redone
+    private int appliedCount;
+
+    /**
+     * @return the number of weeks that can be undone.
+     */
+    int getAppliedCount() {
+        return appliedCount;
+    }
+
+    /**
+     * @return the number of weeks that can be redone.
+     */
+    int getUndoneCount() {
+        return weeks.size() - appliedCount;
+    }
+
+    /**
+     * Adds an applied week. The undone weeks can no longer be redone.
+     *
+     * @param week the week, written to the output file.
+     */
+    void record(WeekDelta week) {
+        weeks.subList(appliedCount, weeks.size()).clear();
+        weeks.add(week);
+        appliedCount++;
+    }
+
+    /**
+     * Drops the week written to a column, after it was undone with its input
+     * file. The undone weeks can no longer be redone.
+     *
+     * @param column 0-based column of the week.
+     */
+    void forget(int column) {
+        weeks.subList(appliedCount, weeks.size()).clear();
+        for (int week = appliedCount - 1; week >= 0; week--) {
+            if (weeks.get(week).getColumn() == column) {
+                weeks.remove(week);
+                appliedCount--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param inputHash the SHA-256 of an input file.
+     * @return the applied week read from the input file, null if there's
+     * none.
+     */
+    WeekDelta findApplied(String inputHash) {
+        for (int week = 0; week < appliedCount; week++) {
+            if (inputHash.equals(weeks.get(week).getInputHash())) {
+                return weeks.get(week);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the latest applied week, null if there's none.
+     */
+    WeekDelta getLatestApplied() {
+        return appliedCount == 0 ? null : weeks.get(appliedCount - 1);
+    }
+
+    /**
+     * @return the latest applied week, now undone.
+     */
+    WeekDelta undo() {
+        return weeks.get(--appliedCount);
+    }
+
+    /**
+     * @return the earliest undone week, now applied again.
+     */
+    WeekDelta redo() {
+        return weeks.get(appliedCount++);
+    }
+
+    /**
+     * @param workbookFile the output file.
+     * @return the file the journal of the output file is kept in.
+     */
+    static File getSidecarFile(File workbookFile) {
+        return SIDECAR.getFile(workbookFile);
+    }
+
+    /**
+     * Reads the journal of an output file.
+     *
+     * @param workbookFile the output file.
+     * @param length the length of the output file, as loaded.
+     * @param checksum the CRC32 of the output file, as loaded.
+     * @return the journal, empty if there's none, it was written with a
+     * different output file or it's damaged.
+     */
+    static OperationJournal read(File workbookFile, long length, long checksum) {
+        OperationJournal journal = SIDECAR.read(workbookFile, length, checksum, in -> {
+            OperationJournal read = new OperationJournal();
+            int stringsCount = in.readInt();
+            List<String> strings = new ArrayList<>(stringsCount);
+            for (int i = 0; i < stringsCount; i++) {
+                strings.add(in.readUTF());
+            }
+            int weeksCount = in.readInt();
+            for (int week = 0; week < weeksCount; week++) {
+                read.weeks.add(WeekDelta.read(in, strings));
+            }
+            read.appliedCount = in.readInt();
+            return read;
+        });
+        return journal != null ? journal : new OperationJournal();
+    }
+
+    /**
+     * Writes the journal next to the output file. The shops and titles of all
+     * weeks are written once, in a string table.
+     *
+     * @param workbookFile the output file.
+     * @param length the length of the output file, as saved.
+     * @param checksum the CRC32 of the output file, as saved.
+     * @throws IOException if the journal cannot be written.
+     */
+    void write(File workbookFile, long length, long checksum) throws IOException {
+        SIDECAR.write(workbookFile, length, checksum, out -> {
+            LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+            for (WeekDelta week : weeks) {
+                week.collectStrings(strings);
+            }
+            out.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                out.writeUTF(string);
+            }
+            out.writeInt(weeks.size());
+            for (WeekDelta week : weeks) {
+                week.write(out, strings);
+            }
+            out.writeInt(appliedCount);
+        });
+    }
+}
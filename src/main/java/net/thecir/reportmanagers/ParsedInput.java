@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import lombok.Getter;
+import net.thecir.metrics.ReportMetrics;
+
+/**
+ * An input file, read and checked, ready to be applied to the output file.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class ParsedInput {
+
+    @Getter
+    private final File inputWorkbookFile;
+    //SHA-256 of the input file, null if not known
+    @Getter
+    private final String inputHash;
+    @Getter
+    private final int weekNumber;
+    @Getter
+    private final StockSalesTable data;
+    //Time spent reading the input file and its rows
+    @Getter
+    private final ReportMetrics metrics;
+
+    ParsedInput(File inputWorkbookFile, String inputHash, int weekNumber, StockSalesTable data, ReportMetrics metrics) {
+        this.inputWorkbookFile = inputWorkbookFile;
+        this.inputHash = inputHash;
+        this.weekNumber = weekNumber;
+        this.data = data;
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.logging.Level;
+import lombok.Getter;
+import lombok.extern.java.Log;
+import com.thecir.tools.ExcelTools;
+import net.thecir.enums.Platforms;
+import net.thecir.filemanagers.CacheDirectory;
+import net.thecir.filemanagers.ClassFingerprint;
+import net.thecir.inputreaders.InputRow;
+import net.thecir.inputreaders.WorkbookProbe;
+import net.thecir.inputreaders.XlsInputReader;
+import net.thecir.inputreaders.XlsxInputReader;
+import net.thecir.metrics.ReportMetrics;
+import org.apache.poi.Version;
+
+/**
+ * The input files read so far, kept on disk under the SHA-256 of their
+ * content, so a file applied again, undone or submitted twice is not read
+ * again. An entry holds the week and the stock and sales of every shop and
+ * game read from the file. The entries are keyed by the layout as well, as
+ * another layout reads the same file differently, and by the classes which
+ * read the input files, so the entries read by an older version are never
+ * served. Once the entries take more than the given size, the least recently
+ * used ones are evicted.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+public class ParsedInputCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4C524D43;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".input";
+    //The classes which read the input files, with their nested classes
+    private static final Class<?>[] READER_CLASSES = {InputRow.class, WorkbookProbe.class, XlsInputReader.class,
+        XlsxInputReader.class, ExcelTools.class, ReportManager.class, LayoutReportManager.class,
+        RetailerLayout.class, PlatformClassifier.class, Platforms.class, StockSalesTable.class,
+        ParsedInputCache.class};
+
+    //SHA-256 of the classes which read the input files, computed once
+    private static String codeFingerprint;
+
+    @Getter
+    private final File directory;
+    @Getter
+    private final long maxBytes;
+
+    /**
+     * @param directory the directory of the entries, created on first use.
+     * @param maxBytes the most the entries may take.
+     */
+    public ParsedInputCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cache in the user's cache directory, see
+     * {@link CacheDirectory}, null if there's no such directory the user can
+     * trust.
+     */
+    public static ParsedInputCache getDefault() {
+        try {
+            return new ParsedInputCache(CacheDirectory.get("inputs").toFile(), DEFAULT_MAX_BYTES);
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The input files cannot be cached, every input file is read.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * @param file a file.
+     * @return the SHA-256 of the content of the file, in hex.
+     * @throws IOException if the file cannot be read.
+     */
+    static String hash(File file) throws IOException {
+        MessageDigest digest = getDigest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    /**
+     * Reads an input file from the cache. The entry becomes the most recently
+     * used one.
+     *
+     * @param inputWorkbookFile the input file.
+     * @param inputHash the SHA-256 of the input file.
+     * @param inputFormat how the input file is read, see
+     * {@link ReportManager#getInputFormat()}.
+     * @return the input file, null if it's not cached.
+     */
+    synchronized ParsedInput get(File inputWorkbookFile, String inputHash, String inputFormat) {
+        File entryFile = getEntryFile(inputHash, inputFormat);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown cache entry version.");
+            }
+            int weekNumber = in.readInt();
+            StockSalesTable data = StockSalesTable.read(in);
+            entryFile.setLastModified(System.currentTimeMillis());
+            ReportMetrics inputMetrics = new ReportMetrics();
+            inputMetrics.addInputFile(0, data.getGamesCount(), data.getShopsCount());
+            log.log(Level.INFO, "Read {0} from the cache of input files.", inputWorkbookFile);
+            return new ParsedInput(inputWorkbookFile, inputHash, weekNumber, data, inputMetrics);
+        } catch (IOException | RuntimeException ex) {
+            log.log(Level.WARNING, "The cached input file cannot be read, it's read again.", ex);
+            entryFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Adds an input file to the cache, through a temporary file, and evicts
+     * the least recently used entries over the size of the cache. A failure
+     * only costs reading the input file again next time.
+     *
+     * @param input the input file, with its hash.
+     * @param inputFormat how the input file is read, see
+     * {@link ReportManager#getInputFormat()}.
+     */
+    synchronized void put(ParsedInput input, String inputFormat) {
+        File entryFile = getEntryFile(input.getInputHash(), inputFormat);
+        if (entryFile.isFile()) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            tempFile = File.createTempFile(entryFile.getName(), ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(input.getWeekNumber());
+                input.getData().write(out);
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The input file cannot be cached.", ex);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries, until the rest fit in the
+     * size of the cache.
+     */
+    private void evict() {
+        File[] entryFiles = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (entryFiles == null) {
+            return;
+        }
+        long total = 0;
+        for (File entryFile : entryFiles) {
+            total += entryFile.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(entryFiles, Comparator.comparingLong(File::lastModified));
+        for (File entryFile : entryFiles) {
+            long length = entryFile.length();
+            if (entryFile.delete()) {
+                total -= length;
+                if (total <= maxBytes) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private File getEntryFile(String inputHash, String inputFormat) {
+        MessageDigest digest = getDigest();
+        digest.update((VERSION + "\n" + getCodeFingerprint() + "\n" + inputFormat + "\n" + inputHash)
+                .getBytes(StandardCharsets.UTF_8));
+        return new File(directory, String.format("%064x", new BigInteger(1, digest.digest())) + SUFFIX);
+    }
+
+    /**
+     * @return the SHA-256 of the classes which read the input files and of the
+     * POI version. Random if a class cannot be read, so no entry written
+     * before is served.
+     */
+    private static synchronized String getCodeFingerprint() {
+        if (codeFingerprint == null) {
+            MessageDigest digest = getDigest();
+            try {
+                ClassFingerprint.update(digest, READER_CLASSES);
+                digest.update(Version.getVersion().getBytes(StandardCharsets.UTF_8));
+                codeFingerprint = String.format("%064x", new BigInteger(1, digest.digest()));
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "The classes reading the input files cannot be read, the cached input files are not used.", ex);
+                codeFingerprint = UUID.randomUUID().toString();
+            }
+        }
+        return codeFingerprint;
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import lombok.Getter;
+import net.thecir.enums.Platforms;
+
+/**
+ * Tells the platform of a game from the abbreviation its description starts
+ * with. The abbreviations are compiled once into a case insensitive prefix
+ * trie, so a description is classified with a single walk over its first few
+ * characters, instead of trying a pattern per platform.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class PlatformClassifier {
+
+    //Abbreviations are plain ASCII, anything else ends the walk
+    private static final int ALPHABET_SIZE = 128;
+    private static final int NO_STATE = 0;
+    private static final int ROOT = 1;
+
+    //next[state][character] is the following state, NO_STATE if none
+    private int[][] next;
+    //The platform whose abbreviation ends in the state, null if none
+    private Platforms[] platformAt;
+    private int statesCount;
+
+    /**
+     * @param abbreviation gives the abbreviation of each platform in the input
+     * file, e.g. RetailerLayout::getPlatformAbbreviation, null if the platform
+     * is not looked for. Platforms.Other is not looked for, it's what's left
+     * when nothing matches.
+     */
+    public PlatformClassifier(Function<Platforms, String> abbreviation) {
+        next = new int[16][];
+        platformAt = new Platforms[16];
+        //No transition leads to NO_STATE, it only marks missing ones
+        addState();
+        addState();
+        for (Platforms platform : Platforms.values()) {
+            String platformAbbreviation = abbreviation.apply(platform);
+            if (platform != Platforms.Other && platformAbbreviation != null) {
+                add(platformAbbreviation, platform);
+            }
+        }
+    }
+
+    /**
+     * Finds the platform, whose abbreviation the description starts with. If
+     * more than one does, the platform declared first wins.
+     *
+     * @param description the game description.
+     * @return the platform and the description without the abbreviation,
+     * trimmed. Platforms.Other and the unchanged description if no
+     * abbreviation matched.
+     */
+    public Match classify(String description) {
+        Platforms platform = null;
+        int prefixLength = 0;
+        int state = ROOT;
+        for (int i = 0; i < description.length(); i++) {
+            char character = toUpperCase(description.charAt(i));
+            if (character >= ALPHABET_SIZE) {
+                break;
+            }
+            state = next[state][character];
+            if (state == NO_STATE) {
+                break;
+            }
+            Platforms found = platformAt[state];
+            if (found != null && (platform == null || found.ordinal() < platform.ordinal())) {
+                platform = found;
+                prefixLength = i + 1;
+            }
+        }
+        if (platform == null) {
+            return new Match(Platforms.Other, description);
+        }
+        return new Match(platform, description.substring(prefixLength).trim());
+    }
+
+    private void add(String abbreviation, Platforms platform) {
+        int state = ROOT;
+        for (int i = 0; i < abbreviation.length(); i++) {
+            char character = toUpperCase(abbreviation.charAt(i));
+            if (character >= ALPHABET_SIZE) {
+                throw new IllegalArgumentException("Not an ASCII abbreviation: " + abbreviation);
+            }
+            if (next[state][character] == NO_STATE) {
+                next[state][character] = addState();
+            }
+            state = next[state][character];
+        }
+        if (platformAt[state] == null) {
+            platformAt[state] = platform;
+        }
+    }
+
+    private int addState() {
+        if (statesCount == next.length) {
+            next = Arrays.copyOf(next, statesCount * 2);
+            platformAt = Arrays.copyOf(platformAt, statesCount * 2);
+        }
+        next[statesCount] = new int[ALPHABET_SIZE];
+        return statesCount++;
+    }
+
+    /**
+     * Same as Pattern.CASE_INSENSITIVE, only ASCII letters are folded.
+     */
+    private static char toUpperCase(char character) {
+        if (character >= 'a' && character <= 'z') {
+            return (char) (character - ('a' - 'A'));
+        }
+        return character;
+    }
+
+    /**
+     * The platform of a description and the game title left after the
+     * abbreviation.
+     */
+    public static class Match {
+
+        @Getter
+        private final Platforms platform;
+        @Getter
+        private final String title;
+
+        Match(Platforms platform, String title) {
+            this.platform = platform;
+            this.title = title;
+        }
+    }
+}
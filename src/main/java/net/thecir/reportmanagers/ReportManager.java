@@ -27,46 +27,78 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.java.Log;
+import com.thecir.tools.ExcelTools.RowCursor;
 import net.thecir.constants.Constants;
 import net.thecir.enums.Platforms;
+import net.thecir.exceptions.InputFileAlreadyAppliedException;
 import net.thecir.exceptions.InputFileContainsNoValidDateException;
+import net.thecir.exceptions.InputFileIOException;
 import net.thecir.exceptions.OutputFileIsFullException;
 import net.thecir.exceptions.OutputFileNoRecordsFoundException;
 import net.thecir.exceptions.OutputFileNotCorrectException;
 import net.thecir.exceptions.InputFileNotMatchingSelectedFileException;
 import net.thecir.exceptions.OutputFileIOException;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import net.thecir.filemanagers.AtomicFileSaver;
+import net.thecir.filemanagers.OutputFileLock;
+import net.thecir.filemanagers.SheetRows;
+import net.thecir.filemanagers.StreamingWorkbookReader;
+import net.thecir.filemanagers.StreamingWorkbookWriter;
+import net.thecir.filemanagers.StyleCompactor;
+import net.thecir.inputreaders.InputReader;
+import net.thecir.inputreaders.InputRow;
+import net.thecir.inputreaders.InputRowHandler;
+import net.thecir.inputreaders.WorkbookProbe;
+import net.thecir.inputreaders.XlsInputReader;
+import net.thecir.inputreaders.XlsxInputReader;
+import net.thecir.metrics.ReportMetrics;
+import net.thecir.metrics.ReportMetricsCollector;
+import net.thecir.metrics.ReportMetricsListener;
+import net.thecir.metrics.ReportPhase;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.poifs.filesystem.DocumentFactoryHelper;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellReference;
-import org.apache.poi.ss.util.CellUtil;
-import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
@@ -76,271 +108,951 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 @Log
 public abstract class ReportManager {
 
-    /**
-     * Used internally as data structure that holds stock and sales for each
-     * game.
-     */
-    protected class StockSales {
+    //The shops and games ranked by default, as many as the top five sheet shows
+    public static final int DEFAULT_TOP_COUNT = Constants.TOP_FIVE_TOP_LAST_ROW - Constants.TOP_FIVE_TOP_FIRST_ROW + 1;
+    private static final String RANKING_SUFFIX = ".ranking.txt";
 
-        @Getter
-        @Setter
-        int Stock;
+    //0-based columns of the output sheets
+    private static final int PLATFORM_COLUMN = CellReference.convertColStringToIndex("B");
+    private static final int STOCK_COLUMN = CellReference.convertColStringToIndex("BI");
+    private static final int DAYS_IN_STOCK_COLUMN = CellReference.convertColStringToIndex("BJ");
+    private static final int TOP_FIVE_OVERALL_NAME_COLUMN = CellReference.convertColStringToIndex("C");
+    private static final int TOP_FIVE_OVERALL_SALES_COLUMN = CellReference.convertColStringToIndex("H");
+    private static final int TOP_FIVE_LATEST_NAME_COLUMN = CellReference.convertColStringToIndex("K");
+    private static final int TOP_FIVE_LATEST_SALES_COLUMN = CellReference.convertColStringToIndex("P");
+    private static final int SHOP_COLUMN = 0;
+    private static final int OVERALL_TOTAL_COLUMN = Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL - 1;
 
-        @Getter
-        @Setter
-        int Sales;
-    }
-    //Input and output sheets
-    private Workbook inputWorkbook;
+    //Output workbook
     private Workbook outputWorkbook;
 
     private File outputWorkbookFile;
 
-    //Input worksheet
-    protected Sheet inputDataSheet;
+    //Input files, applied in order
+    private List<File> inputWorkbookFiles;
+    //Input file being read, streamed row by row
+    protected InputReader inputReader;
+    //Rows streamed from the input file, over all passes
+    private long inputRowsRead;
+    //Week of the input file, read when it's checked
+    private int inputWeekNumber;
+    //The week being applied or undone
+    private WeekDelta delta;
+    //Reads the input files in parallel when set, otherwise they're read one by one
+    @Setter
+    private ExecutorService parseExecutor;
+    //The input files read before, none are cached when not set
+    @Setter
+    private ParsedInputCache inputCache;
 
     //Output worksheets
     protected Sheet weeklyReportSheet;
     protected Sheet topFiveSheet;
     protected Sheet salesByPlatformSheet;
     protected Sheet salesByGameSheet;
+    //The records of the sales by game sheet, kept out of the workbook when streaming
+    private SalesByGameRecords salesByGameRecords;
+    private SheetRows salesByGameRows;
+    //Running totals of the output file, null until read back from the sheets if the sidecar file didn't match
+    private AggregateStore aggregates;
+    //Weeks applied to the output file, empty if the journal file didn't match
+    private OperationJournal journal;
+    //Number of shops and games ranked, the top five sheet shows the first five
+    @Setter
+    private int topCount = DEFAULT_TOP_COUNT;
+    //Where all the ranked shops and games are written, with the games ranked by platform and by shop, null for none
+    @Setter
+    private File rankingFile;
+    //Best selling shops and games of the output file and of the latest input file, the latter null when undoing
+    @Getter
+    private SalesRanking overallRanking;
+    @Getter
+    private SalesRanking latestWeekRanking;
 
     //Evaluator is needed to evaluate the cells before getting the value, otherwise we get incorrect results.
     protected FormulaEvaluator evaluator;
+    //Evaluates the formulas downstream of the cells written by the report
+    private FormulaRecalculator recalculator;
     //Indicated whether the user is adding or removing
     protected boolean undo;
+    //Whether the records of the sales by game sheet are kept out of the workbook and the largest sheets streamed on save
+    @Setter
+    private boolean streamingOutput;
+    //Durations and counters of the report being generated
+    private ReportMetrics metrics = new ReportMetrics();
+    //Number of previous output files kept as backups when saving, 0 for none
+    @Setter
+    private int outputBackups;
+    //How long to wait for the other jobs on the output file, OutputFileLock.WAIT_INDEFINITELY to wait until they finish
+    @Setter
+    private long lockTimeoutMillis = OutputFileLock.DEFAULT_TIMEOUT_MILLIS;
+    //Receives the metrics of every report, published through JMX by default
+    @Setter
+    private ReportMetricsListener metricsListener = ReportMetricsCollector.getInstance();
 
     ResourceBundle rb;
     /**
-     * Shop, platform, game, stock/sales.
+     * Stock and sales by shop and game, read from the input file.
      */
-    protected HashMap<String, HashMap<String, HashMap<String, StockSales>>> newData;
+    protected StockSalesTable newData;
 
     public ReportManager(File inputWorkbookFile, File outputWorkbookFile, boolean undo) {
+        this(Collections.singletonList(inputWorkbookFile), outputWorkbookFile, undo);
+    }
+
+    /**
+     * Applies several input files, for example the weeks of a season, to the
+     * output file, which is loaded and saved only once.
+     *
+     * @param inputWorkbookFiles input files, applied in the given order.
+     * @param outputWorkbookFile the output file.
+     * @param undo whether the input files are removed from the output file.
+     */
+    public ReportManager(List<File> inputWorkbookFiles, File outputWorkbookFile, boolean undo) {
+        this.inputWorkbookFiles = new ArrayList<>(inputWorkbookFiles);
         this.outputWorkbookFile = outputWorkbookFile;
         this.undo = undo;
-        newData = new HashMap<>();
         rb = ResourceBundle.getBundle("CoreLanguageBundles/ErrorMessages");
-        try {
-            //TODO Input stream resource
-            outputWorkbook = WorkbookFactory.create(new FileInputStream(outputWorkbookFile));
-        } catch (IOException ex) {
-            //TODO
-            log.log(Level.SEVERE, null, ex);
-        } catch (InvalidFormatException ex) {
-            log.log(Level.SEVERE, null, ex);
-        }
+    }
 
+    /**
+     * Opens an input file, in place of the previous one.
+     *
+     * @param inputWorkbookFile the input file.
+     */
+    void openInputFile(File inputWorkbookFile) {
+        inputReader = null;
+        inputRowsRead = 0;
+        newData = new StockSalesTable();
+        clearInputRows();
         try (InputStream is = new BufferedInputStream(new FileInputStream(inputWorkbookFile))) {
             if (POIFSFileSystem.hasPOIFSHeader(is)) {
-                inputWorkbook = new HSSFWorkbook(is);
+                inputReader = new XlsInputReader(inputWorkbookFile);
             } else if (DocumentFactoryHelper.hasOOXMLHeader(is)) {
-                inputWorkbook = new XSSFWorkbook(is);
+                inputReader = new XlsxInputReader(inputWorkbookFile);
             }
         } catch (IOException ex) {
             log.log(Level.SEVERE, null, ex);
         }
-        inputDataSheet = inputWorkbook.getSheetAt(0);
+    }
+
+    /**
+     * Opens the output workbook. When streaming, the records of the sales by
+     * game sheet are kept out of the workbook, so only its headers are
+     * loaded.
+     *
+     * @throws OutputFileIOException if the output file cannot be read.
+     */
+    void loadOutputWorkbook() throws OutputFileIOException {
+        CRC32 checksum = new CRC32();
+        try (CheckedInputStream checkedIs = new CheckedInputStream(new FileInputStream(outputWorkbookFile), checksum)) {
+            //POI may close the stream before its end, which is still read for the checksum
+            InputStream is = new BufferedInputStream(new FilterInputStream(checkedIs) {
+                @Override
+                public void close() {
+                }
+            });
+            if (streamingOutput && DocumentFactoryHelper.hasOOXMLHeader(is)) {
+                StreamingWorkbookReader reader = new StreamingWorkbookReader(is);
+                salesByGameRows = reader.extract(3, Constants.OVERALL_SALES_BY_GAME_FIRST_ROW - 1);
+                outputWorkbook = reader.getWorkbook();
+            } else {
+                outputWorkbook = WorkbookFactory.create(is);
+            }
+            byte[] buffer = new byte[8192];
+            while (checkedIs.read(buffer) != -1) {
+            }
+        } catch (IOException | InvalidFormatException ex) {
+            log.log(Level.SEVERE, "The output file cannot be read.", ex);
+            throw new OutputFileIOException(rb.getString("OutputFileIOExceptionMessage"), ex);
+        }
+        aggregates = AggregateStore.read(outputWorkbookFile, outputWorkbookFile.length(), checksum.getValue());
+        journal = OperationJournal.read(outputWorkbookFile, outputWorkbookFile.length(), checksum.getValue());
         weeklyReportSheet = outputWorkbook.getSheetAt(0);
         topFiveSheet = outputWorkbook.getSheetAt(1);
         salesByPlatformSheet = outputWorkbook.getSheetAt(2);
         salesByGameSheet = outputWorkbook.getSheetAt(3);
+        salesByGameRecords = salesByGameRows != null
+                ? new StreamedSalesByGameRecords(salesByGameSheet, salesByGameRows)
+                : new SheetSalesByGameRecords(salesByGameSheet);
         evaluator = outputWorkbook.getCreationHelper().createFormulaEvaluator();
+        recalculator = new FormulaRecalculator(weeklyReportSheet, salesByPlatformSheet, evaluator);
     }
 
     public void generateReport() throws OutputFileIsFullException,
             OutputFileNoRecordsFoundException, InputFileNotMatchingSelectedFileException,
-            OutputFileNotCorrectException, OutputFileIOException, InputFileContainsNoValidDateException {
+            OutputFileNotCorrectException, OutputFileIOException, InputFileContainsNoValidDateException,
+            InputFileIOException, InputFileAlreadyAppliedException {
+        long start = System.nanoTime();
+        metrics = new ReportMetrics();
+        //Both files are checked from their first rows before either is loaded,
+        //the output file before it's locked
+        probeOutputWorkbook();
+        OutputFileLock lock = lockOutputFile();
+        try {
+            List<Future<ParsedInput>> parsedInputs = parseInputFiles(checkInputFiles());
+            try {
+                long loadStart = System.nanoTime();
+                loadOutputWorkbook();
+                metrics.addPhaseNanos(ReportPhase.LOAD_OUTPUT, System.nanoTime() - loadStart);
+                if (!isOutputFileCorrect()) {
+                    throw new OutputFileNotCorrectException(rb.getString("OutputFileNotValidExceptionMessage"));
+                }
+                List<ParsedInput> inputs = new ArrayList<>();
+                for (Future<ParsedInput> parsedInput : parsedInputs) {
+                    ParsedInput input = getParsedInput(parsedInput);
+                    metrics.add(input.getMetrics());
+                    inputs.add(input);
+                    if (inputCache != null && input.getInputHash() != null) {
+                        inputCache.put(input, getInputFormat());
+                    }
+                }
+                if (!undo) {
+                    checkNotApplied(inputs);
+                }
+                //The output file is only saved if every input file is applied
+                inputs.sort(Comparator.comparingInt(ParsedInput::getWeekNumber));
+                for (ParsedInput input : inputs) {
+                    applyInput(input);
+                }
+            } finally {
+                for (Future<ParsedInput> parsedInput : parsedInputs) {
+                    parsedInput.cancel(true);
+                }
+            }
+            finishReport(start);
+        } finally {
+            unlockOutputFile(lock);
+        }
+    }
+
+    /**
+     * Undoes the latest weeks applied to the output file, from its journal,
+     * without reading their input files. The latest week left is shown as the
+     * latest week of the top five sheet.
+     *
+     * @param steps the number of weeks to undo.
+     * @throws OutputFileNoRecordsFoundException if the journal holds fewer
+     * weeks to undo.
+     */
+    public void undoWeeks(int steps) throws OutputFileNoRecordsFoundException, OutputFileNotCorrectException,
+            OutputFileIOException {
+        long start = System.nanoTime();
+        metrics = new ReportMetrics();
+        probeOutputWorkbook();
+        OutputFileLock lock = lockOutputFile();
+        try {
+            loadJournal(steps, true);
+            for (int step = 0; step < steps; step++) {
+                long applyStart = System.nanoTime();
+                undo = true;
+                delta = journal.undo();
+                revertWeeklyReport();
+                clearTopFiveStatistics();
+                writeTotals(journal.getLatestApplied());
+                metrics.addPhaseNanos(ReportPhase.WRITE_TO_SHEET, System.nanoTime() - applyStart);
+            }
+            finishReport(start);
+        } finally {
+            unlockOutputFile(lock);
+        }
+    }
+
+    /**
+     * Applies again the latest weeks undone from the journal of the output
+     * file, without reading their input files.
+     *
+     * @param steps the number of weeks to redo.
+     * @throws OutputFileNoRecordsFoundException if the journal holds fewer
+     * weeks to redo.
+     */
+    public void redoWeeks(int steps) throws OutputFileIsFullException, OutputFileNoRecordsFoundException,
+            OutputFileNotCorrectException, OutputFileIOException {
+        long start = System.nanoTime();
+        metrics = new ReportMetrics();
+        probeOutputWorkbook();
+        OutputFileLock lock = lockOutputFile();
+        try {
+            loadJournal(steps, false);
+            for (int step = 0; step < steps; step++) {
+                long applyStart = System.nanoTime();
+                undo = false;
+                delta = journal.redo();
+                writeWeeklyReport();
+                writeTotals(delta);
+                metrics.addPhaseNanos(ReportPhase.WRITE_TO_SHEET, System.nanoTime() - applyStart);
+            }
+            finishReport(start);
+        } finally {
+            unlockOutputFile(lock);
+        }
+    }
+
+    /**
+     * Loads the output workbook and its journal, for undoing or redoing weeks.
+     */
+    private void loadJournal(int steps, boolean undoing) throws OutputFileNoRecordsFoundException,
+            OutputFileNotCorrectException, OutputFileIOException {
+        long loadStart = System.nanoTime();
+        loadOutputWorkbook();
+        metrics.addPhaseNanos(ReportPhase.LOAD_OUTPUT, System.nanoTime() - loadStart);
         if (!isOutputFileCorrect()) {
             throw new OutputFileNotCorrectException(rb.getString("OutputFileNotValidExceptionMessage"));
         }
-        if (!isInputFileCorrect()) {
-            throw new InputFileNotMatchingSelectedFileException(rb.getString("InputFileNotValidExceptionMessage"));
+        if (steps > (undoing ? journal.getAppliedCount() : journal.getUndoneCount())) {
+            log.log(Level.SEVERE, "The journal of the output file holds fewer than {0} weeks to {1}.",
+                    new Object[]{steps, undoing ? "undo" : "redo"});
+            throw new OutputFileNoRecordsFoundException(rb.getString(undoing
+                    ? "OutputFileNoWeeksToUndoExceptionMessage" : "OutputFileNoWeeksToRedoExceptionMessage"));
         }
-        formatDataHashMap();
-        readInputData();
+    }
+
+    /**
+     * Locks the output file for the report, so the other jobs on it wait
+     * until the report is saved or fails. The output file is probed first, so
+     * no lock file is left next to a file that isn't one.
+     *
+     * @return the lock, released by unlockOutputFile.
+     * @throws OutputFileIOException if the output file is still locked by
+     * another job after the wait.
+     */
+    private OutputFileLock lockOutputFile() throws OutputFileIOException {
+        long lockStart = System.nanoTime();
+        try {
+            OutputFileLock lock = OutputFileLock.lock(outputWorkbookFile, lockTimeoutMillis);
+            metrics.addPhaseNanos(ReportPhase.LOCK_OUTPUT, System.nanoTime() - lockStart);
+            return lock;
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "The selected output file is in use by another process/program.", ex);
+            throw new OutputFileIOException(rb.getString("OutputFileInUseException"), ex);
+        }
+    }
+
+    private void unlockOutputFile(OutputFileLock lock) {
+        try {
+            lock.close();
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The output file cannot be unlocked.", ex);
+        }
+    }
+
+    /**
+     * Saves the output workbook and publishes the metrics of the report.
+     *
+     * @param start when the report was started, in System.nanoTime.
+     */
+    private void finishReport(long start) throws OutputFileIOException {
+        saveOutputWorkbook();
+        metrics.setTotalNanos(System.nanoTime() - start);
+        if (metricsListener != null) {
+            metricsListener.reportGenerated(metrics);
+        }
+    }
+
+    /**
+     * Writes a parsed input file to the loaded output workbook.
+     *
+     * @param input the input file.
+     */
+    void applyInput(ParsedInput input) throws OutputFileIsFullException, OutputFileNoRecordsFoundException,
+            InputFileContainsNoValidDateException, InputFileIOException {
+        long applyStart = System.nanoTime();
+        newData = input.getData();
+        delta = WeekDelta.of(input.getWeekNumber(), newData);
+        delta.setInputHash(input.getInputHash());
         writeToSheet();
-        if (outputWorkbookFile.exists() && !outputWorkbookFile.renameTo(outputWorkbookFile)) {
-            log.log(Level.SEVERE, "The selected output file is in use by another process/program.");
-            throw new OutputFileIOException(rb.getString("OutputFileInUseException"));
+        if (!undo) {
+            journal.record(delta);
+        } else {
+            journal.forget(delta.getColumn());
         }
-        try (FileOutputStream fileOut = new FileOutputStream(outputWorkbookFile)) {
-            XSSFFormulaEvaluator.evaluateAllFormulaCells(outputWorkbook);
-            newData = null;
-            outputWorkbook.write(fileOut);
+        metrics.addPhaseNanos(ReportPhase.WRITE_TO_SHEET, System.nanoTime() - applyStart);
+    }
 
-        } catch (FileNotFoundException ex) {
+    /**
+     * Recalculates the formulas affected by the applied input files and saves
+     * the output workbook, through a temporary file moved over the output
+     * file, so a failed save leaves the output file as it was.
+     *
+     * @throws OutputFileIOException if the output file is in use or cannot be
+     * written.
+     */
+    void saveOutputWorkbook() throws OutputFileIOException {
+        AtomicFileSaver saver = new AtomicFileSaver(outputWorkbookFile);
+        saver.setBackups(outputBackups);
+        try {
+            long recalculateStart = System.nanoTime();
+            recalculator.recalculate();
+            metrics.addPhaseNanos(ReportPhase.RECALCULATE, System.nanoTime() - recalculateStart);
+            newData = null;
+            delta = null;
+            if (streamingOutput && outputWorkbook instanceof XSSFWorkbook) {
+                StreamingWorkbookWriter writer = new StreamingWorkbookWriter((XSSFWorkbook) outputWorkbook,
+                        StreamingWorkbookWriter.DEFAULT_WINDOW_SIZE);
+                writer.stream((XSSFSheet) salesByPlatformSheet, Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW - 1);
+                if (salesByGameRows != null) {
+                    writer.stream((XSSFSheet) salesByGameSheet, salesByGameRows);
+                } else {
+                    writer.stream((XSSFSheet) salesByGameSheet, Constants.OVERALL_SALES_BY_GAME_FIRST_ROW - 1);
+                }
+                saver.save(writer::write);
+            } else {
+                saver.save(outputWorkbook::write);
+            }
+            metrics.addPhaseNanos(ReportPhase.WRITE_OUTPUT, saver.getSerializeNanos());
+            metrics.addPhaseNanos(ReportPhase.SYNC_OUTPUT, saver.getSyncNanos());
+        } catch (FileNotFoundException | NoSuchFileException ex) {
             log.log(Level.SEVERE, "The file to save the workbook in was not found.", ex);
             throw new OutputFileIOException(rb.getString("OutputFileNotFoundMessage"));
+        } catch (AccessDeniedException ex) {
+            //E.g. on Windows, a file open in Excel cannot be replaced
+            log.log(Level.SEVERE, "The selected output file is in use by another process/program.", ex);
+            throw new OutputFileIOException(rb.getString("OutputFileInUseException"));
         } catch (IOException ex) {
             log.log(Level.SEVERE, "There's an IO problem with the output file.", ex);
             throw new OutputFileIOException(rb.getString("OutputFileIOExceptionMessage"));
         }
+        metrics.setBytesWritten(saver.getLength());
+        saveAggregates(saver.getChecksum());
+        saveJournal(saver.getChecksum());
+        saveRanking();
+    }
+
+    /**
+     * Removes the duplicate styles of an output file, see
+     * {@link StyleCompactor}. The content of the sheets is left as it is, so
+     * the running totals and the journal are read before and written again
+     * with the compacted file, as they would be dropped otherwise.
+     *
+     * @param outputFile the output file.
+     * @return the number of cell styles, fonts, fills and borders removed.
+     * @throws IOException if the output file cannot be read or replaced.
+     * @throws InvalidFormatException if it isn't an OOXML workbook.
+     */
+    public static int compactOutputWorkbook(File outputFile) throws IOException, InvalidFormatException {
+        CRC32 checksum = new CRC32();
+        try (CheckedInputStream in = new CheckedInputStream(new FileInputStream(outputFile), checksum)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) != -1) {
+            }
+        }
+        AggregateStore aggregates = AggregateStore.read(outputFile, outputFile.length(), checksum.getValue());
+        OperationJournal journal = OperationJournal.read(outputFile, outputFile.length(), checksum.getValue());
+        AtomicFileSaver saver = new AtomicFileSaver(outputFile);
+        int removed = new StyleCompactor().compact(outputFile, saver);
+        if (removed == 0) {
+            return 0;
+        }
+        if (aggregates != null) {
+            try {
+                aggregates.write(outputFile, saver.getLength(), saver.getChecksum());
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "The totals of the output file cannot be saved.", ex);
+                AggregateStore.getSidecarFile(outputFile).delete();
+            }
+        }
+        try {
+            journal.write(outputFile, saver.getLength(), saver.getChecksum());
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The journal of the output file cannot be saved.", ex);
+            OperationJournal.getSidecarFile(outputFile).delete();
+        }
+        return removed;
+    }
+
+    /**
+     * @param outputFile an output file.
+     * @return the files the reports keep next to the output file - its
+     * running totals and its journal. The lock file is kept there too, see
+     * {@link OutputFileLock#getLockFile}; it's left in place between jobs.
+     */
+    public static List<File> getSidecarFiles(File outputFile) {
+        return Arrays.asList(AggregateStore.getSidecarFile(outputFile), OperationJournal.getSidecarFile(outputFile));
+    }
+
+    /**
+     * @param outputFile an output file.
+     * @return the ranking file next to the output file.
+     */
+    public static File getRankingFile(File outputFile) {
+        return new File(outputFile.getAbsoluteFile().getParentFile(), outputFile.getName() + RANKING_SUFFIX);
+    }
+
+    /**
+     * Writes all the ranked shops and games and the breakdowns to the ranking
+     * file, if one is set, a tab separated line each. The top five sheet only
+     * shows the first five of the shops and the games.
+     *
+     * @throws OutputFileIOException if the ranking file cannot be written,
+     * after the output file was saved.
+     */
+    private void saveRanking() throws OutputFileIOException {
+        if (rankingFile == null || overallRanking == null) {
+            return;
+        }
+        try {
+            new AtomicFileSaver(rankingFile).save(out -> {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.println("Ranking\tGroup\tRank\tName\tSales");
+                overallRanking.write(writer, "Overall");
+                if (latestWeekRanking != null) {
+                    latestWeekRanking.write(writer, "Latest week");
+                }
+                if (writer.checkError()) {
+                    throw new IOException("The ranking cannot be written.");
+                }
+            });
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "The ranking file cannot be written.", ex);
+            throw new OutputFileIOException(rb.getString("RankingFileIOExceptionMessage"), ex);
+        }
+    }
+
+    /**
+     * Writes the running totals next to the saved output file. The output file
+     * is saved already, so a failure only costs reading the totals from the
+     * sheets next time.
+     *
+     * @param checksum the CRC32 of the saved output file.
+     */
+    private void saveAggregates(long checksum) {
+        if (aggregates == null) {
+            return;
+        }
+        try {
+            aggregates.write(outputWorkbookFile, outputWorkbookFile.length(), checksum);
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The totals of the output file cannot be saved.", ex);
+            AggregateStore.getSidecarFile(outputWorkbookFile).delete();
+        }
+    }
+
+    /**
+     * Writes the journal next to the saved output file. If it cannot be
+     * written, the weeks applied so far can only be undone with their input
+     * files.
+     *
+     * @param checksum the CRC32 of the saved output file.
+     */
+    private void saveJournal(long checksum) {
+        try {
+            journal.write(outputWorkbookFile, outputWorkbookFile.length(), checksum);
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "The journal of the output file cannot be saved.", ex);
+            OperationJournal.getSidecarFile(outputWorkbookFile).delete();
+        }
+    }
+
+    /**
+     * @return the running totals of the output file, read from the sheets if
+     * the sidecar file didn't match the output file.
+     */
+    private AggregateStore getAggregates() {
+        if (aggregates == null) {
+            long rebuildStart = System.nanoTime();
+            aggregates = new AggregateStore(getCurrentOverallSalesPerPlatform());
+            final int lastRowUsed = salesByGameRecords.getLastRowNum();
+            for (int row = Constants.OVERALL_SALES_BY_GAME_FIRST_ROW - 1; row <= lastRowUsed; row++) {
+                String platform = salesByGameRecords.getPlatform(row);
+                String title = salesByGameRecords.getTitle(row);
+                if (platform != null && title != null) {
+                    aggregates.addGameTotal(row, platform, title, salesByGameRecords.getSales(row));
+                }
+            }
+            log.log(Level.INFO, "Read the totals of the output file from the sheets in {0} ms.",
+                    (System.nanoTime() - rebuildStart) / 1_000_000);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Checks the output file from the first row of its first sheet, without
+     * loading it. Only .xlsx files can be probed, .xls files are checked once
+     * they're loaded.
+     *
+     * @throws OutputFileNotCorrectException if the output file is not a
+     * report.
+     * @throws OutputFileIOException if the output file doesn't exist or
+     * cannot be read.
+     */
+    private void probeOutputWorkbook() throws OutputFileNotCorrectException, OutputFileIOException {
+        if (!outputWorkbookFile.isFile()) {
+            log.log(Level.SEVERE, "The output file {0} was not found.", outputWorkbookFile);
+            throw new OutputFileIOException(rb.getString("OutputFileNotFoundMessage"));
+        }
+        long checkStart = System.nanoTime();
+        InputRow[] firstRow = new InputRow[1];
+        try {
+            try (InputStream is = new BufferedInputStream(new FileInputStream(outputWorkbookFile))) {
+                if (!DocumentFactoryHelper.hasOOXMLHeader(is)) {
+                    return;
+                }
+            }
+            try (WorkbookProbe probe = new WorkbookProbe(outputWorkbookFile)) {
+                if (probe.getSheetCount() == 4) {
+                    probe.read(0, row -> {
+                        firstRow[0] = row;
+                        return false;
+                    });
+                }
+            }
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "The output file cannot be read.", ex);
+            throw new OutputFileIOException(rb.getString("OutputFileIOExceptionMessage"), ex);
+        }
+        metrics.addPhaseNanos(ReportPhase.CHECK_OUTPUT, System.nanoTime() - checkStart);
+        CellReference firstSheetLabelCellRef = new CellReference("A1");
+        CellReference firstSheetStockLabelCellRef = new CellReference("BG1");
+        if (firstRow[0] == null || firstRow[0].getRowNum() != 0
+                || !Constants.SELL_OUT.equals(firstRow[0].getStringOrEmpty(firstSheetLabelCellRef.getCol()))
+                || !Constants.STOCK.equals(firstRow[0].getStringOrEmpty(firstSheetStockLabelCellRef.getCol()))) {
+            log.log(Level.SEVERE, "The selected output file is not a report.");
+            throw new OutputFileNotCorrectException(rb.getString("OutputFileNotValidExceptionMessage"));
+        }
+    }
+
+    /**
+     * Checks every input file and reads its week, from its first rows, before
+     * any of them is read in full. The input files found in the input cache
+     * are neither checked nor read again.
+     *
+     * @return the reading of every input file, in the order they were given.
+     */
+    private List<Callable<ParsedInput>> checkInputFiles() throws InputFileNotMatchingSelectedFileException,
+            InputFileContainsNoValidDateException, InputFileIOException {
+        List<Callable<ParsedInput>> readers = new ArrayList<>();
+        for (File inputWorkbookFile : inputWorkbookFiles) {
+            long checkStart = System.nanoTime();
+            String inputHash;
+            try {
+                inputHash = ParsedInputCache.hash(inputWorkbookFile);
+            } catch (IOException ex) {
+                log.log(Level.SEVERE, "There's an IO problem with the input file.", ex);
+                throw new InputFileIOException(rb.getString("InputFileIOExceptionMessage"), ex);
+            }
+            ParsedInput cached = inputCache != null ? inputCache.get(inputWorkbookFile, inputHash, getInputFormat()) : null;
+            if (cached != null) {
+                readers.add(() -> cached);
+            } else {
+                ReportManager parser = createInputParser(inputWorkbookFile);
+                parser.checkInputFile(inputWorkbookFile);
+                readers.add(() -> parser.readInputFile(inputWorkbookFile, inputHash));
+            }
+            metrics.addPhaseNanos(ReportPhase.CHECK_INPUT, System.nanoTime() - checkStart);
+        }
+        return readers;
+    }
+
+    /**
+     * Starts reading the checked input files, on the parse executor if
+     * there's one. They're read while the output file is loaded.
+     *
+     * @param readers the reading of the input files, from checkInputFiles.
+     * @return the input files being read, in the order they were given.
+     */
+    private List<Future<ParsedInput>> parseInputFiles(List<Callable<ParsedInput>> readers) {
+        List<Future<ParsedInput>> parsedInputs = new ArrayList<>();
+        for (Callable<ParsedInput> reader : readers) {
+            if (parseExecutor != null) {
+                parsedInputs.add(parseExecutor.submit(reader));
+            } else {
+                FutureTask<ParsedInput> parsedInput = new FutureTask<>(reader);
+                parsedInput.run();
+                parsedInputs.add(parsedInput);
+            }
+        }
+        return parsedInputs;
+    }
+
+    /**
+     * Makes sure none of the input files is applied to the output file
+     * already, or given twice. They're told by their hash, so a copy of a
+     * file under another name is found as well.
+     *
+     * @param inputs the input files.
+     * @throws InputFileAlreadyAppliedException if an input file is applied
+     * already.
+     */
+    private void checkNotApplied(List<ParsedInput> inputs) throws InputFileAlreadyAppliedException {
+        Set<String> inputHashes = new HashSet<>();
+        for (ParsedInput input : inputs) {
+            if (input.getInputHash() == null) {
+                continue;
+            }
+            WeekDelta applied = journal.findApplied(input.getInputHash());
+            if (applied != null || !inputHashes.add(input.getInputHash())) {
+                log.log(Level.SEVERE, "The input file {0} is already applied to the output file.",
+                        input.getInputWorkbookFile());
+                throw new InputFileAlreadyAppliedException(rb.getString("InputFileAlreadyAppliedExceptionMessage"));
+            }
+        }
+    }
+
+    /**
+     * Checks and reads an input file. Only touches the input state of this
+     * report manager, so parsers of different files can run in parallel.
+     *
+     * @param inputWorkbookFile the input file.
+     * @return the week number and the data of the input file.
+     */
+    ParsedInput parseInputFile(File inputWorkbookFile) throws InputFileNotMatchingSelectedFileException,
+            InputFileContainsNoValidDateException, InputFileIOException {
+        long checkStart = System.nanoTime();
+        checkInputFile(inputWorkbookFile);
+        long checkNanos = System.nanoTime() - checkStart;
+        ParsedInput input = readInputFile(inputWorkbookFile, null);
+        input.getMetrics().addPhaseNanos(ReportPhase.CHECK_INPUT, checkNanos);
+        return input;
     }
 
-    protected void writeToSheet() throws OutputFileIsFullException, OutputFileNoRecordsFoundException, InputFileContainsNoValidDateException {
+    /**
+     * Opens an input file, checks it and reads its week, from its first rows
+     * only.
+     *
+     * @param inputWorkbookFile the input file.
+     */
+    void checkInputFile(File inputWorkbookFile) throws InputFileNotMatchingSelectedFileException,
+            InputFileContainsNoValidDateException, InputFileIOException {
+        openInputFile(inputWorkbookFile);
+        if (inputReader == null || !isInputFileCorrect()) {
+            throw new InputFileNotMatchingSelectedFileException(rb.getString("InputFileNotValidExceptionMessage"));
+        }
+        inputWeekNumber = getWeekNumber();
+    }
+
+    /**
+     * Reads the stock and sales of an input file checked by checkInputFile.
+     *
+     * @param inputWorkbookFile the input file.
+     * @param inputHash the SHA-256 of the input file, null if not known.
+     * @return the week number and the data of the input file.
+     */
+    ParsedInput readInputFile(File inputWorkbookFile, String inputHash) throws InputFileIOException {
+        ReportMetrics inputMetrics = new ReportMetrics();
+        long readStart = System.nanoTime();
+        readInputData();
+        inputMetrics.addPhaseNanos(ReportPhase.READ_INPUT, System.nanoTime() - readStart);
+        inputMetrics.addInputFile(inputRowsRead, newData.getGamesCount(), newData.getShopsCount());
+        return new ParsedInput(inputWorkbookFile, inputHash, inputWeekNumber, newData, inputMetrics);
+    }
+
+    /**
+     * Waits for an input file to be read.
+     *
+     * @param parsedInput the input file being read.
+     * @return the week number and the data of the input file.
+     */
+    private ParsedInput getParsedInput(Future<ParsedInput> parsedInput) throws InputFileNotMatchingSelectedFileException,
+            InputFileContainsNoValidDateException, InputFileIOException {
+        try {
+            return parsedInput.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.log(Level.SEVERE, "Interrupted while reading the input files.", ex);
+            throw new InputFileIOException(rb.getString("InputFileIOExceptionMessage"), ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof InputFileNotMatchingSelectedFileException) {
+                throw (InputFileNotMatchingSelectedFileException) cause;
+            } else if (cause instanceof InputFileContainsNoValidDateException) {
+                throw (InputFileContainsNoValidDateException) cause;
+            } else if (cause instanceof InputFileIOException) {
+                throw (InputFileIOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            log.log(Level.SEVERE, "The input file cannot be read.", cause);
+            throw new InputFileIOException(rb.getString("InputFileIOExceptionMessage"), cause);
+        }
+    }
+
+    protected void writeToSheet() throws OutputFileIsFullException, OutputFileNoRecordsFoundException, InputFileContainsNoValidDateException,
+            InputFileIOException {
         if (!undo) {
             writeWeeklyReport();
         } else {
             undoWeeklyReport();
             clearTopFiveStatistics();
         }
+        writeTotals(!undo ? delta : null);
+    }
+
+    /**
+     * Adds the week to the totals of the output file, or subtracts it when
+     * undoing, and ranks the shops and games again.
+     *
+     * @param latestWeek the week shown as the latest one in the top five
+     * sheet, null for none.
+     */
+    private void writeTotals(WeekDelta latestWeek) {
         writeOverallSalesByPlatform();
         writeOverallSalesByGame();
-        writeTopFiveStatistics();
+        writeTopFiveStatistics(latestWeek);
     }
 
-    private void writeWeeklyReport() throws OutputFileIsFullException, InputFileContainsNoValidDateException {
-        int weekNo = getWeekNumber();
+    private void writeWeeklyReport() throws OutputFileIsFullException {
+        int weekNo = delta.getWeekNumber();
+        RowCursor weekRow = new RowCursor(weeklyReportSheet).moveTo(Constants.PLATFORMS_TABLE_WEEK_ROW - 1);
         for (int column = Constants.SELLOUT_TABLE_FIRST_COLUMN; column <= Constants.SELLOUT_TABLE_LAST_COLUMN; column++) {
-            CellReference weekCellRef = new CellReference(Constants.PLATFORMS_TABLE_WEEK_ROW - 1, column - 1);
-            if (!"".equals(weeklyReportSheet.getRow(weekCellRef.getRow()).getCell(weekCellRef.getCol()).getStringCellValue())) {
+            if (!"".equals(weekRow.getCell(column - 1).getStringCellValue())) {
                 if (column == Constants.SELLOUT_TABLE_LAST_COLUMN) {
                     throw new OutputFileIsFullException(rb.getString("OutputFileIsFullExceptionMessage"));
                 }
                 continue;
             }
-            HashMap<String, StockSales> stockAndSalesByPlatform = getStockSalesByPlatform();
-            CellReference latestWeekStockCellRef = new CellReference("BI" + Constants.PLATFORMS_TABLE_WEEK_ROW);
+            delta.setColumn(column - 1);
+            delta.setPreviousStock(getStockCells());
             //Set the current report's week
-            CellUtil.getRow(latestWeekStockCellRef.getRow(), weeklyReportSheet)
-                    .getCell(latestWeekStockCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue("Stock w" + weekNo);
-            weeklyReportSheet.getRow(weekCellRef.getRow()).getCell(weekCellRef.getCol()).setCellValue("w" + weekNo);
+            weekRow.getOrCreateCell(STOCK_COLUMN).setCellValue("Stock w" + weekNo);
+            weekRow.getCell(column - 1).setCellValue("w" + weekNo);
+            metrics.addCellsWritten(2);
+            RowCursor cursor = new RowCursor(weeklyReportSheet);
+            Cell totalDaysInStockCell = cursor.moveTo(Constants.PLATFORMS_TABLE_LASTROW - 1).getCell(DAYS_IN_STOCK_COLUMN);
+            String totalFormula = "IFERROR(BI16/BD16*7*COUNTIF(C3:BB3,\"<>\"&\"\"),0)";
+            if (totalDaysInStockCell.getCellTypeEnum() != CellType.FORMULA || !totalDaysInStockCell.getCellFormula().equals(totalFormula)) {
+                totalDaysInStockCell.setCellFormula(totalFormula);
+            }
             for (int row = Constants.PLATFORM_HEADER_FIRST_ROW; row <= Constants.PLATFORM_HEADER_LAST_ROW; row++) {
-                //-----------
-                CellReference daysInStockCellRef = new CellReference("BJ" + row);
-                Cell daysInStockCell = weeklyReportSheet.getRow(daysInStockCellRef.getRow()).getCell(daysInStockCellRef.getCol());
+                cursor.moveTo(row - 1);
+                Cell daysInStockCell = cursor.getCell(DAYS_IN_STOCK_COLUMN);
                 //Constants.NO_DATA
                 String formula = "IF(BI" + row + "=\"\",BI" + row + "&\"\",IFERROR(BI" + row
                         + "/BD" + row + "*7*COUNT(C" + row + ":BB" + row + "),\"\"))";
                 if (daysInStockCell.getCellTypeEnum() != CellType.FORMULA || !daysInStockCell.getCellFormula().equals(formula)) {
                     daysInStockCell.setCellFormula(formula);
                 }
-
-                CellReference totalDaysInStockCellRef = new CellReference("BJ" + Constants.PLATFORMS_TABLE_LASTROW);
-                Cell totalDaysInStockCell = weeklyReportSheet.getRow(totalDaysInStockCellRef.getRow()).getCell(totalDaysInStockCellRef.getCol());
-                formula = "IFERROR(BI16/BD16*7*COUNTIF(C3:BB3,\"<>\"&\"\"),0)";
-                if (totalDaysInStockCell.getCellTypeEnum() != CellType.FORMULA || !totalDaysInStockCell.getCellFormula().equals(formula)) {
-                    totalDaysInStockCell.setCellFormula(formula);
-                }
-                //--------
-                CellReference currentOutputAbbreviationRef = new CellReference("B" + row);
-                String currentOutputAbbreviation = weeklyReportSheet.getRow(currentOutputAbbreviationRef.getRow())
-                        .getCell(currentOutputAbbreviationRef.getCol()).getStringCellValue();
-                if (stockAndSalesByPlatform.get(currentOutputAbbreviation).Sales != Integer.MIN_VALUE) {
-                    CellReference currentCellRef = new CellReference(row - 1, column - 1);
-                    weeklyReportSheet.getRow(currentCellRef.getRow()).getCell(currentCellRef.getCol())
-                            .setCellValue(stockAndSalesByPlatform.get(currentOutputAbbreviation).Sales);
+                Platforms platform = Platforms.getByOutputAbbreviation(cursor.getCell(PLATFORM_COLUMN).getStringCellValue());
+                int sales = platform == null ? Integer.MIN_VALUE : delta.getPlatformSales(platform);
+                int stock = platform == null ? Integer.MIN_VALUE : delta.getPlatformStock(platform);
+                if (sales != Integer.MIN_VALUE) {
+                    cursor.getCell(column - 1).setCellValue(sales);
+                    metrics.addCellsWritten(1);
                 }
-                CellReference stockCellRef = new CellReference("BI" + row);
-                weeklyReportSheet.getRow(stockCellRef.getRow()).getCell(stockCellRef.getCol()).setCellType(CellType.BLANK);
+                Cell stockCell = cursor.getCell(STOCK_COLUMN);
+                stockCell.setCellType(CellType.BLANK);
                 //If records about this platform exist in the latest report proceed.
-                if (stockAndSalesByPlatform.get(currentOutputAbbreviation).Stock != Integer.MIN_VALUE) {
-                    weeklyReportSheet.getRow(stockCellRef.getRow()).getCell(stockCellRef.getCol())
-                            .setCellValue(stockAndSalesByPlatform.get(currentOutputAbbreviation).Stock);
+                if (stock != Integer.MIN_VALUE) {
+                    stockCell.setCellValue(stock);
+                    metrics.addCellsWritten(1);
                 }
             }
+            recalculator.weekChanged(column - 1);
+            recalculator.stockChanged();
             break;
         }
     }
 
-    private void undoWeeklyReport() throws OutputFileNoRecordsFoundException, InputFileContainsNoValidDateException {
-        int weekNo = getWeekNumber();
-        HashMap<String, StockSales> stockAndSalesByPlatform = getStockSalesByPlatform();
-        int columnToRemove = findWeekToUndo(stockAndSalesByPlatform, weekNo);
-        CellReference cellOfWeekToRemoveRef = new CellReference(Constants.PLATFORMS_TABLE_WEEK_ROW - 1, columnToRemove - 1);
-        weeklyReportSheet.getRow(cellOfWeekToRemoveRef.getRow()).getCell(cellOfWeekToRemoveRef.getCol()).setCellType(CellType.BLANK);
+    private void undoWeeklyReport() throws OutputFileNoRecordsFoundException {
+        int weekNo = delta.getWeekNumber();
+        int columnToRemove = findWeekToUndo(weekNo);
+        delta.setColumn(columnToRemove - 1);
+        recalculator.weekChanged(columnToRemove - 1);
+        recalculator.stockChanged();
+        RowCursor cursor = new RowCursor(weeklyReportSheet);
+        cursor.moveTo(Constants.PLATFORMS_TABLE_WEEK_ROW - 1).getCell(columnToRemove - 1).setCellType(CellType.BLANK);
         for (int row = Constants.PLATFORM_HEADER_FIRST_ROW; row < Platforms.values().length + Constants.PLATFORM_HEADER_FIRST_ROW; row++) {
-            CellReference cellToRemoveRef = new CellReference(row - 1, columnToRemove - 1);
-            weeklyReportSheet.getRow(cellToRemoveRef.getRow()).getCell(cellToRemoveRef.getCol()).setCellType(CellType.BLANK);
+            cursor.moveTo(row - 1).getCell(columnToRemove - 1).setCellType(CellType.BLANK);
         }
+        metrics.addCellsWritten(1 + Platforms.values().length);
         //Checking if the lastly added week is the week to be removed.
-        CellReference stockWeekNumberCellRef = new CellReference("BI" + Constants.PLATFORMS_TABLE_WEEK_ROW);
         Pattern pattern = Pattern.compile("w" + weekNo, Pattern.CASE_INSENSITIVE);
-        Matcher m = pattern.matcher(weeklyReportSheet.getRow(stockWeekNumberCellRef.getRow()).getCell(stockWeekNumberCellRef.getCol()).getStringCellValue());
+        Matcher m = pattern.matcher(cursor.moveTo(Constants.PLATFORMS_TABLE_WEEK_ROW - 1).getCell(STOCK_COLUMN).getStringCellValue());
         if (m.find()) {
+            RowCursor stockCursor = new RowCursor(weeklyReportSheet);
             for (int row = Constants.PLATFORM_HEADER_FIRST_ROW; row < Platforms.values().length + Constants.PLATFORM_HEADER_FIRST_ROW; row++) {
-                CellReference latestWeekStockCellRef = new CellReference("BI" + row);
-                CellReference currentRowPlatformCellRef = new CellReference("B" + row);
-                if (weeklyReportSheet.getRow(latestWeekStockCellRef.getRow()).getCell(latestWeekStockCellRef.getCol()).getCellTypeEnum() == CellType.BLANK) {
-                    if (stockAndSalesByPlatform.get(weeklyReportSheet.getRow(currentRowPlatformCellRef
-                            .getRow()).getCell(currentRowPlatformCellRef.getCol()).getStringCellValue()).Stock == 0) {
+                cursor.moveTo(row - 1);
+                Cell latestWeekStockCell = cursor.getCell(STOCK_COLUMN);
+                Platforms platform = Platforms.getByOutputAbbreviation(cursor.getCell(PLATFORM_COLUMN).getStringCellValue());
+                int stock = platform == null ? Integer.MIN_VALUE : delta.getPlatformStock(platform);
+                if (latestWeekStockCell.getCellTypeEnum() == CellType.BLANK) {
+                    if (stock == 0) {
                         continue;
                     }
                 } else {
-                    Cell latestWeekStockCell = weeklyReportSheet.getRow(latestWeekStockCellRef.getRow()).getCell(latestWeekStockCellRef.getCol());
                     if (latestWeekStockCell.getCellTypeEnum() != CellType.NUMERIC) {
                         break;
                     }
-                    if (latestWeekStockCell.getNumericCellValue() == stockAndSalesByPlatform.get(weeklyReportSheet.getRow(currentRowPlatformCellRef
-                            .getRow()).getCell(currentRowPlatformCellRef.getCol()).getStringCellValue()).Stock) {
+                    if (latestWeekStockCell.getNumericCellValue() == stock) {
                         continue;
                     }
                     break;
                 }
                 for (int rowToDeleteOn = Constants.PLATFORM_HEADER_FIRST_ROW; rowToDeleteOn < Platforms.values().length + Constants.PLATFORM_HEADER_FIRST_ROW; rowToDeleteOn++) {
-                    CellReference stockCellToBeRemoved = new CellReference("BI" + rowToDeleteOn);
-                    weeklyReportSheet.getRow(stockCellToBeRemoved.getRow())
-                            .getCell(stockCellToBeRemoved.getCol()).setCellValue(Constants.NO_DATA);
+                    stockCursor.moveTo(rowToDeleteOn - 1).getCell(STOCK_COLUMN).setCellValue(Constants.NO_DATA);
                 }
             }
         }
     }
 
-    private HashMap<String, StockSales> getStockSalesByPlatform() {
-        HashMap<String, StockSales> stockSalesByPlatform = new HashMap<>();
-        newData.entrySet().forEach((shop) -> {
-            for (Entry<String, HashMap<String, StockSales>> platform : shop.getValue().entrySet()) {
-                if (!stockSalesByPlatform.containsKey(platform.getKey())) {
-                    StockSales newSSObject = new StockSales();
-                    newSSObject.Sales = Integer.MIN_VALUE;
-                    newSSObject.Stock = Integer.MIN_VALUE;
-                    stockSalesByPlatform.put(platform.getKey(), newSSObject);
-                }
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    if (stockSalesByPlatform.get(platform.getKey()).Stock == Integer.MIN_VALUE
-                            || stockSalesByPlatform.get(platform.getKey()).Sales == Integer.MIN_VALUE) {
-                        stockSalesByPlatform.get(platform.getKey()).Stock = 0;
-                        stockSalesByPlatform.get(platform.getKey()).Sales = 0;
-                    }
-                    stockSalesByPlatform.get(platform.getKey()).Stock += game.getValue().Stock;
-                    stockSalesByPlatform.get(platform.getKey()).Sales += game.getValue().Sales;
-                }
-            }
-        });
-        return stockSalesByPlatform;
+    /**
+     * Undoes the week taken from the journal: blanks its column and puts back
+     * the stock it replaced.
+     *
+     * @throws OutputFileNoRecordsFoundException if the column of the week
+     * holds another week.
+     */
+    private void revertWeeklyReport() throws OutputFileNoRecordsFoundException {
+        int column = delta.getColumn();
+        RowCursor cursor = new RowCursor(weeklyReportSheet).moveTo(Constants.PLATFORMS_TABLE_WEEK_ROW - 1);
+        if (column < 0 || !("w" + delta.getWeekNumber()).equals(cursor.getStringOrEmpty(column))) {
+            log.log(Level.SEVERE, "Week {0} of the journal is not in its column.", delta.getWeekNumber());
+            throw new OutputFileNoRecordsFoundException(rb.getString("OutputFileNoRecordsFoundExceptionMessage"));
+        }
+        recalculator.weekChanged(column);
+        recalculator.stockChanged();
+        cursor.getCell(column).setCellType(CellType.BLANK);
+        for (int row = Constants.PLATFORM_HEADER_FIRST_ROW; row <= Constants.PLATFORM_HEADER_LAST_ROW; row++) {
+            cursor.moveTo(row - 1).getOrCreateCell(column).setCellType(CellType.BLANK);
+        }
+        delta.restorePreviousStock(getStockCells());
+        metrics.addCellsWritten(2 * (1 + Platforms.values().length));
     }
 
-    private int findWeekToUndo(HashMap<String, StockSales> newData, int weekNo) throws OutputFileNoRecordsFoundException {
+    /**
+     * @return the header of the stock column and the stock cell of each
+     * platform, in row order.
+     */
+    private Cell[] getStockCells() {
+        Cell[] cells = new Cell[1 + Constants.PLATFORM_HEADER_LAST_ROW - Constants.PLATFORM_HEADER_FIRST_ROW + 1];
+        RowCursor cursor = new RowCursor(weeklyReportSheet);
+        cells[0] = cursor.moveTo(Constants.PLATFORMS_TABLE_WEEK_ROW - 1).getOrCreateCell(STOCK_COLUMN);
+        for (int row = Constants.PLATFORM_HEADER_FIRST_ROW; row <= Constants.PLATFORM_HEADER_LAST_ROW; row++) {
+            cells[1 + row - Constants.PLATFORM_HEADER_FIRST_ROW] = cursor.moveTo(row - 1).getOrCreateCell(STOCK_COLUMN);
+        }
+        return cells;
+    }
+
+    private int findWeekToUndo(int weekNo) throws OutputFileNoRecordsFoundException {
         List<Integer> columnsMatchingWeeklyHeader = new ArrayList<>();
         boolean recordExists = false;
+        String weekHeader = "w".concat(Integer.toString(weekNo));
+        RowCursor cursor = new RowCursor(weeklyReportSheet).moveTo(Constants.PLATFORMS_TABLE_WEEK_ROW - 1);
         for (int column = Constants.SELLOUT_TABLE_FIRST_COLUMN; column <= Constants.SELLOUT_TABLE_LAST_COLUMN; column++) {
-            CellReference weeklyHeaderCellRef = new CellReference(Constants.PLATFORMS_TABLE_WEEK_ROW - 1, column - 1);
-            if (!"w".concat(Integer.toString(weekNo)).equals(weeklyReportSheet.getRow(weeklyHeaderCellRef.getRow())
-                    .getCell(weeklyHeaderCellRef.getCol()).getStringCellValue())) {
+            if (!weekHeader.equals(cursor.getCell(column - 1).getStringCellValue())) {
                 if (column == Constants.SELLOUT_TABLE_LAST_COLUMN && !recordExists) {
                     throw new OutputFileNoRecordsFoundException(rb.getString("OutputFileNoRecordsFoundExceptionMessage"));
                 }
-            } else if ("w".concat(Integer.toString(weekNo)).equals(weeklyReportSheet.getRow(weeklyHeaderCellRef.getRow())
-                    .getCell(weeklyHeaderCellRef.getCol()).getStringCellValue())) {
+            } else {
                 recordExists = true;
                 columnsMatchingWeeklyHeader.add(column);
             }
         }
         for (int column = columnsMatchingWeeklyHeader.size() - 1; column >= 0; column--) {
             boolean continueSearching = false;
+            int weekColumn = columnsMatchingWeeklyHeader.get(column) - 1;
             for (int row = Constants.PLATFORM_HEADER_FIRST_ROW; row < Platforms.values().length + Constants.PLATFORM_HEADER_FIRST_ROW; row++) {
-                CellReference currentPlatformCellRef = new CellReference("B" + row);
-                CellReference currentValueCellRef = new CellReference(row - 1, columnsMatchingWeeklyHeader.get(column) - 1);
-                String currentRowPlatform = weeklyReportSheet.getRow(currentPlatformCellRef.getRow()).getCell(currentPlatformCellRef.getCol()).getStringCellValue();
-                if (weeklyReportSheet.getRow(currentValueCellRef.getRow()).getCell(currentValueCellRef.getCol()).getCellTypeEnum() != CellType.NUMERIC) {
-                    if (newData.get(currentRowPlatform).Sales == Integer.MIN_VALUE) {
+                cursor.moveTo(row - 1);
+                Platforms platform = Platforms.getByOutputAbbreviation(cursor.getCell(PLATFORM_COLUMN).getStringCellValue());
+                int sales = platform == null ? Integer.MIN_VALUE : delta.getPlatformSales(platform);
+                if (cursor.getCellType(weekColumn) != CellType.NUMERIC) {
+                    if (sales == Integer.MIN_VALUE) {
                         continue;
                     }
                     continueSearching = true;
                     break;
-                } else if (weeklyReportSheet.getRow(currentValueCellRef.getRow()).getCell(currentValueCellRef.getCol()).getNumericCellValue()
-                        != newData.get(weeklyReportSheet.getRow(currentPlatformCellRef.getRow()).getCell(currentPlatformCellRef.getCol()).getStringCellValue()).Sales) {
+                } else if (cursor.getDouble(weekColumn, 0) != sales) {
                     continueSearching = true;
                     break;
                 }
@@ -357,17 +1069,16 @@ public abstract class ReportManager {
     }
 
     private void clearTopFiveStatistics() {
+        RowCursor cursor = new RowCursor(topFiveSheet);
         for (int row = Constants.TOP_FIVE_TOP_FIRST_ROW; row <= Constants.TOP_FIVE_TOP_LAST_ROW; row++) {
-            CellReference latestWeekShopCellRef = new CellReference("K" + row);
-            CellReference latestWeekSalesCellRef = new CellReference("P" + row);
-            topFiveSheet.getRow(latestWeekShopCellRef.getRow()).getCell(latestWeekShopCellRef.getCol()).setCellType(CellType.BLANK);
-            topFiveSheet.getRow(latestWeekSalesCellRef.getRow()).getCell(latestWeekSalesCellRef.getCol()).setCellType(CellType.BLANK);
+            cursor.moveTo(row - 1);
+            cursor.getCell(TOP_FIVE_LATEST_NAME_COLUMN).setCellType(CellType.BLANK);
+            cursor.getCell(TOP_FIVE_LATEST_SALES_COLUMN).setCellType(CellType.BLANK);
         }
         for (int row = Constants.TOP_FIVE_BOTTOM_FIRST_ROW; row <= Constants.TOP_FIVE_BOTTOM_LAST_ROW; row++) {
-            CellReference latestWeekShopCellRef = new CellReference("K" + row);
-            CellReference latestWeekSalesCellRef = new CellReference("P" + row);
-            topFiveSheet.getRow(latestWeekShopCellRef.getRow()).getCell(latestWeekShopCellRef.getCol()).setCellType(CellType.BLANK);
-            topFiveSheet.getRow(latestWeekSalesCellRef.getRow()).getCell(latestWeekSalesCellRef.getCol()).setCellType(CellType.BLANK);
+            cursor.moveTo(row - 1);
+            cursor.getCell(TOP_FIVE_LATEST_NAME_COLUMN).setCellType(CellType.BLANK);
+            cursor.getCell(TOP_FIVE_LATEST_SALES_COLUMN).setCellType(CellType.BLANK);
         }
     }
 
@@ -384,124 +1095,53 @@ public abstract class ReportManager {
         return true;
     }
 
-    private void writeTopFiveStatistics() {
-        topFiveShopsBySalesOverall();
-        topFiveGamesBySalesOverall();
-        if (!undo) {
-            topFiveShopsBySalesLatestWeek();
-            topFiveGamesBySalesLatestWeek();
-        }
-    }
-
-    private void topFiveShopsBySalesOverall() {
-        HashMap<String, Integer> gamesAndSales = new HashMap<>();
-        final int lastRowUsed = salesByPlatformSheet.getLastRowNum();
-        for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row <= lastRowUsed; row++) {
-            CellReference totalCellRef = new CellReference("P" + row);
-            Cell totalCell = salesByPlatformSheet.getRow(totalCellRef.getRow()).getCell(totalCellRef.getCol());
-            CellValue totalCellValue = evaluator.evaluate(totalCell);
-            CellReference shopCellRef = new CellReference("A" + row);
-            Cell shopCell = CellUtil.getRow(shopCellRef.getRow(), salesByPlatformSheet).getCell(shopCellRef.getCol());
-            gamesAndSales.put(shopCell.getStringCellValue(), (int) totalCellValue.getNumberValue());
-        }
-        List<Entry<String, Integer>> sortedGamesAndSales = gamesAndSales.entrySet().stream().sorted(Entry.comparingByValue(Collections.reverseOrder())).collect(Collectors.toList());
-        for (int row = Constants.TOP_FIVE_TOP_FIRST_ROW; row <= Constants.TOP_FIVE_TOP_LAST_ROW; row++) {
-            if (gamesAndSales.size() > row - Constants.TOP_FIVE_TOP_FIRST_ROW) {
-                CellReference shopCellRef = new CellReference("C" + row);
-                CellReference stockCellRef = new CellReference("H" + row);
-                topFiveSheet.getRow(shopCellRef.getRow()).getCell(shopCellRef.getCol()).setCellValue(sortedGamesAndSales.get(row - Constants.TOP_FIVE_TOP_FIRST_ROW).getKey());
-                topFiveSheet.getRow(stockCellRef.getRow()).getCell(stockCellRef.getCol()).setCellValue(sortedGamesAndSales.get(row - Constants.TOP_FIVE_TOP_FIRST_ROW).getValue());
+    private void writeTopFiveStatistics(WeekDelta latestWeek) {
+        boolean rankingBreakdowns = rankingFile != null;
+        overallRanking = new SalesRanking(topCount, rankingBreakdowns);
+        AggregateStore totals = getAggregates();
+        for (Entry<String, HashMap<String, Integer>> shop : totals.getShopPlatformSales().entrySet()) {
+            int total = 0;
+            for (int sales : shop.getValue().values()) {
+                total += sales;
             }
+            overallRanking.addShop(shop.getKey(), total);
         }
-    }
-
-    private void topFiveGamesBySalesOverall() {
-        HashMap<String, HashMap<String, Integer>> platformsGamesAndSales = new HashMap<>();
-        final int lastRowUsed = salesByGameSheet.getLastRowNum() + 1;
-        for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row <= lastRowUsed; row++) {
-            CellReference platformCellRef = new CellReference("A" + row);
-            CellReference gameCellRef = new CellReference("B" + row);
-            CellReference salesCellRef = new CellReference("E" + row);
-            Cell platformCell = salesByGameSheet.getRow(platformCellRef.getRow()).getCell(platformCellRef.getCol());
-            Cell gameCell = salesByGameSheet.getRow(gameCellRef.getRow()).getCell(gameCellRef.getCol());
-            Cell salesCell = salesByGameSheet.getRow(salesCellRef.getRow()).getCell(salesCellRef.getCol());
-            if (platformsGamesAndSales.containsKey(platformCell.getStringCellValue())) {
-                if (!platformsGamesAndSales.get(platformCell.getStringCellValue()).containsKey(gameCell.getStringCellValue())) {
-                    platformsGamesAndSales.get(platformCell.getStringCellValue()).put(gameCell.getStringCellValue(), (int) salesCell.getNumericCellValue());
-                }
-            } else {
-                platformsGamesAndSales.put(platformCell.getStringCellValue(), new HashMap<>());
-                platformsGamesAndSales.get(platformCell.getStringCellValue()).put(gameCell.getStringCellValue(), (int) salesCell.getNumericCellValue());
-            }
-        }
-        List<Entry<String, HashMap<String, Integer>>> gamesAndSalesList = platformsGamesAndSales.entrySet().stream().collect(Collectors.toList());
-        HashMap<String, Integer> combinedPlatformsAndGames = new HashMap<>();
-        for (Entry<String, HashMap<String, Integer>> platform : gamesAndSalesList) {
-            for (Entry<String, Integer> game : platform.getValue().entrySet()) {
-                combinedPlatformsAndGames.put(platform.getKey() + " " + game.getKey(), game.getValue());
+        for (AggregateStore.GameTotal gameTotal : totals.getGameTotals()) {
+            //A game listed twice counts with its first row
+            if (totals.getGameTotal(gameTotal.getPlatform(), gameTotal.getTitle()) == gameTotal) {
+                overallRanking.addGame(gameTotal.getPlatform(), gameTotal.getTitle(), (int) gameTotal.getSales());
             }
         }
-        List<Entry<String, Integer>> sortedCombined = combinedPlatformsAndGames.entrySet().stream().sorted(Entry.comparingByValue(Collections.reverseOrder())).collect(Collectors.toList());
-
-        for (int row = Constants.TOP_FIVE_BOTTOM_FIRST_ROW; row <= Constants.TOP_FIVE_BOTTOM_LAST_ROW; row++) {
-            if (sortedCombined.size() > row - Constants.TOP_FIVE_BOTTOM_FIRST_ROW) {
-                CellReference shopCellRef = new CellReference("C" + row);
-                CellReference stockCellRef = new CellReference("H" + row);
-                topFiveSheet.getRow(shopCellRef.getRow()).getCell(shopCellRef.getCol()).setCellValue(sortedCombined.get(row - Constants.TOP_FIVE_BOTTOM_FIRST_ROW).getKey());
-                topFiveSheet.getRow(stockCellRef.getRow()).getCell(stockCellRef.getCol()).setCellValue(sortedCombined.get(row - Constants.TOP_FIVE_BOTTOM_FIRST_ROW).getValue());
-            }
+        writeRanking(overallRanking.getTopShops(), Constants.TOP_FIVE_TOP_FIRST_ROW, Constants.TOP_FIVE_TOP_LAST_ROW,
+                TOP_FIVE_OVERALL_NAME_COLUMN, TOP_FIVE_OVERALL_SALES_COLUMN);
+        writeRanking(overallRanking.getTopGames(), Constants.TOP_FIVE_BOTTOM_FIRST_ROW, Constants.TOP_FIVE_BOTTOM_LAST_ROW,
+                TOP_FIVE_OVERALL_NAME_COLUMN, TOP_FIVE_OVERALL_SALES_COLUMN);
+        if (latestWeek != null) {
+            //The games are only ranked by shop when the input file was read
+            latestWeekRanking = newData != null
+                    ? SalesRanking.of(newData, topCount, rankingBreakdowns)
+                    : latestWeek.rank(topCount, rankingBreakdowns);
+            writeRanking(latestWeekRanking.getTopShops(), Constants.TOP_FIVE_TOP_FIRST_ROW, Constants.TOP_FIVE_TOP_LAST_ROW,
+                    TOP_FIVE_LATEST_NAME_COLUMN, TOP_FIVE_LATEST_SALES_COLUMN);
+            writeRanking(latestWeekRanking.getTopGames(), Constants.TOP_FIVE_BOTTOM_FIRST_ROW, Constants.TOP_FIVE_BOTTOM_LAST_ROW,
+                    TOP_FIVE_LATEST_NAME_COLUMN, TOP_FIVE_LATEST_SALES_COLUMN);
+        } else {
+            latestWeekRanking = null;
         }
     }
 
-    private void topFiveShopsBySalesLatestWeek() {
-        HashMap<String, Integer> shopsAndSales = new HashMap<>();
-        for (Entry<String, HashMap<String, HashMap<String, StockSales>>> shop : newData.entrySet()) {
-            if (!shopsAndSales.containsKey(shop.getKey())) {
-                shopsAndSales.put(shop.getKey(), 0);
-            }
-            for (Entry<String, HashMap<String, StockSales>> platform : shop.getValue().entrySet()) {
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    shopsAndSales.put(shop.getKey(), shopsAndSales.get(shop.getKey()) + newData.get(shop.getKey()).get(platform.getKey()).get(game.getKey()).Sales);
-                }
-            }
-        }
-        List<Entry<String, Integer>> sortedShopsAndSalesList = shopsAndSales.entrySet().stream().sorted(Entry.comparingByValue(Collections.reverseOrder())).collect(Collectors.toList());
-        for (int row = Constants.TOP_FIVE_TOP_FIRST_ROW; row <= Constants.TOP_FIVE_TOP_LAST_ROW; row++) {
-            if (sortedShopsAndSalesList.size() > row - Constants.TOP_FIVE_TOP_FIRST_ROW) {
-                CellReference shopCellRef = new CellReference("K" + row);
-                CellReference stockCellRef = new CellReference("P" + row);
-                topFiveSheet.getRow(shopCellRef.getRow()).getCell(shopCellRef.getCol())
-                        .setCellValue(sortedShopsAndSalesList.get(row - Constants.TOP_FIVE_TOP_FIRST_ROW).getKey());
-                topFiveSheet.getRow(stockCellRef.getRow()).getCell(stockCellRef.getCol())
-                        .setCellValue(sortedShopsAndSalesList.get(row - Constants.TOP_FIVE_TOP_FIRST_ROW).getValue());
-            }
-        }
-    }
-
-    private void topFiveGamesBySalesLatestWeek() {
-        HashMap<String, Integer> platformsGamesAndSales = new HashMap<>();
-        for (Entry<String, HashMap<String, HashMap<String, StockSales>>> shop : newData.entrySet()) {
-            for (Entry<String, HashMap<String, StockSales>> platform : shop.getValue().entrySet()) {
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    if (platformsGamesAndSales.containsKey(platform.getKey() + " " + game.getKey())) {
-                        platformsGamesAndSales.put(platform.getKey() + " " + game.getKey(),
-                                platformsGamesAndSales.get(platform.getKey() + " " + game.getKey()) + game.getValue().Sales);
-                    } else {
-                        platformsGamesAndSales.put(platform.getKey() + " " + game.getKey(), game.getValue().Sales);
-                    }
-                }
-            }
-        }
-        List<Entry<String, Integer>> sortedPlatformsGamesAndSales = platformsGamesAndSales.entrySet().stream().sorted(Entry.comparingByValue(Collections.reverseOrder())).collect(Collectors.toList());
-        for (int row = Constants.TOP_FIVE_BOTTOM_FIRST_ROW; row <= Constants.TOP_FIVE_BOTTOM_LAST_ROW; row++) {
-            if (sortedPlatformsGamesAndSales.size() > row - Constants.TOP_FIVE_BOTTOM_FIRST_ROW) {
-                CellReference shopCellRef = new CellReference("K" + row);
-                CellReference stockCellRef = new CellReference("P" + row);
-                topFiveSheet.getRow(shopCellRef.getRow()).getCell(shopCellRef.getCol())
-                        .setCellValue(sortedPlatformsGamesAndSales.get(row - Constants.TOP_FIVE_BOTTOM_FIRST_ROW).getKey());
-                topFiveSheet.getRow(stockCellRef.getRow()).getCell(stockCellRef.getCol())
-                        .setCellValue(sortedPlatformsGamesAndSales.get(row - Constants.TOP_FIVE_BOTTOM_FIRST_ROW).getValue());
-            }
+    /**
+     * Writes the ranked shops or games to a table of the top five sheet, as
+     * many as fit in it.
+     */
+    private void writeRanking(List<SalesRanking.Ranked> ranked, int firstRow, int lastRow, int nameColumn, int salesColumn) {
+        RowCursor cursor = new RowCursor(topFiveSheet);
+        for (int row = firstRow; row <= lastRow && row - firstRow < ranked.size(); row++) {
+            SalesRanking.Ranked entry = ranked.get(row - firstRow);
+            cursor.moveTo(row - 1);
+            cursor.getCell(nameColumn).setCellValue(entry.getLabel());
+            cursor.getCell(salesColumn).setCellValue(entry.getSales());
+            metrics.addCellsWritten(2);
         }
     }
 
@@ -514,48 +1154,51 @@ public abstract class ReportManager {
     }
 
     private void overallSalesByPlatformExistingRecords() {
-        HashMap<String, HashMap<String, Integer>> currentStatistics = getCurrentOverallSalesPerPlatform();
-        for (Entry<String, HashMap<String, HashMap<String, StockSales>>> shop : newData.entrySet()) {
-            if (!currentStatistics.containsKey(shop.getKey())) {
-                currentStatistics.put(shop.getKey(), new HashMap<>());
-            }
-            for (Entry<String, HashMap<String, StockSales>> platform : shop.getValue().entrySet()) {
-                if (!currentStatistics.get(shop.getKey()).containsKey(platform.getKey())) {
-                    currentStatistics.get(shop.getKey()).put(platform.getKey(), 0);
+        //Updated in place, it's written back to the sheet as a whole
+        HashMap<String, HashMap<String, Integer>> currentStatistics = getAggregates().getShopPlatformSales();
+        for (int shop = 0; shop < delta.getShopsCount(); shop++) {
+            if (!currentStatistics.containsKey(delta.getShop(shop))) {
+                currentStatistics.put(delta.getShop(shop), new HashMap<>());
+            }
+            HashMap<String, Integer> shopStatistics = currentStatistics.get(delta.getShop(shop));
+            for (Platforms platform : Platforms.values()) {
+                if (!shopStatistics.containsKey(platform.getOutputAbbreviation())) {
+                    shopStatistics.put(platform.getOutputAbbreviation(), 0);
                 }
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    if (!undo) {
-                        currentStatistics.get(shop.getKey()).put(platform.getKey(), currentStatistics.get(shop.getKey()).get(platform.getKey()) + game.getValue().Sales);
-                    } else {
-                        currentStatistics.get(shop.getKey()).put(platform.getKey(), currentStatistics.get(shop.getKey()).get(platform.getKey()) - game.getValue().Sales);
-                    }
+                int sales = delta.getShopSales(shop, platform);
+                if (!undo) {
+                    shopStatistics.put(platform.getOutputAbbreviation(), shopStatistics.get(platform.getOutputAbbreviation()) + sales);
+                } else {
+                    shopStatistics.put(platform.getOutputAbbreviation(), shopStatistics.get(platform.getOutputAbbreviation()) - sales);
                 }
             }
         }
         List<Entry<String, HashMap<String, Integer>>> newStatistics = currentStatistics.entrySet().stream().collect(Collectors.toList());
+        String[] platformHeaders = getOverallSalesByPlatformHeaders();
+        HashSet<String> writtenHeaders = new HashSet<>(Arrays.asList(platformHeaders).subList(
+                Constants.OVERALL_SALES_BY_PLATFORM_FIRST_COL - 1, Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL - 1));
+        RowCursor cursor = new RowCursor(salesByPlatformSheet);
         for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row < newStatistics.size() + Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row++) {
-            CellRangeAddress shopNameCellAddress = CellRangeAddress.valueOf("A" + row + ":C" + row);
+            CellRangeAddress shopNameCellAddress = new CellRangeAddress(row - 1, row - 1, SHOP_COLUMN, SHOP_COLUMN + 2);
             try {
                 salesByPlatformSheet.addMergedRegion(shopNameCellAddress);
             } catch (IllegalStateException ex) {
                 //merged cells already exist. proceed
             }
-            CellReference shopCellRef = new CellReference(row - 1, 0);
-            Row shopRow = CellUtil.getRow(shopCellRef.getRow(), salesByPlatformSheet);
-            Cell shopCell = salesByPlatformSheet.getRow(shopRow.getRowNum()).getCell(shopCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-            shopCell.setCellValue(newStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getKey());
-            CellReference totalCellRef = new CellReference(row - 1, Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL - 1);
-            Row totalRow = CellUtil.getRow(totalCellRef.getRow(), salesByPlatformSheet);
-            Cell totalCell = salesByPlatformSheet.getRow(totalRow.getRowNum()).getCell(totalCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+            cursor.moveTo(row - 1);
+            cursor.getOrCreateCell(SHOP_COLUMN).setCellValue(newStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getKey());
+            Cell totalCell = cursor.getOrCreateCell(OVERALL_TOTAL_COLUMN);
             totalCell.setCellType(CellType.FORMULA);
             totalCell.setCellFormula("SUM(D" + row + ":O" + row + ")");
+            recalculator.shopChanged(row - 1);
+            metrics.addCellsWritten(2);
+            //Platforms with no column are not kept in the totals, as they're not read back from the sheet either
+            newStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getValue().keySet().retainAll(writtenHeaders);
             for (Entry<String, Integer> platform : newStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getValue().entrySet()) {
                 for (int column = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_COL; column < Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL; column++) {
-                    CellReference platformCellRef = new CellReference(Constants.OVERALL_SALES_BY_PLATFORM_HEADER_ROW - 1, column - 1);
-                    if (salesByPlatformSheet.getRow(platformCellRef.getRow()).getCell(platformCellRef.getCol()).getStringCellValue().equals(platform.getKey())) {
-                        CellReference platformSalesCellRef = new CellReference(row - 1, column - 1);
-                        salesByPlatformSheet.getRow(platformSalesCellRef.getRow()).getCell(platformSalesCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK)
-                                .setCellValue(platform.getValue());
+                    if (platformHeaders[column - 1].equals(platform.getKey())) {
+                        cursor.getOrCreateCell(column - 1).setCellValue(platform.getValue());
+                        metrics.addCellsWritten(1);
                     }
                 }
             }
@@ -563,175 +1206,142 @@ public abstract class ReportManager {
     }
 
     private void overallSalesByPlatformFreshRecords() {
-        List<Entry<String, HashMap<String, HashMap<String, StockSales>>>> currentStatistics = newData.entrySet().stream().collect(Collectors.toList());
-        for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row < currentStatistics.size() + Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row++) {
-            CellRangeAddress shopNameCellAddress = CellRangeAddress.valueOf("A" + row + ":C" + row);
+        String[] platformHeaders = getOverallSalesByPlatformHeaders();
+        HashMap<String, HashMap<String, Integer>> shopPlatformSales = getAggregates().getShopPlatformSales();
+        shopPlatformSales.clear();
+        RowCursor cursor = new RowCursor(salesByPlatformSheet);
+        for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row < delta.getShopsCount() + Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row++) {
+            int shop = row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW;
+            CellRangeAddress shopNameCellAddress = new CellRangeAddress(row - 1, row - 1, SHOP_COLUMN, SHOP_COLUMN + 2);
             salesByPlatformSheet.addMergedRegion(shopNameCellAddress);
-            CellReference shopCellRef = new CellReference(row - 1, 0);
-            Row shopRow = CellUtil.getRow(shopCellRef.getRow(), salesByPlatformSheet);
-            Cell shopCell = salesByPlatformSheet.getRow(shopRow.getRowNum()).getCell(shopCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-            shopCell.setCellValue(currentStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getKey());
-            CellReference totalCellRef = new CellReference(row - 1, Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL - 1);
-            Row totalRow = CellUtil.getRow(totalCellRef.getRow(), salesByPlatformSheet);
-            Cell totalCell = salesByPlatformSheet.getRow(totalRow.getRowNum()).getCell(totalCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+            cursor.moveTo(row - 1);
+            cursor.getOrCreateCell(SHOP_COLUMN).setCellValue(delta.getShop(shop));
+            Cell totalCell = cursor.getOrCreateCell(OVERALL_TOTAL_COLUMN);
             totalCell.setCellType(CellType.FORMULA);
             totalCell.setCellFormula("SUM(D" + row + ":O" + row + ")");
+            recalculator.shopChanged(row - 1);
+            metrics.addCellsWritten(2);
 
-            for (Entry<String, HashMap<String, StockSales>> platform : currentStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getValue().entrySet()) {
-                int sumSales = 0;
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    sumSales += currentStatistics.get(row - Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW).getValue().get(platform.getKey()).get(game.getKey()).Sales;
-                }
+            HashMap<String, Integer> platformSales = new HashMap<>();
+            for (Platforms platform : Platforms.values()) {
+                int sumSales = delta.getShopSales(shop, platform);
                 for (int column = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_COL; column < Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL; column++) {
-                    CellReference platformCellRef = new CellReference(Constants.OVERALL_SALES_BY_PLATFORM_HEADER_ROW - 1, column - 1);
-                    if (salesByPlatformSheet.getRow(platformCellRef.getRow())
-                            .getCell(platformCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue().equals(platform.getKey())) {
-                        CellReference platformSalesCellRef = new CellReference(row - 1, column - 1);
-                        salesByPlatformSheet.getRow(platformSalesCellRef.getRow())
-                                .getCell(platformSalesCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(sumSales);
+                    if (platformHeaders[column - 1].equals(platform.getOutputAbbreviation())) {
+                        cursor.getOrCreateCell(column - 1).setCellValue(sumSales);
+                        platformSales.put(platform.getOutputAbbreviation(), sumSales);
+                        metrics.addCellsWritten(1);
                     }
                 }
             }
+            shopPlatformSales.put(delta.getShop(shop), platformSales);
         }
     }
 
-    private HashMap<String, HashMap<String, Integer>> getCurrentOverallSalesPerPlatform() {
-        HashMap<String, HashMap<String, Integer>> shopPlatformSales = new HashMap<>();
+    private LinkedHashMap<String, HashMap<String, Integer>> getCurrentOverallSalesPerPlatform() {
+        //Linked, so the shops keep their rows when the sheet is rewritten
+        LinkedHashMap<String, HashMap<String, Integer>> shopPlatformSales = new LinkedHashMap<>();
+        String[] platformHeaders = getOverallSalesByPlatformHeaders();
+        RowCursor cursor = new RowCursor(salesByPlatformSheet);
         int lastRowUsed = salesByPlatformSheet.getLastRowNum() + 1; //1 based
         for (int row = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_ROW; row <= lastRowUsed; row++) {
-            CellReference shopCellRef = new CellReference(row - 1, 0);
-            Cell shopCell = salesByPlatformSheet.getRow(shopCellRef.getRow()).getCell(shopCellRef.getCol());
-            if ("".equals(shopCell.getStringCellValue())) {
+            cursor.moveTo(row - 1);
+            String shop = cursor.getCell(SHOP_COLUMN).getStringCellValue();
+            if ("".equals(shop) || shopPlatformSales.containsKey(shop)) {
                 continue;
             }
-            if (!shopPlatformSales.containsKey(shopCell.getStringCellValue())) {
-                shopPlatformSales.put(shopCell.getStringCellValue(), new HashMap<>());
-                for (int column = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_COL; column <= Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL; column++) {
-                    CellReference platformCellRef = new CellReference(Constants.OVERALL_SALES_BY_PLATFORM_HEADER_ROW - 1, column - 1);
-                    Cell platformCell = salesByPlatformSheet.getRow(platformCellRef.getRow()).getCell(platformCellRef.getCol());
-                    if (platformCell.getStringCellValue().equals(Constants.TOTAL)) {
-                        break;
-                    }
-                    if (!shopPlatformSales.get(shopCell.getStringCellValue()).containsKey(platformCell.getStringCellValue())) {
-                        CellReference platformSalesValueCellRef = new CellReference(row - 1, column - 1);
-                        Cell platformSalesValueCell = CellUtil.getRow(platformSalesValueCellRef.getRow(), salesByPlatformSheet)
-                                .getCell(platformSalesValueCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                        if (platformSalesValueCell.getCellTypeEnum() != CellType.BLANK) {
-                            shopPlatformSales.get(shopCell.getStringCellValue()).put(platformCell.getStringCellValue(), 0);
-                            shopPlatformSales.get(shopCell.getStringCellValue())
-                                    .put(platformCell.getStringCellValue(), shopPlatformSales.get(shopCell.getStringCellValue())
-                                            .get(platformCell.getStringCellValue()) + (int) platformSalesValueCell.getNumericCellValue());
-                        }
-                    }
+            HashMap<String, Integer> platformSales = new HashMap<>();
+            shopPlatformSales.put(shop, platformSales);
+            for (int column = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_COL; column <= Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL; column++) {
+                String platform = platformHeaders[column - 1];
+                if (platform.equals(Constants.TOTAL)) {
+                    break;
+                }
+                if (!platformSales.containsKey(platform) && cursor.getCellType(column - 1) != CellType.BLANK) {
+                    platformSales.put(platform, cursor.getInt(column - 1, 0));
                 }
             }
         }
         return shopPlatformSales;
     }
 
+    /**
+     * Reads the header row of the sales by platform sheet once, instead of
+     * once per shop.
+     *
+     * @return the header of each column, by 0-based index, up to the total
+     * column.
+     */
+    private String[] getOverallSalesByPlatformHeaders() {
+        String[] headers = new String[Constants.OVERALL_SALES_BY_PLATFORM_LAST_COL];
+        RowCursor cursor = new RowCursor(salesByPlatformSheet).moveTo(Constants.OVERALL_SALES_BY_PLATFORM_HEADER_ROW - 1);
+        for (int column = Constants.OVERALL_SALES_BY_PLATFORM_FIRST_COL - 1; column < headers.length; column++) {
+            headers[column] = cursor.getStringOrEmpty(column);
+        }
+        return headers;
+    }
+
+    /**
+     * Adds the sales of each game, summed over all shops, to its row. The
+     * rows are looked up in the running totals, by platform and title, so the
+     * sheet isn't scanned. If a game is on more than one row, the first one
+     * is taken. Games with no row yet are appended, except when undoing. A
+     * sheet with no records yet is only added to.
+     */
     private void writeOverallSalesByGame() {
-        if (salesByGameSheet.getLastRowNum() > 2) {
-            salesByGameExistingRecords();
-        } else {
-            salesByGameFreshRecords();
-        }
-    }
-
-    private void salesByGameExistingRecords() {
-        int currentLastRow;
-        for (Entry<String, HashMap<String, HashMap<String, StockSales>>> shop : newData.entrySet()) {
-            for (Entry<String, HashMap<String, StockSales>> platform : shop.getValue().entrySet()) {
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    //0 based + 1 to make it 1-based;
-                    currentLastRow = salesByGameSheet.getLastRowNum() + 1;
-
-                    for (int row = Constants.OVERALL_SALES_BY_GAME_FIRST_ROW; row <= currentLastRow; row++) {
-                        CellReference platformCellRef = new CellReference("A" + row);
-                        Cell platformCell = salesByGameSheet.getRow(platformCellRef.getRow()).getCell(platformCellRef.getCol());
-                        CellReference gameCellRef = new CellReference("B" + row);
-                        Cell gameCell = salesByGameSheet.getRow(gameCellRef.getRow()).getCell(gameCellRef.getCol());
-                        CellReference salesCellRef = new CellReference("E" + row);
-                        Cell salesCell = salesByGameSheet.getRow(salesCellRef.getRow()).getCell(salesCellRef.getCol());
-                        if (platformCell.getStringCellValue().equals(platform.getKey())) {
-                            if (gameCell.getStringCellValue().equals(game.getKey())) {
-                                if (!undo) {
-                                    salesCell.setCellValue(salesCell.getNumericCellValue() + game.getValue().Sales);
-                                } else {
-                                    salesCell.setCellValue(salesCell.getNumericCellValue() - game.getValue().Sales);
-                                }
-                                break;
-                            }
-                        }
-                        //If we've checked every row and neither was a match it doesnt exist
-                        if (!undo && row == currentLastRow) {
-                            CellReference nextRowPlatformCellRef = new CellReference("A" + (currentLastRow + 1));
-                            CellReference nextRowGameCellRef = new CellReference("B" + (currentLastRow + 1));
-                            CellReference nextRowSalesCellRef = new CellReference("E" + (currentLastRow + 1));
-                            CellUtil.getRow(nextRowPlatformCellRef.getRow(), salesByGameSheet)
-                                    .getCell(nextRowPlatformCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(platform.getKey());
-                            CellUtil.getRow(nextRowGameCellRef.getRow(), salesByGameSheet)
-                                    .getCell(nextRowGameCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(game.getKey());
-                            CellUtil.getRow(nextRowSalesCellRef.getRow(), salesByGameSheet)
-                                    .getCell(nextRowSalesCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(game.getValue().Sales);
-                            CellRangeAddress gameCellsRange = CellRangeAddress.valueOf("B" + (currentLastRow + 1) + ":D" + (currentLastRow + 1));
-                            salesByGameSheet.addMergedRegion(gameCellsRange);
-                        }
-                    }
-                }
+        AggregateStore totals = getAggregates();
+        boolean subtract = undo && salesByGameRecords.getLastRowNum() > 2;
+        for (int game = 0; game < delta.getGamesCount(); game++) {
+            String platform = delta.getGamePlatform(game).getOutputAbbreviation();
+            String title = delta.getGameTitle(game);
+            int gameSales = delta.getGameSales(game);
+            AggregateStore.GameTotal gameTotal = totals.getGameTotal(platform, title);
+            if (gameTotal != null) {
+                double sales = !subtract ? gameTotal.getSales() + gameSales : gameTotal.getSales() - gameSales;
+                salesByGameRecords.setSales(gameTotal.getRow(), sales);
+                gameTotal.setSales(sales);
+                metrics.addCellsWritten(1);
+            } else if (!subtract) {
+                int row = salesByGameRecords.append(platform, title, gameSales);
+                totals.addGameTotal(row, platform, title, gameSales);
+                metrics.addCellsWritten(3);
             }
         }
     }
 
-    private void salesByGameFreshRecords() {
-        for (Entry<String, HashMap<String, HashMap<String, StockSales>>> shop : newData.entrySet()) {
-            for (Entry<String, HashMap<String, StockSales>> platform : shop.getValue().entrySet()) {
-                for (Entry<String, StockSales> game : platform.getValue().entrySet()) {
-                    int currentLastRow = salesByGameSheet.getLastRowNum() + 1;
-                    if (currentLastRow < Constants.OVERALL_SALES_BY_GAME_FIRST_ROW) {
-                        CellReference nextRowPlatformCellRef = new CellReference("A" + (currentLastRow + 1));
-                        CellReference nextRowGameCellRef = new CellReference("B" + (currentLastRow + 1));
-                        CellReference nextRowSalesCellRef = new CellReference("E" + (currentLastRow + 1));
-                        CellUtil.getRow(nextRowPlatformCellRef.getRow(), salesByGameSheet).getCell(nextRowPlatformCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(platform.getKey());
-                        CellUtil.getRow(nextRowGameCellRef.getRow(), salesByGameSheet).getCell(nextRowGameCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(game.getKey());
-                        CellUtil.getRow(nextRowSalesCellRef.getRow(), salesByGameSheet).getCell(nextRowSalesCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(game.getValue().Sales);
-                        CellRangeAddress gameCellsRange = CellRangeAddress.valueOf("B" + (currentLastRow + 1) + ":D" + (currentLastRow + 1));
-                        salesByGameSheet.addMergedRegion(gameCellsRange);
-                        continue;
-                    }
-                    for (int row = Constants.OVERALL_SALES_BY_GAME_FIRST_ROW; row <= currentLastRow; row++) {
-                        CellReference platformCellRef = new CellReference("A" + row);
-                        Cell platformCell = salesByGameSheet.getRow(platformCellRef.getRow()).getCell(platformCellRef.getCol());
-                        CellReference gameCellRef = new CellReference("B" + row);
-                        Cell gameCell = salesByGameSheet.getRow(gameCellRef.getRow()).getCell(gameCellRef.getCol());
-                        CellReference salesCellRef = new CellReference("E" + row);
-                        Cell salesCell = salesByGameSheet.getRow(salesCellRef.getRow()).getCell(salesCellRef.getCol());
-                        if (platformCell.getStringCellValue().equals(platform.getKey())) {
-                            if (gameCell.getStringCellValue().equals(game.getKey())) {
-                                salesCell.setCellValue(salesCell.getNumericCellValue() + game.getValue().Sales);
-                                break;
-                            }
-                        }
-                        if (row == currentLastRow) {
-                            CellReference nextRowPlatformCellRef = new CellReference("A" + (currentLastRow + 1));
-                            CellReference nextRowGameCellRef = new CellReference("B" + (currentLastRow + 1));
-                            CellReference nextRowSalesCellRef = new CellReference("E" + (currentLastRow + 1));
-                            CellUtil.getRow(nextRowPlatformCellRef.getRow(), salesByGameSheet).getCell(nextRowPlatformCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(platform.getKey());
-                            CellUtil.getRow(nextRowGameCellRef.getRow(), salesByGameSheet).getCell(nextRowGameCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(game.getKey());
-                            CellUtil.getRow(nextRowSalesCellRef.getRow(), salesByGameSheet).getCell(nextRowSalesCellRef.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellValue(game.getValue().Sales);
-                            CellRangeAddress gameCellsRange = CellRangeAddress.valueOf("B" + (currentLastRow + 1) + ":D" + (currentLastRow + 1));
-                            salesByGameSheet.addMergedRegion(gameCellsRange);
-                        }
-                    }
-                }
-            }
+    /**
+     * Streams the input file through the given handler.
+     *
+     * @param handler receives the rows of the input sheet.
+     * @throws InputFileIOException if the input file cannot be read.
+     */
+    protected void readInput(InputRowHandler handler) throws InputFileIOException {
+        try {
+            inputReader.read(row -> {
+                inputRowsRead++;
+                return handler.handleRow(row);
+            });
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "There's an IO problem with the input file.", ex);
+            throw new InputFileIOException(rb.getString("InputFileIOExceptionMessage"), ex);
         }
     }
 
-    protected void formatDataHashMap() {
-        for (Platforms platform : Platforms.values()) {
-            newData.entrySet().stream().filter((store) -> (!store.getValue().containsKey(platform.getOutputAbbreviation()))).forEachOrdered((store) -> {
-                store.getValue().put(platform.getOutputAbbreviation(), new HashMap<>());
+    /**
+     * Streams the first rows of the input file through the given handler, to
+     * check the file. See {@link InputReader#probe}.
+     *
+     * @param handler receives the rows of the input sheet, stops after a few.
+     * @throws InputFileIOException if the input file cannot be read.
+     */
+    protected void probeInput(InputRowHandler handler) throws InputFileIOException {
+        try {
+            inputReader.probe(row -> {
+                inputRowsRead++;
+                return handler.handleRow(row);
             });
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "There's an IO problem with the input file.", ex);
+            throw new InputFileIOException(rb.getString("InputFileIOExceptionMessage"), ex);
         }
     }
     //TODO abstract methods!
@@ -741,13 +1351,43 @@ public abstract class ReportManager {
      *
      * @return week number.
      * @throws net.thecir.exceptions.InputFileContainsNoValidDateException
+     * @throws net.thecir.exceptions.InputFileIOException
+     */
+    protected abstract int getWeekNumber() throws InputFileContainsNoValidDateException, InputFileIOException;
+
+    /**
+     * Reads the stock and sales of the input file into newData, in a single
+     * pass over the input. The shops are added to newData as they're first
+     * seen, so a shop with no sales is reported as long as it has a record.
+     *
+     * @throws net.thecir.exceptions.InputFileIOException
      */
-    protected abstract int getWeekNumber() throws InputFileContainsNoValidDateException;
+    protected abstract void readInputData() throws InputFileIOException;
 
-    protected abstract void readInputData();
+    protected abstract boolean isInputFileCorrect() throws InputFileIOException;
 
-    protected abstract boolean isInputFileCorrect();
+    /**
+     * Forgets the rows kept from the previous input file, before the next one
+     * is opened.
+     */
+    protected abstract void clearInputRows();
+
+    /**
+     * Creates a report manager of the same store, to read an input file on
+     * its own.
+     *
+     * @param inputWorkbookFile the input file.
+     * @return a new report manager for the input file.
+     */
+    protected abstract ReportManager createInputParser(File inputWorkbookFile);
 
-    protected abstract String getStoreName(int row);
+    /**
+     * Tells how the input files are read, so the input files read another way
+     * are not taken from the input cache.
+     *
+     * @return the same value for report managers which read an input file the
+     * same way.
+     */
+    protected abstract String getInputFormat();
 
 }
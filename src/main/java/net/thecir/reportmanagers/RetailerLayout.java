@@ -0,0 +1,466 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import net.thecir.enums.Platforms;
+import net.thecir.enums.Stores;
+import net.thecir.inputreaders.InputRow;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Where a retail chain puts the stock and sales in its input files. Read from
+ * a properties descriptor and compiled once - the columns are resolved to
+ * indexes and the patterns and the platform classifier are built up front,
+ * so reading a row costs no parsing. Columns and rows are written as in
+ * Excel, e.g. H and 5.
+ * <pre>
+ * name                       the name of the chain.
+ * shops                      rows - every row holds the stock and sales of
+ *                            an item in a shop, the rows of an item follow
+ *                            the one with its item number.
+ *                            columns - every row holds an item, the shops
+ *                            are in a header row, with a stock and a sales
+ *                            column each.
+ * firstRow                   the first row of the data.
+ * item.column                the item number, rows without one are skipped.
+ * item.min, item.max         the range of the item numbers, optional.
+ * item.numericOnly           whether text cells holding a number are skipped.
+ * item.lastRowIsTotal        rows: the last row of an item is its total.
+ * description.column         the platform and the title of the item.
+ * description.dropLastCharacter      a marker ends the description.
+ * description.removeFirstSpace       the platform may contain a space.
+ * description.keepUnknownPlatform    the whole description is the title of
+ *                                    the items with no known platform.
+ * shop.column                rows: the shop name.
+ * stock.column, sales.column rows: the stock and the sales.
+ * shops.row                  columns: the row with the shop names.
+ * shops.firstColumn          columns: the first shop column.
+ * shops.stockColumns         columns: odd or even, the stock columns are the
+ *                            ones with an odd or even index, the others hold
+ *                            the sales.
+ * shop.removePattern         removed from the shop names, optional.
+ * shop.pattern               the names of the shops to read, optional.
+ * check.columnCount          the cells of the first row, optional.
+ * check.cell                 the cell holding check.pattern, the whole
+ *                            check.column is searched if not given.
+ * check.column               searched for check.pattern, the shop column by
+ *                            default.
+ * check.pattern              tells the input files of the chain.
+ * check.caseInsensitive      whether check.pattern ignores the case.
+ * date.cells                 the cells, which may hold the date, e.g. A1:C1.
+ * date.pattern               the date, its first group if it has one.
+ * date.removeWhitespace      whether the spaces are removed before matching.
+ * date.maxCount              the most dates a cell may hold, the latest one
+ *                            gives the week.
+ * date.formats               comma separated, the one as long as the date is
+ *                            used, the first one if none is.
+ * date.error                 the message key, if no valid date is found.
+ * platform.&lt;platform&gt;        the abbreviation the descriptions of the
+ *                            platform start with, e.g. platform.PS4=P4.
+ * </pre>
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class RetailerLayout {
+
+    /**
+     * How the shops are laid out in the input sheet.
+     */
+    public enum ShopsOrientation {
+        ROWS,
+        COLUMNS
+    }
+
+    private static final EnumMap<Stores, RetailerLayout> STORE_LAYOUTS = new EnumMap<>(Stores.class);
+
+    @Getter
+    private final String name;
+    //SHA-256 of the descriptor, tells the input files read with another layout apart
+    @Getter
+    private final String fingerprint;
+    @Getter
+    private final ShopsOrientation shopsOrientation;
+    @Getter
+    private final int firstRow;
+
+    @Getter
+    private final int itemColumn;
+    private final long minItemNumber;
+    private final long maxItemNumber;
+    private final boolean numericItemNumberOnly;
+    @Getter
+    private final boolean lastItemRowTotal;
+
+    @Getter
+    private final int descriptionColumn;
+    private final boolean dropLastDescriptionCharacter;
+    private final boolean removeFirstDescriptionSpace;
+    private final boolean keepUnknownPlatformDescription;
+
+    @Getter
+    private final int shopColumn;
+    @Getter
+    private final int stockColumn;
+    @Getter
+    private final int salesColumn;
+    @Getter
+    private final int shopsRow;
+    @Getter
+    private final int shopsFirstColumn;
+    private final int stockColumnsParity;
+    private final Pattern shopRemovePattern;
+    private final Pattern shopPattern;
+
+    @Getter
+    private final int checkColumnCount;
+    @Getter
+    private final int checkRow;
+    @Getter
+    private final int checkColumn;
+    private final Pattern checkPattern;
+
+    @Getter
+    private final CellRangeAddress dateCells;
+    private final Pattern datePattern;
+    private final boolean removeDateWhitespace;
+    @Getter
+    private final int maxDatesCount;
+    private final String[] dateFormats;
+    @Getter
+    private final String dateErrorKey;
+
+    private final EnumMap<Platforms, String> platformAbbreviations = new EnumMap<>(Platforms.class);
+    private final PlatformClassifier platformClassifier;
+
+    /**
+     * Compiles a layout descriptor.
+     *
+     * @param descriptor the descriptor.
+     * @throws IllegalArgumentException if a key is missing or not valid.
+     */
+    public RetailerLayout(Properties descriptor) {
+        name = getRequired(descriptor, "name");
+        fingerprint = getFingerprint(descriptor);
+        shopsOrientation = ShopsOrientation.valueOf(getRequired(descriptor, "shops").trim().toUpperCase());
+        firstRow = getRow(descriptor, "firstRow", 0);
+
+        itemColumn = getColumn(descriptor, "item.column", -1);
+        minItemNumber = Long.parseLong(descriptor.getProperty("item.min", String.valueOf(Long.MIN_VALUE)).trim());
+        maxItemNumber = Long.parseLong(descriptor.getProperty("item.max", String.valueOf(Long.MAX_VALUE)).trim());
+        numericItemNumberOnly = getBoolean(descriptor, "item.numericOnly");
+        lastItemRowTotal = getBoolean(descriptor, "item.lastRowIsTotal");
+
+        descriptionColumn = getColumn(descriptor, "description.column", -1);
+        dropLastDescriptionCharacter = getBoolean(descriptor, "description.dropLastCharacter");
+        removeFirstDescriptionSpace = getBoolean(descriptor, "description.removeFirstSpace");
+        keepUnknownPlatformDescription = getBoolean(descriptor, "description.keepUnknownPlatform");
+
+        if (shopsOrientation == ShopsOrientation.ROWS) {
+            shopColumn = getColumn(descriptor, "shop.column", -1);
+            stockColumn = getColumn(descriptor, "stock.column", -1);
+            salesColumn = getColumn(descriptor, "sales.column", -1);
+            shopsRow = -1;
+            shopsFirstColumn = -1;
+            stockColumnsParity = -1;
+        } else {
+            shopColumn = -1;
+            stockColumn = -1;
+            salesColumn = -1;
+            shopsRow = getRow(descriptor, "shops.row", -1);
+            shopsFirstColumn = getColumn(descriptor, "shops.firstColumn", -1);
+            String stockColumns = getRequired(descriptor, "shops.stockColumns").trim();
+            if (!"odd".equals(stockColumns) && !"even".equals(stockColumns)) {
+                throw new IllegalArgumentException("shops.stockColumns must be odd or even: " + stockColumns);
+            }
+            stockColumnsParity = "odd".equals(stockColumns) ? 1 : 0;
+        }
+        shopRemovePattern = getPattern(descriptor, "shop.removePattern", 0);
+        shopPattern = getPattern(descriptor, "shop.pattern", 0);
+
+        checkColumnCount = Integer.parseInt(descriptor.getProperty("check.columnCount", "-1").trim());
+        String checkCell = descriptor.getProperty("check.cell");
+        if (checkCell != null) {
+            CellReference reference = new CellReference(checkCell.trim());
+            checkRow = reference.getRow();
+            checkColumn = reference.getCol();
+        } else {
+            checkRow = -1;
+            checkColumn = getColumn(descriptor, "check.column", shopColumn);
+        }
+        checkPattern = getPattern(descriptor, "check.pattern",
+                getBoolean(descriptor, "check.caseInsensitive") ? Pattern.CASE_INSENSITIVE : 0);
+        if (checkPattern == null) {
+            throw new IllegalArgumentException("Missing check.pattern in layout " + name);
+        }
+
+        dateCells = CellRangeAddress.valueOf(getRequired(descriptor, "date.cells").trim());
+        datePattern = getPattern(descriptor, "date.pattern", 0);
+        if (datePattern == null) {
+            throw new IllegalArgumentException("Missing date.pattern in layout " + name);
+        }
+        removeDateWhitespace = getBoolean(descriptor, "date.removeWhitespace");
+        maxDatesCount = Integer.parseInt(descriptor.getProperty("date.maxCount", "1").trim());
+        dateFormats = getRequired(descriptor, "date.formats").split("\\s*,\\s*");
+        dateErrorKey = descriptor.getProperty("date.error", "InputNoValidDate").trim();
+
+        for (Platforms platform : Platforms.values()) {
+            String abbreviation = descriptor.getProperty("platform." + platform.name());
+            if (abbreviation != null && platform != Platforms.Other) {
+                platformAbbreviations.put(platform, abbreviation.trim());
+            }
+        }
+        platformClassifier = new PlatformClassifier(platformAbbreviations::get);
+    }
+
+    /**
+     * @param store the store.
+     * @return the layout of the store, compiled on first use.
+     */
+    public static synchronized RetailerLayout forStore(Stores store) {
+        RetailerLayout layout = STORE_LAYOUTS.get(store);
+        if (layout == null) {
+            try (InputStream is = RetailerLayout.class.getClassLoader()
+                    .getResourceAsStream("layouts/" + store.name() + ".properties")) {
+                if (is == null) {
+                    throw new IllegalStateException("No layout for store " + store);
+                }
+                layout = new RetailerLayout(load(is));
+            } catch (IOException ex) {
+                throw new IllegalStateException("The layout of store " + store + " cannot be read.", ex);
+            }
+            STORE_LAYOUTS.put(store, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Compiles the layout descriptor of a chain, which has no store of its
+     * own.
+     *
+     * @param descriptorFile the descriptor, a properties file in UTF-8.
+     * @return the layout.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a key is missing or not valid.
+     */
+    public static RetailerLayout load(File descriptorFile) throws IOException {
+        try (InputStream is = new FileInputStream(descriptorFile)) {
+            return new RetailerLayout(load(is));
+        }
+    }
+
+    private static Properties load(InputStream is) throws IOException {
+        Properties descriptor = new Properties();
+        try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            descriptor.load(reader);
+        }
+        return descriptor;
+    }
+
+    /**
+     * @param row an input row.
+     * @return whether the item column holds an item number.
+     */
+    public boolean hasItemNumber(InputRow row) {
+        if (numericItemNumberOnly ? row.getCellType(itemColumn) != CellType.NUMERIC : !row.isNumber(itemColumn)) {
+            return false;
+        }
+        long itemNumber = row.getLong(itemColumn, 0);
+        return itemNumber >= minItemNumber && itemNumber <= maxItemNumber;
+    }
+
+    /**
+     * Tells the platform and the title of an item.
+     *
+     * @param description the description cell value.
+     * @return the platform and the title.
+     */
+    public PlatformClassifier.Match classify(String description) {
+        String platformAndGame = description;
+        if (dropLastDescriptionCharacter) {
+            //The last character of the cell, the trimmed description is cut to the length of the cell
+            String trimmed = platformAndGame.trim();
+            platformAndGame = trimmed.substring(0, Math.max(0, Math.min(trimmed.length(), description.length() - 1)));
+        }
+        if (removeFirstDescriptionSpace) {
+            platformAndGame = platformAndGame.trim();
+            //The fist space is removed, its the space between xbox and 360 -> xbox 360 becomes xbox360
+            int indexOfFirstSpace = platformAndGame.indexOf(' ');
+            if (indexOfFirstSpace >= 0) {
+                platformAndGame = platformAndGame.substring(0, indexOfFirstSpace) + platformAndGame.substring(indexOfFirstSpace + 1);
+            }
+        }
+        PlatformClassifier.Match match = platformClassifier.classify(platformAndGame);
+        if (keepUnknownPlatformDescription && match.getPlatform() == Platforms.Other) {
+            return new PlatformClassifier.Match(Platforms.Other, description);
+        }
+        return match;
+    }
+
+    /**
+     * @param shopCellValue the shop cell value.
+     * @return the shop name, null if the shop is not read.
+     */
+    public String getShopName(String shopCellValue) {
+        String shop = shopCellValue;
+        if (shopRemovePattern != null) {
+            shop = shopRemovePattern.matcher(shop).replaceAll("");
+        }
+        shop = shop.trim();
+        if (shop.isEmpty() || shopPattern != null && !shopPattern.matcher(shop).find()) {
+            return null;
+        }
+        return shop;
+    }
+
+    /**
+     * @param column a shop column.
+     * @return whether the column holds the stock, rather than the sales.
+     */
+    public boolean isStockColumn(int column) {
+        return column % 2 == stockColumnsParity;
+    }
+
+    /**
+     * @param value the value of the check cell.
+     * @return whether the value marks an input file of the chain.
+     */
+    public boolean isCheckValue(String value) {
+        return checkPattern.matcher(value).find();
+    }
+
+    /**
+     * @param value the value of a date cell.
+     * @return the value as matched against date.pattern.
+     */
+    public Matcher matchDates(String value) {
+        return datePattern.matcher(removeDateWhitespace ? value.replaceAll("\\s", "") : value);
+    }
+
+    /**
+     * @param date a date, as found by date.pattern.
+     * @return the format of the date.
+     */
+    public String getDateFormat(String date) {
+        for (String format : dateFormats) {
+            if (format.length() == date.length()) {
+                return format;
+            }
+        }
+        return dateFormats[0];
+    }
+
+    /**
+     * @param platform the platform.
+     * @return the abbreviation the descriptions of the platform start with,
+     * null if the platform is not looked for.
+     */
+    public String getPlatformAbbreviation(Platforms platform) {
+        return platformAbbreviations.get(platform);
+    }
+
+    /**
+     * @return the last row, which is read before the data. -1 if none.
+     */
+    int getLastHeaderRow() {
+        int lastHeaderRow = Math.max(dateCells.getLastRow(), checkRow);
+        if (checkColumnCount >= 0) {
+            lastHeaderRow = Math.max(lastHeaderRow, firstRow);
+        }
+        return Math.max(lastHeaderRow, shopsRow);
+    }
+
+    /**
+     * @return the SHA-256 of the keys and values of the descriptor, sorted by
+     * key, in hex.
+     */
+    private static String getFingerprint(Properties descriptor) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String key : new TreeSet<>(descriptor.stringPropertyNames())) {
+                digest.update((key + '=' + descriptor.getProperty(key) + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+
+    private static String getRequired(Properties descriptor, String key) {
+        String value = descriptor.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + key + " in layout descriptor");
+        }
+        return value;
+    }
+
+    private static int getColumn(Properties descriptor, String key, int defaultColumn) {
+        String value = descriptor.getProperty(key);
+        if (value == null) {
+            if (defaultColumn < 0) {
+                throw new IllegalArgumentException("Missing " + key + " in layout descriptor");
+            }
+            return defaultColumn;
+        }
+        return CellReference.convertColStringToIndex(value.trim());
+    }
+
+    private static int getRow(Properties descriptor, String key, int defaultRow) {
+        String value = descriptor.getProperty(key);
+        if (value == null) {
+            if (defaultRow < 0) {
+                throw new IllegalArgumentException("Missing " + key + " in layout descriptor");
+            }
+            return defaultRow;
+        }
+        //Excel rows are 1-based
+        return Integer.parseInt(value.trim()) - 1;
+    }
+
+    private static boolean getBoolean(Properties descriptor, String key) {
+        return Boolean.parseBoolean(descriptor.getProperty(key, "false").trim());
+    }
+
+    private static Pattern getPattern(Properties descriptor, String key, int flags) {
+        String value = descriptor.getProperty(key);
+        return value == null ? null : Pattern.compile(value, flags);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+/**
+ * The records of the sales by game sheet: platform, title and sales, on one
+ * row each, with the title cells merged from B to D.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+interface SalesByGameRecords {
+
+    /**
+     * @return the 0-based number of the last row of the sheet, headers
+     * included.
+     */
+    public int getLastRowNum();
+
+    /**
+     * @param rowNum 0-based row number.
+     * @return the platform abbreviation on the row, null if the cell is
+     * missing.
+     */
+    public String getPlatform(int rowNum);
+
+    /**
+     * @param rowNum 0-based row number.
+     * @return the title on the row, null if the cell is missing.
+     */
+    public String getTitle(int rowNum);
+
+    /**
+     * @param rowNum 0-based row number.
+     * @return the sales on the row, 0 if the cell is missing.
+     */
+    public double getSales(int rowNum);
+
+    public void setSales(int rowNum, double sales);
+
+    /**
+     * Adds a record on the row after the last one.
+     *
+     * @param platform abbreviation of the platform.
+     * @param title of the game.
+     * @param sales of the game.
+     * @return the 0-based row number of the record.
+     */
+    public int append(String platform, String title, double sales);
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import lombok.Getter;
+import net.thecir.enums.Platforms;
+
+/**
+ * The best selling shops and games of a report, ranked while the sales are
+ * streamed in, with bounded heaps of k entries. Optionally, the best selling
+ * games of every platform and of every shop are ranked in the same pass. The
+ * names are only joined for the ranked entries.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class SalesRanking {
+
+    @Getter
+    private final int k;
+    private final boolean breakdowns;
+    private final List<String> shops = new ArrayList<>();
+    private final List<String> gamePlatforms = new ArrayList<>();
+    private final List<String> gameTitles = new ArrayList<>();
+    private final TopK topShops;
+    private final TopK topGames;
+    private final EnumMap<Platforms, TopK> topGamesByPlatform = new EnumMap<>(Platforms.class);
+    //Indexed by shop id
+    private final List<TopK> topGamesByShop = new ArrayList<>();
+
+    /**
+     * @param k the number of shops and games to rank.
+     * @param breakdowns whether the games are ranked by platform and by shop
+     * too.
+     */
+    public SalesRanking(int k, boolean breakdowns) {
+        this.k = k;
+        this.breakdowns = breakdowns;
+        topShops = new TopK(k);
+        topGames = new TopK(k);
+    }
+
+    /**
+     * Ranks the shops and games of an input file.
+     *
+     * @param data the stock and sales read from the input file.
+     * @param k the number of shops and games to rank.
+     * @param breakdowns whether the games are ranked by platform and by shop
+     * too.
+     * @return the ranking.
+     */
+    public static SalesRanking of(StockSalesTable data, int k, boolean breakdowns) {
+        SalesRanking ranking = new SalesRanking(k, breakdowns);
+        int[] salesByShop = new int[data.getShopsCount()];
+        int[] salesByGame = new int[data.getGamesCount()];
+        for (int record = 0; record < data.getRecordsCount(); record++) {
+            int shop = data.getRecordShop(record);
+            int game = data.getRecordGame(record);
+            int sales = data.getRecordSales(record);
+            salesByShop[shop] += sales;
+            salesByGame[game] += sales;
+            ranking.addShopGame(shop, game, sales);
+        }
+        //The ids of the ranking are the ids of the table
+        for (int shop = 0; shop < salesByShop.length; shop++) {
+            ranking.addShop(data.getShop(shop), salesByShop[shop]);
+        }
+        for (int game = 0; game < salesByGame.length; game++) {
+            ranking.addGame(data.getGamePlatform(game).getOutputAbbreviation(), data.getGameTitle(game), salesByGame[game]);
+        }
+        return ranking;
+    }
+
+    /**
+     * @param shop the shop name.
+     * @param sales the sales of the shop.
+     * @return the id of the shop, in order of adding.
+     */
+    public int addShop(String shop, double sales) {
+        int id = shops.size();
+        shops.add(shop);
+        topShops.offer(id, sales);
+        return id;
+    }
+
+    /**
+     * @param platform the platform, as written in the output file.
+     * @param title the game title.
+     * @param sales the sales of the game.
+     * @return the id of the game, in order of adding.
+     */
+    public int addGame(String platform, String title, double sales) {
+        int id = gameTitles.size();
+        gamePlatforms.add(platform);
+        gameTitles.add(title);
+        topGames.offer(id, sales);
+        if (breakdowns) {
+            Platforms byPlatform = Platforms.getByOutputAbbreviation(platform);
+            if (byPlatform != null) {
+                topGamesByPlatform.computeIfAbsent(byPlatform, p -> new TopK(k)).offer(id, sales);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Ranks a game within a shop, ignored without breakdowns. The shop and
+     * the game may be added later, with these ids.
+     *
+     * @param shop the shop id.
+     * @param game the game id.
+     * @param sales the sales of the game in the shop.
+     */
+    public void addShopGame(int shop, int game, double sales) {
+        if (!breakdowns) {
+            return;
+        }
+        while (topGamesByShop.size() <= shop) {
+            topGamesByShop.add(new TopK(k));
+        }
+        topGamesByShop.get(shop).offer(game, sales);
+    }
+
+    /**
+     * @return the best selling shops, the best first.
+     */
+    public List<Ranked> getTopShops() {
+        int[] ids = topShops.getIds();
+        double[] sales = topShops.getScores();
+        List<Ranked> ranked = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ranked.add(new Ranked(null, shops.get(ids[i]), sales[i]));
+        }
+        return ranked;
+    }
+
+    /**
+     * @return the best selling games, the best first.
+     */
+    public List<Ranked> getTopGames() {
+        return getGames(topGames);
+    }
+
+    /**
+     * @return the best selling games of every platform, empty without
+     * breakdowns.
+     */
+    public EnumMap<Platforms, List<Ranked>> getTopGamesByPlatform() {
+        EnumMap<Platforms, List<Ranked>> byPlatform = new EnumMap<>(Platforms.class);
+        topGamesByPlatform.forEach((platform, games) -> byPlatform.put(platform, getGames(games)));
+        return byPlatform;
+    }
+
+    /**
+     * @return the best selling games of every shop, in order of adding the
+     * shops, empty without breakdowns.
+     */
+    public LinkedHashMap<String, List<Ranked>> getTopGamesByShop() {
+        LinkedHashMap<String, List<Ranked>> byShop = new LinkedHashMap<>();
+        for (int shop = 0; shop < topGamesByShop.size() && shop < shops.size(); shop++) {
+            byShop.put(shops.get(shop), getGames(topGamesByShop.get(shop)));
+        }
+        return byShop;
+    }
+
+    /**
+     * Writes the ranked shops and games and the breakdowns, a tab separated
+     * line each - the ranking, the group, the rank, the name and the sales.
+     *
+     * @param out the writer.
+     * @param ranking the name of the ranking, e.g. Overall.
+     */
+    public void write(PrintWriter out, String ranking) {
+        writeGroup(out, ranking, "Shops", getTopShops());
+        writeGroup(out, ranking, "Games", getTopGames());
+        getTopGamesByPlatform().forEach((platform, games)
+                -> writeGroup(out, ranking, "Games on " + platform.getOutputAbbreviation(), games));
+        getTopGamesByShop().forEach((shop, games) -> writeGroup(out, ranking, "Games in " + shop, games));
+    }
+
+    private static void writeGroup(PrintWriter out, String ranking, String group, List<Ranked> ranked) {
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            out.println(ranking + '\t' + group + '\t' + (rank + 1) + '\t' + ranked.get(rank).getLabel()
+                    + '\t' + (long) ranked.get(rank).getSales());
+        }
+    }
+
+    private List<Ranked> getGames(TopK games) {
+        int[] ids = games.getIds();
+        double[] sales = games.getScores();
+        List<Ranked> ranked = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ranked.add(new Ranked(gamePlatforms.get(ids[i]), gameTitles.get(ids[i]), sales[i]));
+        }
+        return ranked;
+    }
+
+    /**
+     * A ranked shop or game.
+     */
+    public static class Ranked {
+
+        //Null for shops
+        @Getter
+        private final String platform;
+        @Getter
+        private final String name;
+        @Getter
+        private final double sales;
+
+        Ranked(String platform, String name, double sales) {
+            this.platform = platform;
+            this.name = name;
+            this.sales = sales;
+        }
+
+        /**
+         * @return the name as written in the top five sheet, prefixed by the
+         * platform for games.
+         */
+        public String getLabel() {
+            return platform == null ? name : platform + " " + name;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import com.thecir.tools.ExcelTools.RowCursor;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * Sales by game records on a sheet of the workbook.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class SheetSalesByGameRecords implements SalesByGameRecords {
+
+    private static final int PLATFORM_COLUMN = 0;
+    private static final int TITLE_COLUMN = 1;
+    private static final int TITLE_LAST_COLUMN = 3;
+    private static final int SALES_COLUMN = 4;
+
+    private final Sheet sheet;
+    private final RowCursor cursor;
+
+    SheetSalesByGameRecords(Sheet sheet) {
+        this.sheet = sheet;
+        this.cursor = new RowCursor(sheet);
+    }
+
+    @Override
+    public int getLastRowNum() {
+        return sheet.getLastRowNum();
+    }
+
+    @Override
+    public String getPlatform(int rowNum) {
+        Cell cell = cursor.moveTo(rowNum).getCell(PLATFORM_COLUMN);
+        return cell == null ? null : cell.getStringCellValue();
+    }
+
+    @Override
+    public String getTitle(int rowNum) {
+        Cell cell = cursor.moveTo(rowNum).getCell(TITLE_COLUMN);
+        return cell == null ? null : cell.getStringCellValue();
+    }
+
+    @Override
+    public double getSales(int rowNum) {
+        return cursor.moveTo(rowNum).getDouble(SALES_COLUMN, 0);
+    }
+
+    @Override
+    public void setSales(int rowNum, double sales) {
+        cursor.moveTo(rowNum).getOrCreateCell(SALES_COLUMN).setCellValue(sales);
+    }
+
+    @Override
+    public int append(String platform, String title, double sales) {
+        int rowNum = sheet.getLastRowNum() + 1;
+        cursor.moveTo(rowNum);
+        cursor.getOrCreateCell(PLATFORM_COLUMN).setCellValue(platform);
+        cursor.getOrCreateCell(TITLE_COLUMN).setCellValue(title);
+        cursor.getOrCreateCell(SALES_COLUMN).setCellValue(sales);
+        sheet.addMergedRegion(new CellRangeAddress(rowNum, rowNum, TITLE_COLUMN, TITLE_LAST_COLUMN));
+        return rowNum;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import lombok.extern.java.Log;
+
+/**
+ * A small binary file kept next to an output file, such as its running
+ * totals or its journal. The file starts with a magic number, a version and
+ * the length and the CRC32 of the workbook it was written with, and ends with
+ * the CRC32 of everything before it. It's only read if the workbook still
+ * matches and the file is whole - otherwise its content is discarded and
+ * rebuilt by the caller, e.g. after the workbook was edited by hand.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+@Log
+class SidecarFile {
+
+    /**
+     * Reads the content of a sidecar file.
+     *
+     * @param <T> the content.
+     */
+    interface ContentReader<T> {
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Writes the content of a sidecar file.
+     */
+    interface ContentWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    //Magic, version, workbook length and CRC32
+    private static final int HEADER_LENGTH = 24;
+    private static final int TRAILER_LENGTH = 8;
+
+    private final int magic;
+    private final int version;
+    private final String suffix;
+
+    /**
+     * @param magic tells the content of the file.
+     * @param version the version of the content.
+     * @param suffix added to the name of the output file.
+     */
+    SidecarFile(int magic, int version, String suffix) {
+        this.magic = magic;
+        this.version = version;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @param workbookFile the output file.
+     * @return the sidecar file of the output file.
+     */
+    File getFile(File workbookFile) {
+        return new File(workbookFile.getAbsoluteFile().getParentFile(), workbookFile.getName() + suffix);
+    }
+
+    /**
+     * Reads the sidecar file of an output file.
+     *
+     * @param <T> the content.
+     * @param workbookFile the output file.
+     * @param length the length of the output file, as loaded.
+     * @param checksum the CRC32 of the output file, as loaded.
+     * @param reader reads the content.
+     * @return the content, null if there's no sidecar file, it was written
+     * with a different output file or it's damaged.
+     */
+    <T> T read(File workbookFile, long length, long checksum, ContentReader<T> reader) {
+        File sidecarFile = getFile(workbookFile);
+        if (!sidecarFile.isFile()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(sidecarFile.toPath());
+            int contentEnd = bytes.length - TRAILER_LENGTH;
+            if (contentEnd < HEADER_LENGTH) {
+                throw new IOException("The file is too short.");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != magic || in.readInt() != version
+                    || in.readLong() != length || in.readLong() != checksum) {
+                log.log(Level.INFO, "{0} doesn''t match the output file.", sidecarFile);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, contentEnd);
+            DataInputStream trailer = new DataInputStream(new ByteArrayInputStream(bytes, contentEnd, TRAILER_LENGTH));
+            if (trailer.readLong() != crc.getValue()) {
+                throw new IOException("The file is damaged.");
+            }
+            return reader.read(new DataInputStream(new ByteArrayInputStream(bytes, HEADER_LENGTH,
+                    contentEnd - HEADER_LENGTH)));
+        } catch (IOException | RuntimeException ex) {
+            log.log(Level.WARNING, sidecarFile + " cannot be read, it's discarded.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the sidecar file of an output file, through a temporary file, so
+     * a failed write leaves no partial file behind.
+     *
+     * @param workbookFile the output file.
+     * @param length the length of the output file, as saved.
+     * @param checksum the CRC32 of the output file, as saved.
+     * @param writer writes the content.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(File workbookFile, long length, long checksum, ContentWriter writer) throws IOException {
+        File sidecarFile = getFile(workbookFile);
+        File tempFile = File.createTempFile(sidecarFile.getName(), ".tmp", sidecarFile.getParentFile());
+        try {
+            try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                CheckedOutputStream checkedOut = new CheckedOutputStream(fileOut, new CRC32());
+                DataOutputStream out = new DataOutputStream(checkedOut);
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeLong(length);
+                out.writeLong(checksum);
+                writer.write(out);
+                out.flush();
+                new DataOutputStream(fileOut).writeLong(checkedOut.getChecksum().getValue());
+            }
+            Files.move(tempFile.toPath(), sidecarFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+}
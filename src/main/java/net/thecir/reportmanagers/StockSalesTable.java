@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import net.thecir.enums.Platforms;
+
+/**
+ * Stock and sales read from an input file, one record per shop and game. Shop
+ * names, titles and games (platform and title) are interned to int ids on the
+ * way in, so a record is found with a single primitive hash lookup and the
+ * stock and sales are kept in plain int arrays.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class StockSalesTable {
+
+    private static final int PLATFORMS_COUNT = Platforms.values().length;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final List<String> shops = new ArrayList<>();
+    private final HashMap<String, Integer> shopIds = new HashMap<>();
+    private final List<String> titles = new ArrayList<>();
+    private final HashMap<String, Integer> titleIds = new HashMap<>();
+
+    //Games, by id
+    private int[] gamePlatform = new int[INITIAL_CAPACITY];
+    private int[] gameTitle = new int[INITIAL_CAPACITY];
+    private int gamesCount;
+    private final IdIndex gameIds = new IdIndex();
+
+    //Records, in the order they were added
+    private int[] recordShop = new int[INITIAL_CAPACITY];
+    private int[] recordGame = new int[INITIAL_CAPACITY];
+    private int[] recordStock = new int[INITIAL_CAPACITY];
+    private int[] recordSales = new int[INITIAL_CAPACITY];
+    private int recordsCount;
+    private final IdIndex recordIds = new IdIndex();
+
+    /**
+     * @param shop the shop name.
+     * @return the id of the shop, which is added if it's not known yet. Ids
+     * are given in order, starting from 0.
+     */
+    public int addShop(String shop) {
+        Integer id = shopIds.get(shop);
+        if (id == null) {
+            id = shops.size();
+            shops.add(shop);
+            shopIds.put(shop, id);
+        }
+        return id;
+    }
+
+    public int getShopsCount() {
+        return shops.size();
+    }
+
+    public String getShop(int shopId) {
+        return shops.get(shopId);
+    }
+
+    /**
+     * @param platform the platform of the game.
+     * @param title the title of the game.
+     * @return the id of the game, which is added if it's not known yet. Ids
+     * are given in order, starting from 0.
+     */
+    public int addGame(Platforms platform, String title) {
+        Integer titleId = titleIds.get(title);
+        if (titleId == null) {
+            titleId = titles.size();
+            titles.add(title);
+            titleIds.put(title, titleId);
+        }
+        long key = (long) titleId * PLATFORMS_COUNT + platform.ordinal();
+        int id = gameIds.get(key);
+        if (id < 0) {
+            if (gamesCount == gamePlatform.length) {
+                gamePlatform = Arrays.copyOf(gamePlatform, gamesCount * 2);
+                gameTitle = Arrays.copyOf(gameTitle, gamesCount * 2);
+            }
+            id = gamesCount++;
+            gamePlatform[id] = platform.ordinal();
+            gameTitle[id] = titleId;
+            gameIds.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * @param platform the platform of the game.
+     * @param title the title of the game.
+     * @return the id of the game, -1 if it's not known.
+     */
+    public int getGameId(Platforms platform, String title) {
+        Integer titleId = titleIds.get(title);
+        if (titleId == null) {
+            return -1;
+        }
+        return gameIds.get((long) titleId * PLATFORMS_COUNT + platform.ordinal());
+    }
+
+    public int getGamesCount() {
+        return gamesCount;
+    }
+
+    public Platforms getGamePlatform(int gameId) {
+        return Platforms.values()[gamePlatform[gameId]];
+    }
+
+    public String getGameTitle(int gameId) {
+        return titles.get(gameTitle[gameId]);
+    }
+
+    /**
+     * Adds to the stock and sales of a game in a shop. The record is created
+     * on the first call, even if both are 0.
+     *
+     * @param shopId id returned by addShop.
+     * @param gameId id returned by addGame.
+     * @param stock stock to add.
+     * @param sales sales to add.
+     */
+    public void add(int shopId, int gameId, int stock, int sales) {
+        long key = ((long) shopId << 32) | gameId;
+        int record = recordIds.get(key);
+        if (record < 0) {
+            if (recordsCount == recordShop.length) {
+                int capacity = recordsCount * 2;
+                recordShop = Arrays.copyOf(recordShop, capacity);
+                recordGame = Arrays.copyOf(recordGame, capacity);
+                recordStock = Arrays.copyOf(recordStock, capacity);
+                recordSales = Arrays.copyOf(recordSales, capacity);
+            }
+            record = recordsCount++;
+            recordShop[record] = shopId;
+            recordGame[record] = gameId;
+            recordIds.put(key, record);
+        }
+        recordStock[record] += stock;
+        recordSales[record] += sales;
+    }
+
+    public int getRecordsCount() {
+        return recordsCount;
+    }
+
+    public int getRecordShop(int record) {
+        return recordShop[record];
+    }
+
+    public int getRecordGame(int record) {
+        return recordGame[record];
+    }
+
+    public int getRecordStock(int record) {
+        return recordStock[record];
+    }
+
+    public int getRecordSales(int record) {
+        return recordSales[record];
+    }
+
+    /**
+     * @return the sales of each shop, indexed by shop id.
+     */
+    public int[] getSalesByShop() {
+        int[] sales = new int[shops.size()];
+        for (int record = 0; record < recordsCount; record++) {
+            sales[recordShop[record]] += recordSales[record];
+        }
+        return sales;
+    }
+
+    /**
+     * @return the sales of each game in all shops, indexed by game id.
+     */
+    public int[] getSalesByGame() {
+        int[] sales = new int[gamesCount];
+        for (int record = 0; record < recordsCount; record++) {
+            sales[recordGame[record]] += recordSales[record];
+        }
+        return sales;
+    }
+
+    /**
+     * @return the sales of each shop on each platform, indexed by shop id and
+     * Platforms ordinal.
+     */
+    public int[][] getSalesByShopAndPlatform() {
+        int[][] sales = new int[shops.size()][PLATFORMS_COUNT];
+        for (int record = 0; record < recordsCount; record++) {
+            sales[recordShop[record]][gamePlatform[recordGame[record]]] += recordSales[record];
+        }
+        return sales;
+    }
+
+    /**
+     * Writes the shops, the games and the records, in the order of their ids.
+     *
+     * @param out the cache file.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(shops.size());
+        for (String shop : shops) {
+            out.writeUTF(shop);
+        }
+        out.writeInt(gamesCount);
+        for (int game = 0; game < gamesCount; game++) {
+            out.writeByte(gamePlatform[game]);
+            out.writeUTF(titles.get(gameTitle[game]));
+        }
+        out.writeInt(recordsCount);
+        for (int record = 0; record < recordsCount; record++) {
+            out.writeInt(recordShop[record]);
+            out.writeInt(recordGame[record]);
+            out.writeInt(recordStock[record]);
+            out.writeInt(recordSales[record]);
+        }
+    }
+
+    /**
+     * Reads a table written by write. The shops, games and records get the
+     * same ids as in the table written.
+     *
+     * @param in the cache file.
+     * @return the table read.
+     */
+    static StockSalesTable read(DataInputStream in) throws IOException {
+        StockSalesTable table = new StockSalesTable();
+        int shopsCount = in.readInt();
+        for (int shop = 0; shop < shopsCount; shop++) {
+            table.addShop(in.readUTF());
+        }
+        Platforms[] platforms = Platforms.values();
+        int gamesCount = in.readInt();
+        for (int game = 0; game < gamesCount; game++) {
+            Platforms platform = platforms[in.readUnsignedByte()];
+            table.addGame(platform, in.readUTF());
+        }
+        int recordsCount = in.readInt();
+        for (int record = 0; record < recordsCount; record++) {
+            int shop = in.readInt();
+            int game = in.readInt();
+            if (shop >= shopsCount || game >= gamesCount) {
+                throw new IOException("Record " + record + " refers to a missing shop or game.");
+            }
+            table.add(shop, game, in.readInt(), in.readInt());
+        }
+        return table;
+    }
+
+    /**
+     * Open addressing hash from long keys to non negative int ids, so lookups
+     * don't box.
+     */
+    private static class IdIndex {
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] ids = newIds(INITIAL_CAPACITY);
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ids[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return ids[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int id) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (ids[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (ids[slot] < 0) {
+                size++;
+            }
+            keys[slot] = key;
+            ids[slot] = id;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = newIds(oldKeys.length * 2);
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldIds[slot] >= 0) {
+                    put(oldKeys[slot], oldIds[slot]);
+                }
+            }
+        }
+
+        private static int[] newIds(int capacity) {
+            int[] ids = new int[capacity];
+            Arrays.fill(ids, -1);
+            return ids;
+        }
+
+        private static int hash(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
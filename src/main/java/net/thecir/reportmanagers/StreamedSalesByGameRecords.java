@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import net.thecir.filemanagers.SheetRows;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * Sales by game records kept out of the workbook, as read by
+ * StreamingWorkbookReader. The headers stay on the sheet.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class StreamedSalesByGameRecords implements SalesByGameRecords {
+
+    private static final int PLATFORM_COLUMN = 0;
+    private static final int TITLE_COLUMN = 1;
+    private static final int TITLE_LAST_COLUMN = 3;
+    private static final int SALES_COLUMN = 4;
+
+    private final Sheet headersSheet;
+    private final SheetRows rows;
+
+    /**
+     * @param headersSheet the sheet, holding only the headers.
+     * @param rows the records, below the headers.
+     */
+    StreamedSalesByGameRecords(Sheet headersSheet, SheetRows rows) {
+        this.headersSheet = headersSheet;
+        this.rows = rows;
+    }
+
+    @Override
+    public int getLastRowNum() {
+        return rows.getRowsCount() > 0 ? rows.getLastRowNum() : headersSheet.getLastRowNum();
+    }
+
+    @Override
+    public String getPlatform(int rowNum) {
+        return getString(rowNum, PLATFORM_COLUMN);
+    }
+
+    @Override
+    public String getTitle(int rowNum) {
+        return getString(rowNum, TITLE_COLUMN);
+    }
+
+    @Override
+    public double getSales(int rowNum) {
+        int index = rows.findRow(rowNum);
+        return index < 0 ? 0 : rows.getNumericCellValue(index, SALES_COLUMN);
+    }
+
+    @Override
+    public void setSales(int rowNum, double sales) {
+        int index = rows.findRow(rowNum);
+        if (index < 0) {
+            index = rows.addRow(rowNum);
+        }
+        rows.setCellValue(index, SALES_COLUMN, sales);
+    }
+
+    @Override
+    public int append(String platform, String title, double sales) {
+        int rowNum = getLastRowNum() + 1;
+        int index = rows.addRow(rowNum);
+        rows.setCellValue(index, PLATFORM_COLUMN, platform);
+        rows.setCellValue(index, TITLE_COLUMN, title);
+        rows.setCellValue(index, SALES_COLUMN, sales);
+        rows.addMergedRegion(new CellRangeAddress(rowNum, rowNum, TITLE_COLUMN, TITLE_LAST_COLUMN));
+        return rowNum;
+    }
+
+    private String getString(int rowNum, int column) {
+        int index = rows.findRow(rowNum);
+        if (index < 0 || !rows.hasCell(index, column)) {
+            return null;
+        }
+        return rows.getStringCellValue(index, column);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k highest scored of a stream of ids, in a min-heap bounded to k
+ * entries, so ranking n ids costs O(n log k) time and O(k) memory instead of
+ * sorting all of them. Of equal scores, the one offered first ranks higher,
+ * same as a stable sort by descending score.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+public class TopK {
+
+    private final int k;
+    //Min-heap, the lowest ranked entry is at 0
+    private final int[] ids;
+    private final double[] scores;
+    private final long[] sequences;
+    private int size;
+    private long offered;
+
+    /**
+     * @param k the number of ids to keep.
+     */
+    public TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative k: " + k);
+        }
+        this.k = k;
+        ids = new int[k];
+        scores = new double[k];
+        sequences = new long[k];
+    }
+
+    /**
+     * @param id the id.
+     * @param score the score of the id.
+     */
+    public void offer(int id, double score) {
+        long sequence = offered++;
+        if (size < k) {
+            ids[size] = id;
+            scores[size] = score;
+            sequences[size] = sequence;
+            siftUp(size++);
+        } else if (k > 0 && score > scores[0]) {
+            //A later id with an equal score ranks lower, so it never replaces the lowest one
+            ids[0] = id;
+            scores[0] = score;
+            sequences[0] = sequence;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return the number of ids kept, at most k.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the ids kept, the highest ranked first.
+     */
+    public int[] getIds() {
+        Integer[] order = getOrder();
+        int[] ranked = new int[size];
+        for (int i = 0; i < size; i++) {
+            ranked[i] = ids[order[i]];
+        }
+        return ranked;
+    }
+
+    /**
+     * @return the scores of the ids kept, the highest ranked first.
+     */
+    public double[] getScores() {
+        Integer[] order = getOrder();
+        double[] ranked = new double[size];
+        for (int i = 0; i < size; i++) {
+            ranked[i] = scores[order[i]];
+        }
+        return ranked;
+    }
+
+    private Integer[] getOrder() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> isLower(a, b) ? 1 : isLower(b, a) ? -1 : 0);
+        return order;
+    }
+
+    private boolean isLower(int a, int b) {
+        return scores[a] < scores[b] || scores[a] == scores[b] && sequences[a] > sequences[b];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isLower(index, parent)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int lowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && isLower(left, lowest)) {
+                lowest = left;
+            }
+            if (right < size && isLower(right, lowest)) {
+                lowest = right;
+            }
+            if (lowest == index) {
+                return;
+            }
+            swap(index, lowest);
+            index = lowest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        long sequence = sequences[a];
+        sequences[a] = sequences[b];
+        sequences[b] = sequence;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Konstantin Tsanov <k.tsanov@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.thecir.reportmanagers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import net.thecir.enums.Platforms;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * What applying the input file of a week changes in the output file: the
+ * sales and stock of each platform, the sales of each shop by platform and
+ * the sales of each game, along with the week column it was written to and
+ * the latest stock it replaced. Applying, undoing and redoing a week only
+ * needs these, not the input file.
+ *
+ * @author Konstantin Tsanov <k.tsanov@gmail.com>
+ */
+class WeekDelta {
+
+    private static final int PLATFORMS_COUNT = Platforms.values().length;
+    private static final byte BLANK = 0;
+    private static final byte NUMERIC = 1;
+    private static final byte STRING = 2;
+
+    @Getter
+    private final int weekNumber;
+    //SHA-256 of the input file of the week, null if not known
+    @Getter
+    @Setter
+    private String inputHash;
+    //0-based column of the week in the weekly report sheet, -1 until written
+    @Getter
+    @Setter
+    private int column = -1;
+    //Indexed by Platforms ordinal, Integer.MIN_VALUE if the platform has no records
+    private final int[] platformSales;
+    private final int[] platformStock;
+    private final String[] shops;
+    //Indexed by shop and Platforms ordinal
+    private final int[][] shopPlatformSales;
+    private final Platforms[] gamePlatforms;
+    private final String[] gameTitles;
+    private final int[] gameSales;
+    //The stock column header and stock cells before the week was written
+    private byte[] previousStockTypes;
+    private double[] previousStockValues;
+    private String[] previousStockTexts;
+
+    private WeekDelta(int weekNumber, int[] platformSales, int[] platformStock, String[] shops,
+            int[][] shopPlatformSales, int gamesCount) {
+        this.weekNumber = weekNumber;
+        this.platformSales = platformSales;
+        this.platformStock = platformStock;
+        this.shops = shops;
+        this.shopPlatformSales = shopPlatformSales;
+        gamePlatforms = new Platforms[gamesCount];
+        gameTitles = new String[gamesCount];
+        gameSales = new int[gamesCount];
+    }
+
+    /**
+     * Sums up the data of an input file.
+     *
+     * @param weekNumber the week of the input file.
+     * @param data the stock and sales read from the input file.
+     * @return the changes the input file makes.
+     */
+    static WeekDelta of(int weekNumber, StockSalesTable data) {
+        int[] platformSales = new int[PLATFORMS_COUNT];
+        int[] platformStock = new int[PLATFORMS_COUNT];
+        Arrays.fill(platformSales, Integer.MIN_VALUE);
+        Arrays.fill(platformStock, Integer.MIN_VALUE);
+        for (int record = 0; record < data.getRecordsCount(); record++) {
+            int platform = data.getGamePlatform(data.getRecordGame(record)).ordinal();
+            if (platformSales[platform] == Integer.MIN_VALUE) {
+                platformSales[platform] = 0;
+                platformStock[platform] = 0;
+            }
+            platformSales[platform] += data.getRecordSales(record);
+            platformStock[platform] += data.getRecordStock(record);
+        }
+        String[] shops = new String[data.getShopsCount()];
+        for (int shop = 0; shop < shops.length; shop++) {
+            shops[shop] = data.getShop(shop);
+        }
+        WeekDelta delta = new WeekDelta(weekNumber, platformSales, platformStock, shops,
+                data.getSalesByShopAndPlatform(), data.getGamesCount());
+        int[] salesByGame = data.getSalesByGame();
+        for (int game = 0; game < delta.gameTitles.length; game++) {
+            delta.gamePlatforms[game] = data.getGamePlatform(game);
+            delta.gameTitles[game] = data.getGameTitle(game);
+            delta.gameSales[game] = salesByGame[game];
+        }
+        return delta;
+    }
+
+    /**
+     * @param platform the platform.
+     * @return the sales of the platform, Integer.MIN_VALUE if it has no
+     * records.
+     */
+    int getPlatformSales(Platforms platform) {
+        return platformSales[platform.ordinal()];
+    }
+
+    /**
+     * @param platform the platform.
+     * @return the stock of the platform, Integer.MIN_VALUE if it has no
+     * records.
+     */
+    int getPlatformStock(Platforms platform) {
+        return platformStock[platform.ordinal()];
+    }
+
+    int getShopsCount() {
+        return shops.length;
+    }
+
+    String getShop(int shop) {
+        return shops[shop];
+    }
+
+    int getShopSales(int shop, Platforms platform) {
+        return shopPlatformSales[shop][platform.ordinal()];
+    }
+
+    int getGamesCount() {
+        return gameTitles.length;
+    }
+
+    Platforms getGamePlatform(int game) {
+        return gamePlatforms[game];
+    }
+
+    String getGameTitle(int game) {
+        return gameTitles[game];
+    }
+
+    int getGameSales(int game) {
+        return gameSales[game];
+    }
+
+    /**
+     * Ranks the shops and games of the week. The games can be ranked by
+     * platform, but not by shop, as the sales of the games in each shop
+     * aren't kept.
+     *
+     * @param k the number of shops and games to rank.
+     * @param breakdowns whether the games are ranked by platform too.
+     * @return the ranking.
+     */
+    SalesRanking rank(int k, boolean breakdowns) {
+        SalesRanking ranking = new SalesRanking(k, breakdowns);
+        for (int shop = 0; shop < shops.length; shop++) {
+            int sales = 0;
+            for (int platformSales : shopPlatformSales[shop]) {
+                sales += platformSales;
+            }
+            ranking.addShop(shops[shop], sales);
+        }
+        for (int game = 0; game < gameTitles.length; game++) {
+            ranking.addGame(gamePlatforms[game].getOutputAbbreviation(), gameTitles[game], gameSales[game]);
+        }
+        return ranking;
+    }
+
+    /**
+     * Keeps the cells of the stock column, before the week is written.
+     *
+     * @param cells the header and the stock of each platform, in row order.
+     */
+    void setPreviousStock(Cell[] cells) {
+        previousStockTypes = new byte[cells.length];
+        previousStockValues = new double[cells.length];
+        previousStockTexts = new String[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i].getCellTypeEnum() == CellType.NUMERIC) {
+                previousStockTypes[i] = NUMERIC;
+                previousStockValues[i] = cells[i].getNumericCellValue();
+            } else if (cells[i].getCellTypeEnum() == CellType.STRING) {
+                previousStockTypes[i] = STRING;
+                previousStockTexts[i] = cells[i].getStringCellValue();
+            } else {
+                previousStockTypes[i] = BLANK;
+            }
+        }
+    }
+
+    /**
+     * Puts back the cells of the stock column, as they were before the week
+     * was written.
+     *
+     * @param cells the header and the stock of each platform, in row order.
+     */
+    void restorePreviousStock(Cell[] cells) {
+        for (int i = 0; i < cells.length && i < previousStockTypes.length; i++) {
+            switch (previousStockTypes[i]) {
+                case NUMERIC:
+                    cells[i].setCellValue(previousStockValues[i]);
+                    break;
+                case STRING:
+                    cells[i].setCellValue(previousStockTexts[i]);
+                    break;
+                default:
+                    cells[i].setCellType(CellType.BLANK);
+            }
+        }
+    }
+
+    /**
+     * Adds the shops and titles of the week to a string table.
+     *
+     * @param strings the index of each string, in order of adding.
+     */
+    void collectStrings(Map<String, Integer> strings) {
+        for (String shop : shops) {
+            strings.putIfAbsent(shop, strings.size());
+        }
+        for (String title : gameTitles) {
+            strings.putIfAbsent(title, strings.size());
+        }
+    }
+
+    /**
+     * @param out the journal file.
+     * @param strings the index of each string, with the strings of the week
+     * in it.
+     */
+    void write(DataOutputStream out, Map<String, Integer> strings) throws IOException {
+        out.writeInt(weekNumber);
+        out.writeInt(column);
+        out.writeUTF(inputHash != null ? inputHash : "");
+        for (int platform = 0; platform < PLATFORMS_COUNT; platform++) {
+            out.writeInt(platformSales[platform]);
+            out.writeInt(platformStock[platform]);
+        }
+        out.writeInt(shops.length);
+        for (int shop = 0; shop < shops.length; shop++) {
+            out.writeInt(strings.get(shops[shop]));
+            for (int platform = 0; platform < PLATFORMS_COUNT; platform++) {
+                out.writeInt(shopPlatformSales[shop][platform]);
+            }
+        }
+        out.writeInt(gameTitles.length);
+        for (int game = 0; game < gameTitles.length; game++) {
+            out.writeByte(gamePlatforms[game].ordinal());
+            out.writeInt(strings.get(gameTitles[game]));
+            out.writeInt(gameSales[game]);
+        }
+        out.writeInt(previousStockTypes.length);
+        for (int i = 0; i < previousStockTypes.length; i++) {
+            out.writeByte(previousStockTypes[i]);
+            if (previousStockTypes[i] == NUMERIC) {
+                out.writeDouble(previousStockValues[i]);
+            } else if (previousStockTypes[i] == STRING) {
+                out.writeUTF(previousStockTexts[i]);
+            }
+        }
+    }
+
+    /**
+     * @param in the journal file.
+     * @param strings the string table of the journal file.
+     * @return the week read.
+     */
+    static WeekDelta read(DataInputStream in, List<String> strings) throws IOException {
+        int weekNumber = in.readInt();
+        int column = in.readInt();
+        String inputHash = in.readUTF();
+        int[] platformSales = new int[PLATFORMS_COUNT];
+        int[] platformStock = new int[PLATFORMS_COUNT];
+        for (int platform = 0; platform < PLATFORMS_COUNT; platform++) {
+            platformSales[platform] = in.readInt();
+            platformStock[platform] = in.readInt();
+        }
+        int shopsCount = in.readInt();
+        String[] shops = new String[shopsCount];
+        int[][] shopPlatformSales = new int[shopsCount][PLATFORMS_COUNT];
+        for (int shop = 0; shop < shopsCount; shop++) {
+            shops[shop] = strings.get(in.readInt());
+            for (int platform = 0; platform < PLATFORMS_COUNT; platform++) {
+                shopPlatformSales[shop][platform] = in.readInt();
+            }
+        }
+        WeekDelta delta = new WeekDelta(weekNumber, platformSales, platformStock, shops, shopPlatformSales, in.readInt());
+        delta.column = column;
+        delta.inputHash = inputHash.isEmpty() ? null : inputHash;
+        Platforms[] platforms = Platforms.values();
+        for (int game = 0; game < delta.gameTitles.length; game++) {
+            delta.gamePlatforms[game] = platforms[in.readUnsignedByte()];
+            delta.gameTitles[game] = strings.get(in.readInt());
+            delta.gameSales[game] = in.readInt();
+        }
+        int stockCellsCount = in.readInt();
+        delta.previousStockTypes = new byte[stockCellsCount];
+        delta.previousStockValues = new double[stockCellsCount];
+        delta.previousStockTexts = new String[stockCellsCount];
+        for (int i = 0; i < stockCellsCount; i++) {
+            delta.previousStockTypes[i] = in.readByte();
+            if (delta.previousStockTypes[i] == NUMERIC) {
+                delta.previousStockValues[i] = in.readDouble();
+            } else if (delta.previousStockTypes[i] == STRING) {
+                delta.previousStockTexts[i] = in.readUTF();
+            }
+        }
+        return delta;
+    }
+}